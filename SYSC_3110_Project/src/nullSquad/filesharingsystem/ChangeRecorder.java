@@ -0,0 +1,84 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.filesharingsystem;
+
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.strategies.act.ProducerActStrategy;
+import nullSquad.strategies.ranking.DocumentRankingStrategy;
+
+/**
+ * Records every change made to a File Sharing System (and its users) as it is
+ * made, ex: To an event log that can be replayed. Unlike the
+ * FileSharingSystemListener, the changes are not batched, and are recorded in
+ * the order they are made. Changes that follow from another change (ex: The
+ * likes removed along with a document) are recorded before it
+ *
+ * @author MVezina
+ */
+public interface ChangeRecorder
+{
+	/**
+	 * A user was registered (without any relations)
+	 *
+	 * @param user The registered user
+	 * @param userID The ID given to the user
+	 */
+	public void userRegistered(User user, int userID);
+
+	/**
+	 * A user was removed, after its relations were removed
+	 *
+	 * @param user The removed user
+	 */
+	public void userDeactivated(User user);
+
+	/**
+	 * A document was uploaded (The ID has been given to the document)
+	 *
+	 * @param document The uploaded document
+	 */
+	public void documentUploaded(Document document);
+
+	/**
+	 * A document was removed, after its likes were removed
+	 *
+	 * @param document The removed document
+	 */
+	public void documentRemoved(Document document);
+
+	public void documentLiked(User user, Document document);
+
+	public void documentUnliked(User user, Document document);
+
+	public void userFollowed(User follower, User user);
+
+	public void userUnfollowed(User follower, User user);
+
+	/**
+	 * The payoff of a step was added to the payoff history of a user
+	 *
+	 * @param user The user
+	 * @param step The step
+	 * @param payoff The payoff
+	 */
+	public void payoffRecorded(User user, int step, int payoff);
+
+	/**
+	 * The total payoff of a consumer changed
+	 *
+	 * @param consumer The consumer
+	 * @param currentPayoff The new total payoff
+	 */
+	public void currentPayoffChanged(Consumer consumer, int currentPayoff);
+
+	public void rankingStrategyChanged(User user, DocumentRankingStrategy.Strategy strategy);
+
+	public void actStrategyChanged(Producer producer, ProducerActStrategy.Strategy strategy);
+}
@@ -0,0 +1,120 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.filesharingsystem;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nullSquad.filesharingsystem.document.Document;
+
+/**
+ * Keeps the documents of a tag ordered by popularity (Number of likes).
+ * Documents with the same number of likes are ordered by ID (Highest ID
+ * first), which is the order the Document Popularity strategy ranks them in.
+ * The order is updated in O(log n) whenever a document is liked or unliked,
+ * so the most popular documents can be read off without sorting.
+ *
+ * @author MVezina
+ */
+class DocumentPopularityIndex implements Serializable
+{
+	private static final long serialVersionUID = -6105093620212810434L;
+
+	// (Number of likes, Document ID) -> Document. Ordered from least to most
+	// popular
+	private TreeMap<Long, Document> documentsByPopularity;
+
+	// Document ID -> Current key of the document
+	private Map<Integer, Long> keyByID;
+
+	/**
+	 * Creates an empty index
+	 *
+	 * @author MVezina
+	 */
+	public DocumentPopularityIndex()
+	{
+		documentsByPopularity = new TreeMap<>();
+		keyByID = new HashMap<>();
+	}
+
+	/**
+	 * Adds the document to the index
+	 *
+	 * @param doc The document to add
+	 * @author MVezina
+	 */
+	public void add(Document doc)
+	{
+		long key = getKey(doc);
+
+		Long previousKey = keyByID.put(doc.getDocumentID(), key);
+		if (previousKey != null)
+			documentsByPopularity.remove(previousKey);
+
+		documentsByPopularity.put(key, doc);
+	}
+
+	/**
+	 * Removes the document from the index
+	 *
+	 * @param doc The document to remove
+	 * @author MVezina
+	 */
+	public void remove(Document doc)
+	{
+		Long key = keyByID.remove(doc.getDocumentID());
+
+		if (key != null)
+			documentsByPopularity.remove(key);
+	}
+
+	/**
+	 * Moves the document to its place for its current number of likes
+	 *
+	 * @param doc The document that was liked / unliked
+	 * @author MVezina
+	 */
+	public void update(Document doc)
+	{
+		if (keyByID.containsKey(doc.getDocumentID()))
+			add(doc);
+	}
+
+	/**
+	 * @return The number of documents in the index
+	 * @author MVezina
+	 */
+	public int size()
+	{
+		return keyByID.size();
+	}
+
+	/**
+	 * @return Iterates over the documents from most -> least popular
+	 * @author MVezina
+	 */
+	public Iterator<Document> iterator()
+	{
+		return documentsByPopularity.descendingMap().values().iterator();
+	}
+
+	/**
+	 * @param doc The document
+	 * @return The key of the document, ordered by number of likes, then by
+	 *         document ID
+	 * @author MVezina
+	 */
+	public static long getKey(Document doc)
+	{
+		return ((long) doc.getUserLikes().size() << 32) | (doc.getDocumentID() & 0xFFFFFFFFL);
+	}
+
+}
@@ -7,14 +7,23 @@
 package nullSquad.filesharingsystem;
 
 import nullSquad.filesharingsystem.users.*;
-import nullSquad.simulator.Simulator;
+import nullSquad.simulator.log.SimulationLog;
 import nullSquad.filesharingsystem.document.*;
+import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.strategies.ranking.NeighbourhoodCache;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import javax.swing.DefaultListModel;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * Represents the FileSharingSystem
@@ -27,10 +36,54 @@ public class FileSharingSystem implements Serializable
 	private static final long serialVersionUID = 7503055761943137003L;
 	private int nextAvailableUserID = 1;
 	private int nextAvailableDocID = 1;
-	private DefaultListModel<User> usersListModel;
-	private DefaultListModel<Document> documentsListModel;
 	private List<String> tags;
 
+	// Registered users / documents keyed by their ID
+	private Registry<User> users;
+	private Registry<Document> documents;
+
+	// Inverted index: Tag -> Documents with that tag (keyed and ordered by
+	// document ID)
+	private Map<String, Map<Integer, Document>> documentsByTag;
+
+	// Tag -> Documents with that tag ordered by popularity (Kept up to date by
+	// the popularity listener, which listens to every added document)
+	private Map<String, DocumentPopularityIndex> popularityByTag;
+	private PopularityListener popularityListener;
+
+	// Whether the follow relation is also kept as a compact follow graph (The
+	// graph itself is rebuilt from the users when needed)
+	private boolean followGraphEnabled;
+	private transient FollowGraph followGraph;
+
+	// The friend neighbourhoods of the users (Created when first needed)
+	private transient NeighbourhoodCache neighbourhoodCache;
+
+	// Producers whose documents were returned by a search, but whose payoff
+	// has not been refreshed yet (Only used while the refresh is deferred)
+	private transient Set<Producer> producersToRefresh;
+	private transient boolean deferPayoffRefresh;
+
+	// Users whose payoff may have changed since the last time they were taken
+	// (null while the payoffs are not tracked)
+	private transient Set<User> changedPayoffs;
+	private transient PayoffTracker payoffTracker;
+
+	// Records the changes made to the system and its users (null if the
+	// changes are not recorded)
+	private transient UndoJournal undoJournal;
+
+	// Records the changes made to the system and its users as they are made
+	// (null if the changes are not recorded)
+	private transient ChangeRecorder changeRecorder;
+
+	// Listeners and the changes that have not been delivered to them yet
+	private transient List<FileSharingSystemListener> fssListeners;
+	private transient List<User> addedUsers;
+	private transient List<User> removedUsers;
+	private transient List<Document> addedDocuments;
+	private transient List<Document> removedDocuments;
+
 	/**
 	 * @author Justin Krol Creates a File Sharing System with a list of users
 	 *         and a list of documents
@@ -39,8 +92,11 @@ public class FileSharingSystem implements Serializable
 	 */
 	public FileSharingSystem(List<String> tags)
 	{
-		usersListModel = new DefaultListModel<>();
-		documentsListModel = new DefaultListModel<>();
+		users = new Registry<>();
+		documents = new Registry<>();
+		documentsByTag = new HashMap<>();
+		popularityByTag = new HashMap<>();
+		popularityListener = new PopularityListener();
 
 		this.tags = tags;
 
@@ -59,13 +115,41 @@ public class FileSharingSystem implements Serializable
 	{
 		if (user != null)
 		{
-			if (usersListModel.contains(user))
+			if (findUser(user) != null)
 			{
 				// System.out.println("User has already been added to the
 				// File Sharing System");
 				return -1;
 			}
-			usersListModel.addElement(user);
+			users.add(nextAvailableUserID, user);
+			recordChange(user, addedUsers, removedUsers);
+
+			user.setNeighbourhoodCache(getNeighbourhoodCache());
+
+			if (followGraph != null)
+				followGraph.addUser(user, nextAvailableUserID);
+
+			// The payoff of a new user has not been recorded yet
+			if (payoffTracker != null)
+			{
+				user.setPayoffTracker(payoffTracker);
+				changedPayoffs.add(user);
+			}
+
+			if (undoJournal != null)
+			{
+				user.setUndoJournal(undoJournal);
+
+				if (undoJournal.isRecording())
+					undoJournal.record(() -> undoRegisterUser(user), () -> registerUser(user));
+			}
+
+			if (changeRecorder != null)
+			{
+				user.setChangeRecorder(changeRecorder);
+				changeRecorder.userRegistered(user, nextAvailableUserID);
+			}
+
 			nextAvailableUserID++;
 			return nextAvailableUserID - 1;
 		}
@@ -73,6 +157,19 @@ public class FileSharingSystem implements Serializable
 		return -1;
 	}
 
+	/**
+	 * Undoes the registration of the last registered user. The user had the
+	 * last ID, so the ID can be given out again
+	 * 
+	 * @param user The last registered user
+	 * @author MVezina
+	 */
+	private void undoRegisterUser(User user)
+	{
+		deactivateUser(user);
+		nextAvailableUserID--;
+	}
+
 	/**
 	 * @author Justin Krol Remove a user from the File Sharing System if it is
 	 *         registered
@@ -82,7 +179,12 @@ public class FileSharingSystem implements Serializable
 	 */
 	public boolean deactivateUser(User user)
 	{
-		if (user == null || !usersListModel.contains(user))
+		if (user == null)
+			return false;
+
+		// Get the registered instance of the user
+		user = findUser(user);
+		if (user == null)
 			return false;
 
 		// Remove all documents
@@ -97,29 +199,49 @@ public class FileSharingSystem implements Serializable
 			}
 		}
 
-		// Unlike all documents
-		// DO NOT USE FOREACH LOOP - ConcurrencyException
-		// (Modifies the list that is being iterated)
-		for (int i = 0; i < user.getLikedDocuments().size(); i++)
+		// Unlike all documents, unfollow all users and remove all followers.
+		// Each relation is iterated over a copy, since it is modified by every
+		// call
+		for (Document d : new ArrayList<>(user.getLikedDocuments()))
+		{
+			user.unlikeDocument(d);
+		}
+
+		for (User u : new ArrayList<>(user.getFollowing()))
 		{
-			user.unlikeDocument(user.getLikedDocuments().get(i));
+			user.unfollowUser(u);
 		}
 
-		// Unfollow all users
-		for (int i = 0; i < user.getFollowing().size(); i++)
+		for (User u : new ArrayList<>(user.getFollowers()))
 		{
-			user.unfollowUser(user.getFollowing().get(i));
+			u.unfollowUser(user);
 		}
 
-		// Remove all followers
-		for (int i = 0; i < user.getFollowers().size(); i++)
+		if (followGraph != null)
+			followGraph.removeUser(user);
+
+		if (payoffTracker != null)
 		{
-			user.getFollowers().get(i).unfollowUser(user);
+			user.setPayoffTracker(null);
+			changedPayoffs.remove(user);
 		}
 
-		usersListModel.removeElement(user);
+		user.setUndoJournal(null);
+
+		// The ID of the user can be given out again
+		getNeighbourhoodCache().userRemoved(user);
+		user.setNeighbourhoodCache(null);
 
-		Simulator.appendLineLog("File Sharing System: User " + user.getUserName() + " has been removed from the File Sharing System");
+		users.remove(user);
+		recordChange(user, removedUsers, addedUsers);
+
+		if (changeRecorder != null)
+		{
+			changeRecorder.userDeactivated(user);
+			user.setChangeRecorder(null);
+		}
+
+		SimulationLog.getInstance().info("File Sharing System: User {} has been removed from the File Sharing System", user.getUserName());
 		return true;
 
 	}
@@ -143,66 +265,240 @@ public class FileSharingSystem implements Serializable
 		if (topK < 0)
 			topK = Math.abs(topK);
 
-		Simulator.appendLineLog("User: " + user.getUserName() + " has Searched for " + topK + " documents with Tag: " + tag);
-
-		List<Document> documentList = new ArrayList<>();
+		SimulationLog.getInstance().debug("User: {} has Searched for {} documents with Tag: {}", user.getUserName(), topK, tag);
 
-		// Copy the documents (matching tag) from the list model over to a list
-		// so it can be ranked. (We want to rank matching tags first)
-		for (int i = 0; i < documentsListModel.getSize(); i++)
+		// The documents are already ordered by popularity, so the top k can be
+		// read off without ranking
+		if (user.getDocumentRankingStrategy() == DocumentRankingStrategy.Strategy.DocumentPopularity)
 		{
-			if (documentsListModel.getElementAt(i).getTag().equals(tag))
-			{
-				documentList.add((documentsListModel.getElementAt(i)));
-			}
-
+			List<Document> rankedDocuments = searchByPopularity(tag, topK);
+			calculateProducerPayoffs(rankedDocuments);
+			return rankedDocuments;
 		}
 
-		// Get a list of ranked documents
-		List<Document> rankedDocuments = user.rankDocuments(documentList);
+		// Only the documents with a matching tag need to be ranked first (We
+		// want to rank matching tags first)
+		Map<Integer, Document> tagPostings = documentsByTag.get(tag);
+		List<Document> documentList = (tagPostings == null ? new ArrayList<>() : new ArrayList<>(tagPostings.values()));
 
-		// Only maintain the top k documents
-		if (rankedDocuments.size() >= topK)
-		{
-			rankedDocuments = rankedDocuments.subList(0, topK);
+		// Get a list of the top k ranked documents
+		List<Document> rankedDocuments = user.rankTopDocuments(documentList, topK);
 
-		}
 		// If there are spots that need to be filled in to match topK
 		// and there are un-ranked documents, we want to add filler documents
-		else if (documentsListModel.size() - rankedDocuments.size() > 0)
+		if (rankedDocuments.size() < topK && documents.size() - rankedDocuments.size() > 0)
 		{
 
 			// If the amount of ranked documents is less than size topK and
 			// there are documents that were not ranked we want to fill in the
-			// rest of the documents
-			List<Document> searchFiller = new ArrayList<>();
+			// rest of the documents. The other tags are only visited now that
+			// we know filler documents are required (We want to rank
+			// non-matching tags last - after matching tags)
+			List<Document> searchFiller = getDocumentsNotTagged(tag);
+
+			// We want to add the ranked (non tag-matching) documents to the end
+			// (after ranked tag-matching documents). Only the documents
+			// needed to match topK are ranked
+			rankedDocuments.addAll(user.rankTopDocuments(searchFiller, topK - rankedDocuments.size()));
+
+		}
+
+		calculateProducerPayoffs(rankedDocuments);
+		return rankedDocuments;
+	}
+
+	/**
+	 * We want to update the payoff for all of the producers every time their
+	 * documents are returned. Each producer is only refreshed once, even if
+	 * several of its documents are returned. If the refresh is deferred, the
+	 * producers are refreshed by the next refreshProducerPayoffs()
+	 * 
+	 * @param rankedDocuments The documents returned by a search
+	 * @author MVezina
+	 */
+	private void calculateProducerPayoffs(List<Document> rankedDocuments)
+	{
+		if (producersToRefresh == null)
+			producersToRefresh = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		for (Document d : rankedDocuments)
+		{
+			producersToRefresh.add(d.getProducer());
+		}
+
+		if (!deferPayoffRefresh)
+			refreshProducerPayoffs();
+	}
+
+	/**
+	 * Refreshes the payoff of every producer whose documents have been
+	 * returned by a search since the last refresh (Once per producer)
+	 * 
+	 * @author MVezina
+	 */
+	public void refreshProducerPayoffs()
+	{
+		if (producersToRefresh == null || producersToRefresh.isEmpty())
+			return;
+
+		for (Producer p : producersToRefresh)
+		{
+			p.calculatePayoff();
+		}
+
+		producersToRefresh.clear();
+	}
+
+	/**
+	 * Sets whether the payoffs of the producers returned by a search are
+	 * refreshed right away, or deferred until refreshProducerPayoffs() is
+	 * called (ex: Once per simulation step, no matter how many searches
+	 * happened)
+	 * 
+	 * @param deferPayoffRefresh Whether or not to defer the refresh
+	 * @author MVezina
+	 */
+	public void setDeferPayoffRefresh(boolean deferPayoffRefresh)
+	{
+		this.deferPayoffRefresh = deferPayoffRefresh;
+
+		if (!deferPayoffRefresh)
+			refreshProducerPayoffs();
+	}
+
+	/**
+	 * Sets whether the users whose payoff may have changed are tracked (see
+	 * takeChangedPayoffs())
+	 * 
+	 * @param trackPayoffs Whether or not to track the changed payoffs
+	 * @author MVezina
+	 */
+	public void setPayoffTracking(boolean trackPayoffs)
+	{
+		if (trackPayoffs == (payoffTracker != null))
+			return;
+
+		payoffTracker = (trackPayoffs ? new PayoffTracker() : null);
+		changedPayoffs = (trackPayoffs ? Collections.newSetFromMap(new IdentityHashMap<>()) : null);
+
+		for (User user : users.asList())
+		{
+			user.setPayoffTracker(payoffTracker);
+		}
+	}
+
+	/**
+	 * Gets the users whose payoff may have changed since the last call (or
+	 * since the tracking started), and starts tracking the changes again
+	 * 
+	 * @return The users whose payoff may have changed (Empty if the payoffs
+	 *         are not tracked)
+	 * @author MVezina
+	 */
+	public List<User> takeChangedPayoffs()
+	{
+		if (changedPayoffs == null || changedPayoffs.isEmpty())
+			return Collections.emptyList();
+
+		List<User> changedUsers = new ArrayList<>(changedPayoffs);
+		changedPayoffs.clear();
+		return changedUsers;
+	}
+
+	/**
+	 * Sets the journal that records the changes made to the system and its
+	 * users (uploads, registrations, likes / unlikes, follows / unfollows,
+	 * payoffs)
+	 * 
+	 * @param undoJournal The journal (null to stop recording the changes)
+	 * @author MVezina
+	 */
+	public void setUndoJournal(UndoJournal undoJournal)
+	{
+		this.undoJournal = undoJournal;
+
+		for (User user : users.asList())
+		{
+			user.setUndoJournal(undoJournal);
+		}
+	}
+
+	/**
+	 * Sets the recorder that records the changes made to the system and its
+	 * users as they are made (ex: To an event log)
+	 * 
+	 * @param changeRecorder The recorder (null to stop recording the changes)
+	 * @author MVezina
+	 */
+	public void setChangeRecorder(ChangeRecorder changeRecorder)
+	{
+		this.changeRecorder = changeRecorder;
+
+		for (User user : users.asList())
+		{
+			user.setChangeRecorder(changeRecorder);
+		}
+	}
+
+	/**
+	 * @return The journal that records the changes (null if the changes are
+	 *         not recorded)
+	 * @author MVezina
+	 */
+	public UndoJournal getUndoJournal()
+	{
+		return undoJournal;
+	}
+
+	/**
+	 * Gets the top k most popular documents. The documents with a matching tag
+	 * are returned first, followed by the most popular documents of all other
+	 * tags (The same results as ranking with the Document Popularity strategy)
+	 * 
+	 * @param tag The tag to search for
+	 * @param topK Number of results to be returned
+	 * @return The top K most popular documents
+	 * @author MVezina
+	 */
+	private List<Document> searchByPopularity(String tag, int topK)
+	{
+		List<Document> rankedDocuments = new ArrayList<>();
 
-			// Copy the documents (not matching tag) from the list model over to
-			// a list so it can be ranked. (We want to rank non-matching tags
-			// last - after matching tags)
-			for (int i = 0; i < documentsListModel.getSize(); i++)
+		DocumentPopularityIndex tagPopularity = popularityByTag.get(tag);
+		if (tagPopularity != null)
+		{
+			Iterator<Document> it = tagPopularity.iterator();
+			while (rankedDocuments.size() < topK && it.hasNext())
 			{
-				if (!documentsListModel.getElementAt(i).getTag().equals(tag))
-				{
-					searchFiller.add((documentsListModel.getElementAt(i)));
-				}
+				rankedDocuments.add(it.next());
 			}
+		}
 
-			// We want to add the ranked (non tag-matching) documents to the end
-			// (after ranked tag-matching documents)
+		if (rankedDocuments.size() == topK)
+			return rankedDocuments;
+
+		// Fill in the rest with the most popular documents of the other tags.
+		// The popularity order of each tag is merged, so only the needed
+		// documents are visited
+		PriorityQueue<PopularityCursor> cursors = new PriorityQueue<>();
 
-			// Determine where to cut off the list (so that we can match topK
-			// documents)
-			int endIndex = Math.min(searchFiller.size(), topK - rankedDocuments.size());
-			rankedDocuments.addAll(user.rankDocuments(searchFiller).subList(0, endIndex));
+		for (Map.Entry<String, DocumentPopularityIndex> popularity : popularityByTag.entrySet())
+		{
+			if (popularity.getKey() == null ? tag == null : popularity.getKey().equals(tag))
+				continue;
 
+			PopularityCursor cursor = new PopularityCursor(popularity.getValue().iterator());
+			if (cursor.current != null)
+				cursors.add(cursor);
 		}
 
-		// We want to update the payoff for all of the producers every time
-		// their documents are returned
-		for (Document d : rankedDocuments)
+		while (rankedDocuments.size() < topK && !cursors.isEmpty())
 		{
-			d.getProducer().calculatePayoff();
+			PopularityCursor cursor = cursors.poll();
+			rankedDocuments.add(cursor.current);
+
+			if (cursor.advance())
+				cursors.add(cursor);
 		}
 
 		return rankedDocuments;
@@ -221,6 +517,109 @@ public class FileSharingSystem implements Serializable
 		return search(user, user.getTaste(), topK);
 	}
 
+	/**
+	 * Merges the postings of every tag other than the specified tag. The
+	 * postings of each tag are already ordered by document ID, so they are
+	 * merged to keep the documents in the order they were uploaded
+	 * 
+	 * @param tag The tag to exclude
+	 * @return All documents that do not have the specified tag (In order of
+	 *         document ID)
+	 * @author MVezina
+	 */
+	private List<Document> getDocumentsNotTagged(String tag)
+	{
+		List<Document> documentList = new ArrayList<>();
+
+		// Holds the next document of each tag's postings, the lowest document
+		// ID is always at the head of the queue
+		PriorityQueue<PostingsCursor> cursors = new PriorityQueue<>();
+
+		for (Map.Entry<String, Map<Integer, Document>> postings : documentsByTag.entrySet())
+		{
+			if (postings.getKey() == null ? tag == null : postings.getKey().equals(tag))
+				continue;
+
+			PostingsCursor cursor = new PostingsCursor(postings.getValue().values().iterator());
+			if (cursor.current != null)
+				cursors.add(cursor);
+		}
+
+		while (!cursors.isEmpty())
+		{
+			PostingsCursor cursor = cursors.poll();
+			documentList.add(cursor.current);
+
+			// Move to the next document of the tag (if any)
+			if (cursor.advance())
+				cursors.add(cursor);
+		}
+
+		return documentList;
+	}
+
+	/**
+	 * Adds the document to the postings of its tag
+	 * 
+	 * @param doc The document to index
+	 * @author MVezina
+	 */
+	private void indexDocument(Document doc)
+	{
+		Map<Integer, Document> postings = documentsByTag.get(doc.getTag());
+
+		if (postings == null)
+		{
+			postings = new LinkedHashMap<>();
+			documentsByTag.put(doc.getTag(), postings);
+		}
+
+		postings.put(doc.getDocumentID(), doc);
+
+		DocumentPopularityIndex popularity = popularityByTag.get(doc.getTag());
+
+		if (popularity == null)
+		{
+			popularity = new DocumentPopularityIndex();
+			popularityByTag.put(doc.getTag(), popularity);
+		}
+
+		popularity.add(doc);
+		doc.addLikeListener(popularityListener);
+	}
+
+	/**
+	 * Removes the document from the postings of its tag
+	 * 
+	 * @param doc The document to remove from the index
+	 * @author MVezina
+	 */
+	private void unindexDocument(Document doc)
+	{
+		doc.removeLikeListener(popularityListener);
+
+		DocumentPopularityIndex popularity = popularityByTag.get(doc.getTag());
+
+		if (popularity != null)
+		{
+			popularity.remove(doc);
+
+			if (popularity.size() == 0)
+				popularityByTag.remove(doc.getTag());
+		}
+
+		Map<Integer, Document> postings = documentsByTag.get(doc.getTag());
+
+		if (postings == null)
+			return;
+
+		postings.remove(doc.getDocumentID());
+
+		// Drop tags that no longer have any documents
+		if (postings.isEmpty())
+			documentsByTag.remove(doc.getTag());
+	}
+
 	/**
 	 * @author Justin Krol Add a document to the File Sharing System if it has
 	 *         not already been added
@@ -233,15 +632,24 @@ public class FileSharingSystem implements Serializable
 	{
 		if (doc != null)
 		{
-			if (documentsListModel.contains(doc))
+			if (findDocument(doc) != null)
 			{
 				System.out.println("Document has already been added to the File Sharing System");
 				return false;
 			}
 
 			doc.setDocumentID(nextAvailableDocID++);
-			documentsListModel.addElement(doc);
-			Simulator.appendLineLog("File Sharing System: Document '" + doc.getDocumentName() + "' has been uploaded");
+			documents.add(doc.getDocumentID(), doc);
+			recordChange(doc, addedDocuments, removedDocuments);
+			indexDocument(doc);
+
+			if (undoJournal != null && undoJournal.isRecording())
+				undoJournal.record(() -> undoAddDocument(doc), () -> addDocument(doc));
+
+			if (changeRecorder != null)
+				changeRecorder.documentUploaded(doc);
+
+			SimulationLog.getInstance().info("File Sharing System: Document '{}' has been uploaded", doc.getDocumentName());
 
 			return true;
 		}
@@ -249,6 +657,20 @@ public class FileSharingSystem implements Serializable
 		return false;
 	}
 
+	/**
+	 * Undoes the upload of the last added document. The document had the last
+	 * ID, so the ID can be given out again
+	 * 
+	 * @param doc The last added document
+	 * @author MVezina
+	 */
+	private void undoAddDocument(Document doc)
+	{
+		removeDocument(doc);
+		doc.setDocumentID(0);
+		nextAvailableDocID--;
+	}
+
 	/**
 	 * @author Justin Krol Remove a document from the File Sharing System if it
 	 *         has been added
@@ -261,20 +683,29 @@ public class FileSharingSystem implements Serializable
 	{
 		if (doc != null)
 		{
-			if (!documentsListModel.contains(doc))
+			// Get the registered instance of the document
+			doc = findDocument(doc);
+			if (doc == null)
 			{
 				// System.out.println("User is not currently registered on the
 				// File Sharing System");
 				return false;
 			}
 
-			// Remove the document from all users 'likes'
-			for (int i = 0; i < doc.getUserLikes().size(); i++)
+			// Remove the document from all users 'likes' (Over a copy, since
+			// every unlike modifies the list)
+			for (User u : new ArrayList<>(doc.getUserLikes()))
 			{
-				doc.getUserLikes().get(i).unlikeDocument(doc);
+				u.unlikeDocument(doc);
 			}
 
-			documentsListModel.removeElement(doc);
+			documents.remove(doc);
+			recordChange(doc, removedDocuments, addedDocuments);
+			unindexDocument(doc);
+
+			if (changeRecorder != null)
+				changeRecorder.documentRemoved(doc);
+
 			return true;
 		}
 		// System.out.println("No user object to remove (null)");
@@ -283,59 +714,264 @@ public class FileSharingSystem implements Serializable
 
 	/**
 	 * @author Justin Krol Getter for the documents list
-	 * @return list of documents
+	 * @return Read-only view of all documents (Not a copy, it reflects later
+	 *         changes)
 	 */
 	public List<Document> getAllDocuments()
 	{
-		List<Document> documentList = new ArrayList<>();
+		return documents.asList();
+	}
 
-		// Copy the documents over to the list
-		for (int i = 0; i < documentsListModel.getSize(); i++)
+	/**
+	 * Gets a registered document by its ID
+	 * 
+	 * @param id The ID of the document
+	 * @return The document with the specified ID (null if there is no such
+	 *         document)
+	 * @author MVezina
+	 */
+	public Document getDocument(int id)
+	{
+		return documents.get(id);
+	}
+
+	/**
+	 * Gets a registered user by its ID
+	 * 
+	 * @param id The ID of the user
+	 * @return The user with the specified ID (null if there is no such user)
+	 * @author MVezina
+	 */
+	public User getUser(int id)
+	{
+		return users.get(id);
+	}
+
+	/**
+	 * Gets the registered instance of the specified user. Users are matched by
+	 * reference first, and then by ID (Registered users are equal if their IDs
+	 * are equal)
+	 * 
+	 * @param user The user to look for
+	 * @return The registered user (null if the user is not registered)
+	 * @author MVezina
+	 */
+	private User findUser(User user)
+	{
+		if (users.contains(user))
+			return user;
+
+		User registeredUser = users.get(user.getUserID());
+		return (registeredUser != null && registeredUser.equals(user) ? registeredUser : null);
+	}
+
+	/**
+	 * Gets the registered instance of the specified document
+	 * 
+	 * @param doc The document to look for
+	 * @return The registered document (null if the document has not been
+	 *         added)
+	 * @author MVezina
+	 */
+	private Document findDocument(Document doc)
+	{
+		if (documents.contains(doc))
+			return doc;
+
+		Document registeredDoc = documents.get(doc.getDocumentID());
+		return (registeredDoc != null && registeredDoc.equals(doc) ? registeredDoc : null);
+	}
+
+	/**
+	 * @author Justin Krol Getter for the list of users
+	 * @return Read-only view of all users (Not a copy, it reflects later
+	 *         changes)
+	 */
+	public List<User> getUsers()
+	{
+		return users.asList();
+	}
+
+	/**
+	 * Gets the ID a user was registered with (The ID of the user, unless the
+	 * user was registered without calling User.registerUser(..))
+	 * 
+	 * @param user The registered user
+	 * @return The ID the user was registered with (-1 if not registered)
+	 * @author MVezina
+	 */
+	public int getRegisteredID(User user)
+	{
+		return users.getID(user);
+	}
+
+	/**
+	 * @return The ID that will be given to the next registered user
+	 * @author MVezina
+	 */
+	public int getNextAvailableUserID()
+	{
+		return nextAvailableUserID;
+	}
+
+	/**
+	 * @return The ID that will be given to the next added document
+	 * @author MVezina
+	 */
+	public int getNextAvailableDocID()
+	{
+		return nextAvailableDocID;
+	}
+
+	/**
+	 * Sets whether the follow relation between the registered users is also
+	 * kept as a compact follow graph (Used by traversals of the friend
+	 * network, ex: The User Distance strategy)
+	 * 
+	 * @param followGraphEnabled Whether or not to keep a follow graph
+	 * @author MVezina
+	 */
+	public void setFollowGraphEnabled(boolean followGraphEnabled)
+	{
+		this.followGraphEnabled = followGraphEnabled;
+
+		if (followGraphEnabled)
 		{
-			documentList.add((documentsListModel.getElementAt(i)));
+			getFollowGraph();
 		}
+		else if (followGraph != null)
+		{
+			followGraph.clear();
+			followGraph = null;
+		}
+	}
 
-		return documentList;
+	/**
+	 * @return The cache of the friend neighbourhoods of the users (Used by the
+	 *         User Distance strategy)
+	 * @author MVezina
+	 */
+	public NeighbourhoodCache getNeighbourhoodCache()
+	{
+		if (neighbourhoodCache == null)
+			neighbourhoodCache = new NeighbourhoodCache();
+
+		return neighbourhoodCache;
 	}
 
 	/**
-	 * Gets the Document List Model
+	 * Gets the compact follow graph of the registered users. The vertex of
+	 * every user is its ID in the registry
 	 * 
+	 * @return The follow graph (null if it is not enabled)
 	 * @author MVezina
-	 * @return Document List Model
 	 */
-	public DefaultListModel<Document> getDocumentsListModel()
+	public FollowGraph getFollowGraph()
 	{
-		return this.documentsListModel;
+		if (!followGraphEnabled)
+			return null;
+
+		if (followGraph == null)
+		{
+			followGraph = new FollowGraph();
+
+			for (User user : users.asList())
+			{
+				followGraph.addUser(user, users.getID(user));
+			}
+
+			followGraph.compact();
+		}
+
+		return followGraph;
 	}
 
 	/**
-	 * Gets the User List Model
+	 * Subscribes a listener to the users / documents that are registered or
+	 * removed. The changes are delivered when flushChanges() is called
 	 * 
+	 * @param fssListener The listener to add
+	 * @author MVezina
+	 */
+	public void addFileSharingSystemListener(FileSharingSystemListener fssListener)
+	{
+		if (fssListener == null)
+			return;
+
+		// Changes are only recorded while there are listeners
+		if (fssListeners == null)
+		{
+			fssListeners = new ArrayList<>();
+			addedUsers = new ArrayList<>();
+			removedUsers = new ArrayList<>();
+			addedDocuments = new ArrayList<>();
+			removedDocuments = new ArrayList<>();
+		}
+
+		if (!fssListeners.contains(fssListener))
+			fssListeners.add(fssListener);
+	}
+
+	/**
+	 * @param fssListener The listener to remove
+	 * @return Whether or not the listener was removed
 	 * @author MVezina
-	 * @return User List Model
 	 */
+	public boolean removeFileSharingSystemListener(FileSharingSystemListener fssListener)
+	{
+		return fssListeners != null && fssListeners.remove(fssListener);
+	}
 
-	public DefaultListModel<User> getUsersListModel()
+	/**
+	 * Delivers all changes since the last flush to the listeners (as one
+	 * batch)
+	 * 
+	 * @author MVezina
+	 */
+	public void flushChanges()
 	{
-		return this.usersListModel;
+		if (fssListeners == null || (addedUsers.isEmpty() && removedUsers.isEmpty() && addedDocuments.isEmpty() && removedDocuments.isEmpty()))
+			return;
+
+		FileSharingSystemEvent fssEvent = new FileSharingSystemEvent(this, false, addedUsers, removedUsers, addedDocuments, removedDocuments);
+
+		// Start a new batch
+		addedUsers = new ArrayList<>();
+		removedUsers = new ArrayList<>();
+		addedDocuments = new ArrayList<>();
+		removedDocuments = new ArrayList<>();
+
+		for (FileSharingSystemListener fssListener : fssListeners)
+		{
+			fssListener.fileSharingSystemChanged(fssEvent);
+		}
 	}
 
 	/**
-	 * @author Justin Krol Getter for the list of users
-	 * @return list of users
+	 * Records a user / document that was added or removed (if there are any
+	 * listeners). An item that is changed back within the same batch cancels
+	 * out the previous change
+	 * 
+	 * @param item The user / document that changed
+	 * @param changes The list of changes for the item's change
+	 * @param oppositeChanges The list of changes that cancel out the change
+	 * @author MVezina
 	 */
-	public List<User> getUsers()
+	private <T> void recordChange(T item, List<T> changes, List<T> oppositeChanges)
 	{
-		List<User> userList = new ArrayList<>();
+		if (fssListeners == null)
+			return;
 
-		// Copy the documents over to the list
-		for (int i = 0; i < usersListModel.getSize(); i++)
+		for (int i = 0; i < oppositeChanges.size(); i++)
 		{
-			userList.add((usersListModel.getElementAt(i)));
+			if (oppositeChanges.get(i) == item)
+			{
+				oppositeChanges.remove(i);
+				return;
+			}
 		}
 
-		return userList;
+		changes.add(item);
 	}
 
 	/**
@@ -369,6 +1005,67 @@ public class FileSharingSystem implements Serializable
 		return tags;
 	}
 
+	/**
+	 * Registers a user read from a saved state with the ID it was registered
+	 * with. Unlike registerUser(..), the user's payoff and changes are not
+	 * tracked and nothing is logged: The system is only built up to restore
+	 * another system with restoreState(..)
+	 * 
+	 * @param id The ID the user was registered with
+	 * @param user The user to register
+	 * @return Whether or not the user was registered (false if the user or
+	 *         the ID is already registered)
+	 * @author MVezina
+	 */
+	public boolean restoreUser(int id, User user)
+	{
+		if (!users.add(id, user))
+			return false;
+
+		// The follow graph is rebuilt once the relations are restored
+		if (followGraph != null)
+		{
+			followGraph.clear();
+			followGraph = null;
+		}
+
+		recordChange(user, addedUsers, removedUsers);
+		return true;
+	}
+
+	/**
+	 * Adds a document read from a saved state with the ID it already has (see
+	 * restoreUser(..)). The document is only indexed by the system it is
+	 * restored into
+	 * 
+	 * @param doc The document to add
+	 * @return Whether or not the document was added (false if the document or
+	 *         its ID has already been added)
+	 * @author MVezina
+	 */
+	public boolean restoreDocument(Document doc)
+	{
+		if (!documents.add(doc.getDocumentID(), doc))
+			return false;
+
+		recordChange(doc, addedDocuments, removedDocuments);
+		return true;
+	}
+
+	/**
+	 * Sets the IDs that will be given to the next registered user / added
+	 * document (ex: The IDs of a saved state)
+	 * 
+	 * @param nextAvailableUserID The ID of the next registered user
+	 * @param nextAvailableDocID The ID of the next added document
+	 * @author MVezina
+	 */
+	public void restoreNextAvailableIDs(int nextAvailableUserID, int nextAvailableDocID)
+	{
+		this.nextAvailableUserID = nextAvailableUserID;
+		this.nextAvailableDocID = nextAvailableDocID;
+	}
+
 	/**
 	 * Restores a previous state given the specified FileSharingSystem
 	 * 
@@ -380,21 +1077,205 @@ public class FileSharingSystem implements Serializable
 		this.nextAvailableUserID = fileSharingSystem.nextAvailableUserID;
 		this.nextAvailableDocID = fileSharingSystem.nextAvailableDocID;
 
-		this.usersListModel.clear();
-		this.documentsListModel.clear();
+		this.users = new Registry<>();
+		this.documents = new Registry<>();
+		this.documentsByTag = new HashMap<>();
+		this.popularityByTag = new HashMap<>();
+
+		// The follow graph is rebuilt from the restored users (which can only
+		// be in one graph at a time)
+		if (followGraph != null)
+		{
+			followGraph.clear();
+			followGraph = null;
+		}
+
+		if (fileSharingSystem.followGraph != null)
+		{
+			fileSharingSystem.followGraph.clear();
+			fileSharingSystem.followGraph = null;
+		}
+
+		if (changedPayoffs != null)
+			changedPayoffs.clear();
+
+		// The neighbourhoods of the replaced users are keyed by the same IDs
+		getNeighbourhoodCache().clear();
+
+		for (User user : fileSharingSystem.getUsers())
+		{
+			this.users.add(fileSharingSystem.users.getID(user), user);
+			user.setNeighbourhoodCache(neighbourhoodCache);
+
+			// Every restored user is recorded again
+			if (payoffTracker != null)
+			{
+				user.setPayoffTracker(payoffTracker);
+				changedPayoffs.add(user);
+			}
 
-		DefaultListModel<Document> docsList = fileSharingSystem.documentsListModel;
-		DefaultListModel<User> userList = fileSharingSystem.usersListModel;
-		for (int i = 0; i < userList.size(); i++)
+			user.setUndoJournal(undoJournal);
+			user.setChangeRecorder(changeRecorder);
+		}
+
+		for (Document doc : fileSharingSystem.getAllDocuments())
 		{
-			this.usersListModel.addElement(userList.getElementAt(i));
+			// The popularity of the documents is now kept by this system
+			if (fileSharingSystem.popularityListener != null)
+				doc.removeLikeListener(fileSharingSystem.popularityListener);
+
+			this.documents.add(doc.getDocumentID(), doc);
 		}
 
-		for (int i = 0; i < docsList.size(); i++)
+		// The postings of each tag are kept in order of document ID (The
+		// registry keeps the order the documents were restored in)
+		List<Document> documentsByID = new ArrayList<>(fileSharingSystem.getAllDocuments());
+		documentsByID.sort(Comparator.comparingInt(Document::getDocumentID));
+
+		for (Document doc : documentsByID)
 		{
-			this.documentsListModel.addElement(docsList.getElementAt(i));
+			indexDocument(doc);
 		}
 
+		if (followGraphEnabled)
+			getFollowGraph();
+
+		// Every user / document has been replaced, so listeners must re-read
+		// everything (pending changes are no longer relevant)
+		if (fssListeners != null)
+		{
+			addedUsers.clear();
+			removedUsers.clear();
+			addedDocuments.clear();
+			removedDocuments.clear();
+
+			FileSharingSystemEvent fssEvent = new FileSharingSystemEvent(this, true, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+			for (FileSharingSystemListener fssListener : fssListeners)
+			{
+				fssListener.fileSharingSystemChanged(fssEvent);
+			}
+		}
+
+	}
+
+	/**
+	 * Iterates over the postings of a single tag while merging the postings of
+	 * multiple tags. Cursors are ordered by the ID of their current document
+	 * 
+	 * @author MVezina
+	 */
+	private static class PostingsCursor implements Comparable<PostingsCursor>
+	{
+		private Iterator<Document> postings;
+		private Document current;
+
+		public PostingsCursor(Iterator<Document> postings)
+		{
+			this.postings = postings;
+			advance();
+		}
+
+		/**
+		 * Moves the cursor to the next document
+		 * 
+		 * @return Whether or not there was another document
+		 */
+		public boolean advance()
+		{
+			current = (postings.hasNext() ? postings.next() : null);
+			return current != null;
+		}
+
+		@Override
+		public int compareTo(PostingsCursor o)
+		{
+			return Integer.compare(current.getDocumentID(), o.current.getDocumentID());
+		}
+	}
+
+	/**
+	 * Iterates over the popularity order of a single tag while merging the
+	 * popularity orders of multiple tags. Cursors are ordered by the
+	 * popularity of their current document (Most popular first)
+	 * 
+	 * @author MVezina
+	 */
+	private static class PopularityCursor implements Comparable<PopularityCursor>
+	{
+		private Iterator<Document> documents;
+		private Document current;
+		private long currentKey;
+
+		public PopularityCursor(Iterator<Document> documents)
+		{
+			this.documents = documents;
+			advance();
+		}
+
+		/**
+		 * Moves the cursor to the next document
+		 * 
+		 * @return Whether or not there was another document
+		 */
+		public boolean advance()
+		{
+			current = (documents.hasNext() ? documents.next() : null);
+			if (current != null)
+				currentKey = DocumentPopularityIndex.getKey(current);
+
+			return current != null;
+		}
+
+		@Override
+		public int compareTo(PopularityCursor o)
+		{
+			return Long.compare(o.currentKey, currentKey);
+		}
+	}
+
+	/**
+	 * Collects the users whose payoff may have changed
+	 * 
+	 * @author MVezina
+	 */
+	private class PayoffTracker implements UserPayoffTracker
+	{
+		@Override
+		public void payoffChanged(User user)
+		{
+			changedPayoffs.add(user);
+		}
+	}
+
+	/**
+	 * Keeps the popularity order of the documents up to date as they are liked
+	 * and unliked
+	 * 
+	 * @author MVezina
+	 */
+	private class PopularityListener implements DocumentLikeListener
+	{
+		private static final long serialVersionUID = 2183416938469046227L;
+
+		@Override
+		public void DocumentLiked(DocumentLikeEvent docLikeEvent)
+		{
+			updatePopularity(docLikeEvent.getDocument());
+		}
+
+		@Override
+		public void DocumentUnliked(DocumentLikeEvent docLikeEvent)
+		{
+			updatePopularity(docLikeEvent.getDocument());
+		}
+
+		private void updatePopularity(Document doc)
+		{
+			DocumentPopularityIndex popularity = popularityByTag.get(doc.getTag());
+
+			if (popularity != null)
+				popularity.update(doc);
+		}
 	}
 
 }
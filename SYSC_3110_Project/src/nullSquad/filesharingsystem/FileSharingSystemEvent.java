@@ -0,0 +1,96 @@
+package nullSquad.filesharingsystem;
+
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.List;
+
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.User;
+
+/**
+ * Event for a batch of changes to the users / documents of a File Sharing
+ * System
+ * 
+ * @author MVezina
+ */
+public class FileSharingSystemEvent extends EventObject
+{
+	private static final long serialVersionUID = -6210474911584093425L;
+
+	private boolean reset;
+	private List<User> addedUsers;
+	private List<User> removedUsers;
+	private List<Document> addedDocuments;
+	private List<Document> removedDocuments;
+
+	/**
+	 * Creates an event for a batch of changes
+	 * 
+	 * @param source The File Sharing System that changed
+	 * @param reset Whether or not all users and documents were replaced
+	 * @param addedUsers The users that were registered
+	 * @param removedUsers The users that were deactivated
+	 * @param addedDocuments The documents that were added
+	 * @param removedDocuments The documents that were removed
+	 * @author MVezina
+	 */
+	public FileSharingSystemEvent(FileSharingSystem source, boolean reset, List<User> addedUsers, List<User> removedUsers, List<Document> addedDocuments, List<Document> removedDocuments)
+	{
+		super(source);
+		this.reset = reset;
+		this.addedUsers = Collections.unmodifiableList(addedUsers);
+		this.removedUsers = Collections.unmodifiableList(removedUsers);
+		this.addedDocuments = Collections.unmodifiableList(addedDocuments);
+		this.removedDocuments = Collections.unmodifiableList(removedDocuments);
+	}
+
+	/**
+	 * @return The File Sharing System that changed
+	 */
+	public FileSharingSystem getFileSharingSystem()
+	{
+		return (FileSharingSystem) getSource();
+	}
+
+	/**
+	 * @return Whether or not all of the users and documents were replaced (ex:
+	 *         a state was restored). Listeners should re-read all users and
+	 *         documents from the File Sharing System
+	 */
+	public boolean isReset()
+	{
+		return reset;
+	}
+
+	/**
+	 * @return The users that were registered
+	 */
+	public List<User> getAddedUsers()
+	{
+		return addedUsers;
+	}
+
+	/**
+	 * @return The users that were deactivated
+	 */
+	public List<User> getRemovedUsers()
+	{
+		return removedUsers;
+	}
+
+	/**
+	 * @return The documents that were added
+	 */
+	public List<Document> getAddedDocuments()
+	{
+		return addedDocuments;
+	}
+
+	/**
+	 * @return The documents that were removed
+	 */
+	public List<Document> getRemovedDocuments()
+	{
+		return removedDocuments;
+	}
+}
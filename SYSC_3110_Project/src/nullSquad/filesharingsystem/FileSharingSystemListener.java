@@ -0,0 +1,15 @@
+package nullSquad.filesharingsystem;
+
+import java.util.EventListener;
+
+/**
+ * Used for components (such as the GUI) to subscribe to the users / documents
+ * that are registered on or removed from a File Sharing System. Changes are
+ * delivered in batches whenever the File Sharing System flushes its changes
+ * 
+ * @author MVezina
+ */
+public interface FileSharingSystemListener extends EventListener
+{
+	public void fileSharingSystemChanged(FileSharingSystemEvent fssEvent);
+}
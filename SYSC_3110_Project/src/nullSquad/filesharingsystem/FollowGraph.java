@@ -0,0 +1,653 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.filesharingsystem;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import nullSquad.filesharingsystem.users.User;
+
+/**
+ * A compact copy of the follow relation between the registered users of a
+ * File Sharing System. Every user is numbered by its registry ID (a vertex),
+ * and the followers / followees of every vertex are stored in primitive int
+ * arrays (Compressed sparse rows: The sorted neighbours of vertex v are
+ * targets[offsets[v] .. offsets[v + 1]) ).
+ *
+ * Follows added since the last compaction are kept in a small buffer per
+ * vertex, and removed follows are only marked as removed. Once the number of
+ * pending changes grows past a fraction of the number of follows, the rows
+ * are rebuilt (compacted).
+ *
+ * The users' own lists remain the source of truth: The graph is notified by
+ * the followed user whenever a follow is added or removed, and can always be
+ * rebuilt from the lists. Traversals go through the int-based neighbour
+ * iterators, so they do not touch the user objects at all.
+ *
+ * @author MVezina
+ */
+public class FollowGraph
+{
+	// The least number of pending changes before the rows are compacted
+	private static final int MIN_PENDING_CHANGES = 1024;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Vertex -> User (null if no user has the vertex)
+	private User[] users;
+	private int userCount;
+
+	// Follower -> Followees, and Followee -> Followers
+	private final Adjacency following;
+	private final Adjacency followers;
+	private int followCount;
+
+	private int modCount;
+
+	/**
+	 * Creates an empty follow graph
+	 *
+	 * @author MVezina
+	 */
+	public FollowGraph()
+	{
+		users = new User[INITIAL_CAPACITY];
+		following = new Adjacency(INITIAL_CAPACITY);
+		followers = new Adjacency(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Adds the user to the graph with the specified vertex, along with all of
+	 * its follows to / from users that are already in the graph
+	 *
+	 * @param user The user to add
+	 * @param vertex The vertex of the user (The ID of the user in the
+	 *            registry)
+	 * @return Whether or not the user was added (false if the user or the
+	 *         vertex is already in a graph)
+	 * @author MVezina
+	 */
+	boolean addUser(User user, int vertex)
+	{
+		if (user == null || vertex <= 0 || user.getFollowGraph() != null)
+			return false;
+
+		ensureCapacity(vertex + 1);
+
+		if (users[vertex] != null)
+			return false;
+
+		users[vertex] = user;
+		userCount++;
+		user.setFollowGraph(this, vertex);
+
+		for (User u : user.getFollowing())
+		{
+			if (u.getFollowGraph() == this)
+				addFollow(vertex, u.getFollowGraphVertex());
+		}
+
+		for (User u : user.getFollowers())
+		{
+			if (u.getFollowGraph() == this)
+				addFollow(u.getFollowGraphVertex(), vertex);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the user and all of its follows from the graph
+	 *
+	 * @param user The user to remove
+	 * @return Whether or not the user was removed
+	 * @author MVezina
+	 */
+	boolean removeUser(User user)
+	{
+		if (user == null || user.getFollowGraph() != this)
+			return false;
+
+		int vertex = user.getFollowGraphVertex();
+
+		for (int followee : toArray(following(vertex)))
+		{
+			removeFollow(vertex, followee);
+		}
+
+		for (int follower : toArray(followers(vertex)))
+		{
+			removeFollow(follower, vertex);
+		}
+
+		users[vertex] = null;
+		userCount--;
+		user.setFollowGraph(null, 0);
+		return true;
+	}
+
+	/**
+	 * Removes every user from the graph (The graph is no longer kept up to
+	 * date once the users are removed)
+	 *
+	 * @author MVezina
+	 */
+	void clear()
+	{
+		for (int vertex = 0; vertex < users.length; vertex++)
+		{
+			if (users[vertex] != null)
+				users[vertex].setFollowGraph(null, 0);
+		}
+
+		Arrays.fill(users, null);
+		userCount = 0;
+		following.reset(users.length);
+		followers.reset(users.length);
+		followCount = 0;
+		modCount++;
+	}
+
+	/**
+	 * Called by the followed user when it gains a follower
+	 *
+	 * @param follower The user that followed
+	 * @param followee The user that was followed
+	 * @author MVezina
+	 */
+	public void followAdded(User follower, User followee)
+	{
+		if (follower.getFollowGraph() == this && followee.getFollowGraph() == this)
+			addFollow(follower.getFollowGraphVertex(), followee.getFollowGraphVertex());
+	}
+
+	/**
+	 * Called by the followed user when it loses a follower
+	 *
+	 * @param follower The user that unfollowed
+	 * @param followee The user that was unfollowed
+	 * @author MVezina
+	 */
+	public void followRemoved(User follower, User followee)
+	{
+		if (follower.getFollowGraph() == this && followee.getFollowGraph() == this)
+			removeFollow(follower.getFollowGraphVertex(), followee.getFollowGraphVertex());
+	}
+
+	private void addFollow(int follower, int followee)
+	{
+		if (!following.add(follower, followee))
+			return;
+
+		followers.add(followee, follower);
+		followCount++;
+		modCount++;
+		compactIfNeeded();
+	}
+
+	private void removeFollow(int follower, int followee)
+	{
+		if (!following.remove(follower, followee))
+			return;
+
+		followers.remove(followee, follower);
+		followCount--;
+		modCount++;
+		compactIfNeeded();
+	}
+
+	private void compactIfNeeded()
+	{
+		if (following.getPendingChanges() > Math.max(MIN_PENDING_CHANGES, followCount / 4))
+			compact();
+	}
+
+	/**
+	 * Merges all pending changes into the rows. Iterators that are already
+	 * open are not affected
+	 *
+	 * @author MVezina
+	 */
+	public void compact()
+	{
+		following.compact(users.length);
+		followers.compact(users.length);
+	}
+
+	/**
+	 * @param follower The vertex of the follower
+	 * @param followee The vertex of the followee
+	 * @return Whether or not the follower follows the followee
+	 * @author MVezina
+	 */
+	public boolean isFollowing(int follower, int followee)
+	{
+		return following.contains(follower, followee);
+	}
+
+	/**
+	 * Iterates over the vertices of the users following the specified user
+	 * (The graph must not be changed while iterating)
+	 *
+	 * @param vertex The vertex of the user
+	 * @return The vertices of the followers
+	 * @author MVezina
+	 */
+	public PrimitiveIterator.OfInt followers(int vertex)
+	{
+		return new NeighbourIterator(followers, vertex);
+	}
+
+	/**
+	 * Iterates over the vertices of the users followed by the specified user
+	 * (The graph must not be changed while iterating)
+	 *
+	 * @param vertex The vertex of the user
+	 * @return The vertices of the followees
+	 * @author MVezina
+	 */
+	public PrimitiveIterator.OfInt following(int vertex)
+	{
+		return new NeighbourIterator(following, vertex);
+	}
+
+	/**
+	 * @param vertex The vertex of the user
+	 * @return The number of followers of the user
+	 * @author MVezina
+	 */
+	public int getFollowerCount(int vertex)
+	{
+		return followers.degree(vertex);
+	}
+
+	/**
+	 * @param vertex The vertex of the user
+	 * @return The number of users followed by the user
+	 * @author MVezina
+	 */
+	public int getFollowingCount(int vertex)
+	{
+		return following.degree(vertex);
+	}
+
+	/**
+	 * @param vertex The vertex of the user
+	 * @return The user with the vertex (null if there is no such user)
+	 * @author MVezina
+	 */
+	public User getUser(int vertex)
+	{
+		return (vertex >= 0 && vertex < users.length ? users[vertex] : null);
+	}
+
+	/**
+	 * @return The number of users in the graph
+	 * @author MVezina
+	 */
+	public int getUserCount()
+	{
+		return userCount;
+	}
+
+	/**
+	 * @return The number of follows in the graph
+	 * @author MVezina
+	 */
+	public int getFollowCount()
+	{
+		return followCount;
+	}
+
+	/**
+	 * @return The number of follows added or removed since the last
+	 *         compaction
+	 * @author MVezina
+	 */
+	public int getPendingChanges()
+	{
+		return following.getPendingChanges();
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= users.length)
+			return;
+
+		int newCapacity = Math.max(capacity, users.length * 2);
+		users = Arrays.copyOf(users, newCapacity);
+		following.ensureCapacity(newCapacity);
+		followers.ensureCapacity(newCapacity);
+	}
+
+	private static int[] toArray(PrimitiveIterator.OfInt it)
+	{
+		int[] values = new int[INITIAL_CAPACITY];
+		int count = 0;
+
+		while (it.hasNext())
+		{
+			if (count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+
+			values[count++] = it.nextInt();
+		}
+
+		return Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * The neighbours of every vertex in one direction of the follow relation
+	 *
+	 * @author MVezina
+	 */
+	private static final class Adjacency
+	{
+		// Compacted rows: The sorted neighbours of vertex v are
+		// targets[offsets[v] .. offsets[v + 1])
+		private int[] offsets;
+		private int[] targets;
+
+		// Compacted neighbours removed since the last compaction (by position)
+		private BitSet removed;
+		private int removedCount;
+
+		// Neighbours added since the last compaction: A linked list of nodes
+		// per vertex (A removed node has a target of -1)
+		private int[] pendingHead;
+		private int[] pendingTarget;
+		private int[] pendingNext;
+		private int pendingSize;
+
+		private int[] degrees;
+
+		private Adjacency(int capacity)
+		{
+			reset(capacity);
+		}
+
+		private void reset(int capacity)
+		{
+			offsets = new int[capacity + 1];
+			targets = new int[0];
+			removed = new BitSet();
+			removedCount = 0;
+			pendingHead = new int[capacity];
+			Arrays.fill(pendingHead, -1);
+			pendingTarget = new int[INITIAL_CAPACITY];
+			pendingNext = new int[INITIAL_CAPACITY];
+			pendingSize = 0;
+			degrees = new int[capacity];
+		}
+
+		private void ensureCapacity(int capacity)
+		{
+			int oldCapacity = degrees.length;
+
+			// The new vertices have empty rows
+			offsets = Arrays.copyOf(offsets, capacity + 1);
+			Arrays.fill(offsets, oldCapacity + 1, capacity + 1, offsets[oldCapacity]);
+			pendingHead = Arrays.copyOf(pendingHead, capacity);
+			Arrays.fill(pendingHead, oldCapacity, capacity, -1);
+			degrees = Arrays.copyOf(degrees, capacity);
+		}
+
+		/**
+		 * @return The position of the neighbour in the compacted rows, or -1
+		 *         if it is not in the row of the vertex
+		 */
+		private int findCompacted(int vertex, int neighbour)
+		{
+			int position = Arrays.binarySearch(targets, offsets[vertex], offsets[vertex + 1], neighbour);
+			return (position < 0 ? -1 : position);
+		}
+
+		/**
+		 * @return The pending node of the neighbour, or -1 if it is not a
+		 *         pending neighbour of the vertex
+		 */
+		private int findPending(int vertex, int neighbour)
+		{
+			for (int node = pendingHead[vertex]; node >= 0; node = pendingNext[node])
+			{
+				if (pendingTarget[node] == neighbour)
+					return node;
+			}
+
+			return -1;
+		}
+
+		private boolean add(int vertex, int neighbour)
+		{
+			int position = findCompacted(vertex, neighbour);
+
+			if (position >= 0)
+			{
+				// A removed neighbour that is added again is only unmarked
+				if (!removed.get(position))
+					return false;
+
+				removed.clear(position);
+				removedCount--;
+			}
+			else
+			{
+				if (findPending(vertex, neighbour) >= 0)
+					return false;
+
+				if (pendingSize == pendingTarget.length)
+				{
+					pendingTarget = Arrays.copyOf(pendingTarget, pendingSize * 2);
+					pendingNext = Arrays.copyOf(pendingNext, pendingSize * 2);
+				}
+
+				pendingTarget[pendingSize] = neighbour;
+				pendingNext[pendingSize] = pendingHead[vertex];
+				pendingHead[vertex] = pendingSize++;
+			}
+
+			degrees[vertex]++;
+			return true;
+		}
+
+		private boolean remove(int vertex, int neighbour)
+		{
+			if (vertex >= degrees.length)
+				return false;
+
+			int position = findCompacted(vertex, neighbour);
+
+			if (position >= 0 && !removed.get(position))
+			{
+				removed.set(position);
+				removedCount++;
+			}
+			else
+			{
+				int node = findPending(vertex, neighbour);
+				if (node < 0)
+					return false;
+
+				pendingTarget[node] = -1;
+			}
+
+			degrees[vertex]--;
+			return true;
+		}
+
+		private boolean contains(int vertex, int neighbour)
+		{
+			if (vertex < 0 || vertex >= degrees.length)
+				return false;
+
+			int position = findCompacted(vertex, neighbour);
+
+			if (position >= 0)
+				return !removed.get(position);
+
+			return findPending(vertex, neighbour) >= 0;
+		}
+
+		private int degree(int vertex)
+		{
+			return (vertex >= 0 && vertex < degrees.length ? degrees[vertex] : 0);
+		}
+
+		private int getPendingChanges()
+		{
+			return pendingSize + removedCount;
+		}
+
+		/**
+		 * Rebuilds the rows with the pending neighbours merged in and the
+		 * removed neighbours dropped. New arrays are created, so open
+		 * iterators keep reading the old rows
+		 */
+		private void compact(int capacity)
+		{
+			if (getPendingChanges() == 0)
+				return;
+
+			int[] newOffsets = new int[capacity + 1];
+
+			for (int vertex = 0; vertex < capacity; vertex++)
+			{
+				newOffsets[vertex + 1] = newOffsets[vertex] + degrees[vertex];
+			}
+
+			int[] newTargets = new int[newOffsets[capacity]];
+
+			for (int vertex = 0; vertex < capacity; vertex++)
+			{
+				int position = newOffsets[vertex];
+
+				// The compacted neighbours are already sorted
+				for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++)
+				{
+					if (!removed.get(i))
+						newTargets[position++] = targets[i];
+				}
+
+				if (pendingHead[vertex] < 0)
+					continue;
+
+				for (int node = pendingHead[vertex]; node >= 0; node = pendingNext[node])
+				{
+					if (pendingTarget[node] >= 0)
+						newTargets[position++] = pendingTarget[node];
+				}
+
+				Arrays.sort(newTargets, newOffsets[vertex], position);
+			}
+
+			offsets = newOffsets;
+			targets = newTargets;
+			removed = new BitSet();
+			removedCount = 0;
+			pendingHead = new int[capacity];
+			Arrays.fill(pendingHead, -1);
+			pendingTarget = new int[INITIAL_CAPACITY];
+			pendingNext = new int[INITIAL_CAPACITY];
+			pendingSize = 0;
+		}
+	}
+
+	/**
+	 * Iterates over the neighbours of a vertex: First the compacted row, then
+	 * the pending neighbours (Both without the removed neighbours)
+	 *
+	 * @author MVezina
+	 */
+	private final class NeighbourIterator implements PrimitiveIterator.OfInt
+	{
+		private final int[] targets;
+		private final BitSet removed;
+		private final int[] pendingTarget;
+		private final int[] pendingNext;
+		private final int expectedModCount;
+
+		private int position;
+		private int end;
+		private int node;
+
+		// The next neighbour (-1 if there are no more neighbours)
+		private int next;
+
+		private NeighbourIterator(Adjacency adjacency, int vertex)
+		{
+			targets = adjacency.targets;
+			removed = adjacency.removed;
+			pendingTarget = adjacency.pendingTarget;
+			pendingNext = adjacency.pendingNext;
+			expectedModCount = modCount;
+
+			if (vertex >= 0 && vertex < adjacency.degrees.length)
+			{
+				position = adjacency.offsets[vertex];
+				end = adjacency.offsets[vertex + 1];
+				node = adjacency.pendingHead[vertex];
+			}
+			else
+			{
+				node = -1;
+			}
+
+			advance();
+		}
+
+		private void advance()
+		{
+			while (position < end)
+			{
+				int i = position++;
+				if (!removed.get(i))
+				{
+					next = targets[i];
+					return;
+				}
+			}
+
+			while (node >= 0)
+			{
+				int target = pendingTarget[node];
+				node = pendingNext[node];
+
+				if (target >= 0)
+				{
+					next = target;
+					return;
+				}
+			}
+
+			next = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next >= 0;
+		}
+
+		@Override
+		public int nextInt()
+		{
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+
+			if (next < 0)
+				throw new NoSuchElementException();
+
+			int neighbour = next;
+			advance();
+			return neighbour;
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.filesharingsystem;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nullSquad.util.OrderedIdentitySet;
+
+/**
+ * Holds the registered items (Users / Documents) of the File Sharing System
+ * keyed by their ID, in the order they were registered (A removal keeps the
+ * order of the other items). Insertion, lookup and removal are all constant
+ * time. Items are matched by reference (not by equals) since the IDs of users
+ * and documents change when they are registered.
+ *
+ * @param <T> The type of item being registered
+ * @author MVezina
+ */
+public class Registry<T> implements Serializable
+{
+	private static final long serialVersionUID = 3349001829587260946L;
+
+	// The registered items in the order they were registered (A removed item
+	// only leaves an empty slot behind)
+	private OrderedIdentitySet<T> items;
+
+	// Read-only view of the registered items
+	private transient List<T> itemsView;
+
+	// ID -> The item
+	private transient Map<Integer, T> itemByID;
+
+	// Item -> ID of the item
+	private Map<T, Integer> idByItem;
+
+	/**
+	 * Creates an empty registry
+	 *
+	 * @author MVezina
+	 */
+	public Registry()
+	{
+		items = new OrderedIdentitySet<>();
+		itemsView = Collections.unmodifiableList(items);
+		itemByID = new HashMap<>();
+		idByItem = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Registers the item with the specified ID
+	 *
+	 * @param id The ID of the item
+	 * @param item The item to register
+	 * @return Whether or not the item was added (false if the item or the ID
+	 *         is already registered)
+	 * @author MVezina
+	 */
+	public boolean add(int id, T item)
+	{
+		if (item == null || idByItem.containsKey(item) || itemByID.containsKey(id))
+			return false;
+
+		itemByID.put(id, item);
+		idByItem.put(item, id);
+		items.add(item);
+		return true;
+	}
+
+	/**
+	 * Removes the item from the registry
+	 *
+	 * @param item The item to remove
+	 * @return Whether or not the item was removed
+	 * @author MVezina
+	 */
+	public boolean remove(T item)
+	{
+		Integer id = idByItem.remove(item);
+
+		if (id == null)
+			return false;
+
+		itemByID.remove(id);
+		items.remove(item);
+
+		return true;
+	}
+
+	/**
+	 * @param id The ID of the item
+	 * @return The item registered with the ID (null if there is none)
+	 * @author MVezina
+	 */
+	public T get(int id)
+	{
+		return itemByID.get(id);
+	}
+
+	/**
+	 * @param item The item to get the ID of
+	 * @return The ID the item was registered with (-1 if not registered)
+	 * @author MVezina
+	 */
+	public int getID(T item)
+	{
+		Integer id = idByItem.get(item);
+		return (id == null ? -1 : id);
+	}
+
+	/**
+	 * @param item The item to look for
+	 * @return Whether or not the item is registered
+	 * @author MVezina
+	 */
+	public boolean contains(T item)
+	{
+		return idByItem.containsKey(item);
+	}
+
+	/**
+	 * @param index The index of the item
+	 * @return The item at the specified index
+	 * @author MVezina
+	 */
+	public T getAt(int index)
+	{
+		return items.get(index);
+	}
+
+	/**
+	 * Gets a read-only view of the registered items. The view is not a copy,
+	 * so it reflects any later changes to the registry
+	 *
+	 * @return The registered items
+	 * @author MVezina
+	 */
+	public List<T> asList()
+	{
+		return itemsView;
+	}
+
+	/**
+	 * @return The number of registered items
+	 * @author MVezina
+	 */
+	public int size()
+	{
+		return items.size();
+	}
+
+	/**
+	 * Removes all items from the registry
+	 *
+	 * @author MVezina
+	 */
+	public void clear()
+	{
+		items.clear();
+		itemByID.clear();
+		idByItem.clear();
+	}
+
+	/**
+	 * Rebuilds the read-only view and the ID lookup (They are not saved)
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		itemsView = Collections.unmodifiableList(items);
+		itemByID = new HashMap<>();
+
+		for (Map.Entry<T, Integer> entry : idByItem.entrySet())
+		{
+			itemByID.put(entry.getValue(), entry.getKey());
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.filesharingsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records every change made to a File Sharing System (and its users) during a
+ * step along with its inverse, so that the step can be undone and redone
+ * later. Undoing a step runs the inverse changes in the reverse order, and
+ * redoing it runs the changes again in order, so both only cost as much as the
+ * step changed (instead of saving / restoring the whole system).
+ *
+ * Changes are only recorded between beginStep() and endStep(). Undoing or
+ * redoing a step is not recorded.
+ *
+ * @author MVezina
+ */
+public class UndoJournal
+{
+	// The approximate number of bytes used to record a change
+	public static final int ESTIMATED_CHANGE_BYTES = 64;
+
+	// The changes of the current step (null if no step is recorded)
+	private List<Change> changes;
+
+	/**
+	 * A recorded change
+	 * 
+	 * @author MVezina
+	 */
+	public static interface Change
+	{
+		/**
+		 * Undoes the change (Called after undoing every later change)
+		 */
+		public void undo();
+
+		/**
+		 * Makes the change again (Called after redoing every earlier change)
+		 */
+		public void redo();
+	}
+
+	/**
+	 * Starts recording the changes of a new step (The changes of an unfinished
+	 * step are dropped)
+	 * 
+	 * @author MVezina
+	 */
+	public void beginStep()
+	{
+		changes = new ArrayList<>();
+	}
+
+	/**
+	 * Stops recording the changes of the current step
+	 * 
+	 * @return The recorded step (null if no step was being recorded)
+	 * @author MVezina
+	 */
+	public Step endStep()
+	{
+		if (changes == null)
+			return null;
+
+		Step step = new Step(changes);
+		changes = null;
+		return step;
+	}
+
+	/**
+	 * @return Whether or not the changes are being recorded (Callers can skip
+	 *         creating the inverse change otherwise)
+	 * @author MVezina
+	 */
+	public boolean isRecording()
+	{
+		return changes != null;
+	}
+
+	/**
+	 * Records a change made during the current step
+	 * 
+	 * @param change The change
+	 * @author MVezina
+	 */
+	public void record(Change change)
+	{
+		if (changes != null)
+			changes.add(change);
+	}
+
+	/**
+	 * Records a change made during the current step
+	 * 
+	 * @param undo Undoes the change
+	 * @param redo Makes the change again
+	 * @author MVezina
+	 */
+	public void record(Runnable undo, Runnable redo)
+	{
+		if (changes != null)
+			changes.add(new RunnableChange(undo, redo));
+	}
+
+	/**
+	 * A change that is undone / redone by running an action
+	 */
+	private static final class RunnableChange implements Change
+	{
+		private final Runnable undo;
+		private final Runnable redo;
+
+		private RunnableChange(Runnable undo, Runnable redo)
+		{
+			this.undo = undo;
+			this.redo = redo;
+		}
+
+		@Override
+		public void undo()
+		{
+			undo.run();
+		}
+
+		@Override
+		public void redo()
+		{
+			redo.run();
+		}
+	}
+
+	/**
+	 * The changes of a recorded step
+	 * 
+	 * @author MVezina
+	 */
+	public static class Step
+	{
+		private final Change[] changes;
+
+		private Step(List<Change> changes)
+		{
+			this.changes = changes.toArray(new Change[changes.size()]);
+		}
+
+		/**
+		 * Undoes every change of the step, the last change first. A step can
+		 * only be undone while every later step is undone
+		 * 
+		 * @author MVezina
+		 */
+		public void undo()
+		{
+			for (int i = changes.length - 1; i >= 0; i--)
+			{
+				changes[i].undo();
+			}
+		}
+
+		/**
+		 * Makes every change of an undone step again, the first change first.
+		 * A step can only be redone while every earlier step is done
+		 * 
+		 * @author MVezina
+		 */
+		public void redo()
+		{
+			for (Change change : changes)
+			{
+				change.redo();
+			}
+		}
+
+		/**
+		 * @return The approximate number of bytes used to record the step
+		 * @author MVezina
+		 */
+		public long getEstimatedBytes()
+		{
+			return 16 + (long) changes.length * ESTIMATED_CHANGE_BYTES;
+		}
+
+		/**
+		 * @return The number of changes recorded during the step
+		 * @author MVezina
+		 */
+		public int getChangeCount()
+		{
+			return changes.length;
+		}
+	}
+}
@@ -4,10 +4,13 @@
  */
 package nullSquad.filesharingsystem.document;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 
 import nullSquad.filesharingsystem.users.*;
+import nullSquad.util.OrderedIdentitySet;
 
 /**
  * Document class represents a document that is produced by a producer
@@ -22,10 +25,16 @@ public class Document implements Serializable
 	private String tag;
 	private int docID;
 	private List<User> likedBy;
+	private transient List<User> likedByView;
 	private Producer producer;
 	private Date dateUploaded;
 	private List<DocumentLikeListener> likeListeners;
 
+	// Liker -> Number of followers of the liker, and the sum of all of them
+	// (Rebuilt from likedBy when null)
+	private transient Map<User, Integer> likerFollowerCounts;
+	private transient long likerFollowerSum;
+
 	/**
 	 * @author Marc Tebo Creates a Document with a name, tag and producer who
 	 *         created the document
@@ -34,18 +43,33 @@ public class Document implements Serializable
 	 * @param producer Creator of the document
 	 */
 	public Document(String name, String tag, Producer producer)
+	{
+		this(name, tag, producer, Calendar.getInstance().getTime());
+	}
+
+	/**
+	 * Creates a Document that was uploaded at the specified date (ex: A
+	 * document read from a saved state)
+	 * 
+	 * @param name Name of the document
+	 * @param tag Search tag that will be used to find this document
+	 * @param producer Creator of the document
+	 * @param dateUploaded The date the document was uploaded
+	 * @author MVezina
+	 */
+	public Document(String name, String tag, Producer producer, Date dateUploaded)
 	{
 		this.name = name;
 		this.tag = tag;
 		this.producer = producer;
 		docID = 0;
-		likedBy = new ArrayList<>();
+		likedBy = new OrderedIdentitySet<>();
 		likeListeners = new LinkedList<>();
 
 		// By default, the producer listens to when the document gets a like
 		likeListeners.add(producer);
 
-		dateUploaded = Calendar.getInstance().getTime();
+		this.dateUploaded = dateUploaded;
 	}
 
 	/**
@@ -86,11 +110,16 @@ public class Document implements Serializable
 	 */
 	public boolean likeDocument(User user)
 	{
-		if (likedBy.contains(user))
+		if (user == null || !likedBy.add(user))
 		{
 			return false;
 		}
-		likedBy.add(user);
+
+		if (likerFollowerCounts != null)
+		{
+			likerFollowerCounts.put(user, user.getFollowers().size());
+			likerFollowerSum += user.getFollowers().size();
+		}
 
 		// Iterate through all like listeners and notify that this document has
 		// been liked
@@ -110,21 +139,84 @@ public class Document implements Serializable
 	 */
 	public boolean unlikeDocument(User user)
 	{
-		if (!likedBy.contains(user))
+		if (!likedBy.remove(user))
 		{
 			return false;
 		}
-		likedBy.remove(user);
+
+		if (likerFollowerCounts != null)
+		{
+			Integer followerCount = likerFollowerCounts.remove(user);
+			if (followerCount != null)
+				likerFollowerSum -= followerCount;
+		}
+
+		// Notify all like listeners that this document has been unliked
+		for (DocumentLikeListener listener : likeListeners)
+		{
+			listener.DocumentUnliked(new DocumentLikeEvent(this, user));
+		}
+
 		return true;
 	}
 
 	/**
 	 * @author Marc Tebo Gets all users who have "liked" this document
-	 * @return List of users who "liked" the document
+	 * @return List of users who "liked" the document (Read-only)
 	 */
 	public List<User> getUserLikes()
 	{
-		return likedBy;
+		if (likedByView == null)
+			likedByView = Collections.unmodifiableList(likedBy);
+
+		return likedByView;
+	}
+
+	/**
+	 * Gets the total number of followers of all users who like this document.
+	 * The total is kept up to date as users like / unlike the document and as
+	 * the likers gain / lose followers, so it is not recounted
+	 * 
+	 * @return The sum of the number of followers of every liker
+	 * @author MVezina
+	 */
+	public long getLikerFollowerSum()
+	{
+		if (likerFollowerCounts == null)
+		{
+			likerFollowerCounts = new IdentityHashMap<>();
+			likerFollowerSum = 0;
+
+			for (User u : likedBy)
+			{
+				likerFollowerCounts.put(u, u.getFollowers().size());
+				likerFollowerSum += u.getFollowers().size();
+			}
+		}
+
+		return likerFollowerSum;
+	}
+
+	/**
+	 * Called by a user who likes this document when it gains or loses a
+	 * follower
+	 * 
+	 * @param liker The user whose number of followers changed
+	 * @author MVezina
+	 */
+	public void likerFollowersChanged(User liker)
+	{
+		if (likerFollowerCounts == null)
+			return;
+
+		Integer followerCount = likerFollowerCounts.get(liker);
+
+		// Only count users who are actually in the list of likers
+		if (followerCount != null)
+		{
+			likerFollowerCounts.put(liker, liker.getFollowers().size());
+			likerFollowerSum += liker.getFollowers().size() - followerCount;
+		}
 	}
 
 	/**
@@ -157,6 +249,20 @@ public class Document implements Serializable
 
 	}
 
+	/**
+	 * Consistent with equals. Note: The document ID is assigned when the
+	 * document is added to the File Sharing System, so hash based collections
+	 * of documents should be keyed by document ID
+	 * 
+	 * @return The hash code of the document
+	 * @author MVezina
+	 */
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(docID, name, tag);
+	}
+
 	/**
 	 * @author Marc Tebo
 	 * @return Document Tag
@@ -201,6 +307,33 @@ public class Document implements Serializable
 		return producer;
 	}
 
+	/**
+	 * Restores the users that like a document read from a saved state. The
+	 * likes are replaced as they are, without notifying the like listeners
+	 * (The users are restored from the same state)
+	 * 
+	 * @param likers The users that like the document (in order)
+	 * @author MVezina
+	 */
+	public void restoreLikes(Collection<User> likers)
+	{
+		likedBy = new OrderedIdentitySet<>(likers);
+		likedByView = null;
+		likerFollowerCounts = null;
+	}
+
+	/**
+	 * Likes saved before they were kept in an ordered identity set are
+	 * converted when read
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		if (!(likedBy instanceof OrderedIdentitySet))
+			likedBy = new OrderedIdentitySet<>(likedBy);
+	}
+
 	/**
 	 * Sets the document ID to the integer specified in the parameters
 	 * 
@@ -209,7 +342,16 @@ public class Document implements Serializable
 	 */
 	public void setDocumentID(int docID)
 	{
+		if (this.docID == docID)
+			return;
+
 		this.docID = docID;
+
+		// The users that like this document keep track of its ID
+		for (User u : likedBy)
+		{
+			u.likedDocumentIDChanged(this);
+		}
 	}
 
 }
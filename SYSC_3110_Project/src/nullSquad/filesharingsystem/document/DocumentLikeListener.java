@@ -7,11 +7,22 @@ import java.io.Serializable;
 
 /**
  * Document Like Listener Interface Interface for classes that would like to
- * know when a document is liked
+ * know when a document is liked (or unliked)
  * 
  * @author MVezina
  */
 public interface DocumentLikeListener extends Serializable
 {
 	public void DocumentLiked(DocumentLikeEvent docLikeEvent);
+
+	/**
+	 * Called when a user no longer likes a document
+	 * 
+	 * @param docLikeEvent The event (The user is the one who unliked the
+	 *        document)
+	 * @author MVezina
+	 */
+	public default void DocumentUnliked(DocumentLikeEvent docLikeEvent)
+	{
+	}
 }
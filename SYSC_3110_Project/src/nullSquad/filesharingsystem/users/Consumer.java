@@ -8,7 +8,7 @@ package nullSquad.filesharingsystem.users;
 
 import nullSquad.filesharingsystem.*;
 import nullSquad.filesharingsystem.document.*;
-import nullSquad.simulator.Simulator;
+import nullSquad.simulator.log.SimulationLog;
 import nullSquad.strategies.payoff.ConsumerPayoffStrategy;
 import nullSquad.strategies.ranking.DocumentRankingStrategy;
 
@@ -96,7 +96,7 @@ public class Consumer extends User implements ConsumerPayoffStrategy
 		// Calculates the payoff of the search results
 		int payoff = calculatePayoff(documentResults);
 
-		Simulator.appendLineLog("Search: Returned " + documentResults.size() + " documents (Result Payoff: " + payoff + ")");
+		SimulationLog.getInstance().debug("Search: Returned {} documents (Result Payoff: {})", documentResults.size(), payoff);
 
 		// Like all documents that match the users taste
 		for (Document d : documentResults)
@@ -111,6 +111,17 @@ public class Consumer extends User implements ConsumerPayoffStrategy
 		// Set the current payoff for the user
 		this.currentPayoff += payoff;
 
+		if (payoff != 0)
+		{
+			if (isRecordingUndo())
+				recordUndo(() -> currentPayoff -= payoff, () -> currentPayoff += payoff);
+
+			if (getChangeRecorder() != null)
+				getChangeRecorder().currentPayoffChanged(this, currentPayoff);
+
+			payoffChanged();
+		}
+
 	}
 
 	/**
@@ -127,6 +138,39 @@ public class Consumer extends User implements ConsumerPayoffStrategy
 		return payoffStrategy.consumerPayoffStrategy(this, documents);
 	}
 
+	/**
+	 * @return The total payoff of the search results of the consumer
+	 * @author MVezina
+	 */
+	public int getCurrentPayoff()
+	{
+		return currentPayoff;
+	}
+
+	/**
+	 * Sets the total payoff of the search results of the consumer (ex: When a
+	 * saved state is read)
+	 * 
+	 * @param currentPayoff The total payoff
+	 * @author MVezina
+	 */
+	public void setCurrentPayoff(int currentPayoff)
+	{
+		int previousPayoff = this.currentPayoff;
+		if (currentPayoff == previousPayoff)
+			return;
+
+		this.currentPayoff = currentPayoff;
+
+		if (isRecordingUndo())
+			recordUndo(() -> this.currentPayoff = previousPayoff, () -> this.currentPayoff = currentPayoff);
+
+		if (getChangeRecorder() != null)
+			getChangeRecorder().currentPayoffChanged(this, currentPayoff);
+
+		payoffChanged();
+	}
+
 	/**
 	 * @return The Consumer Payoff Strategy
 	 * @author MVezina
@@ -186,17 +230,7 @@ public class Consumer extends User implements ConsumerPayoffStrategy
 	@Override
 	public void addIterationPayoff(int currentIteration)
 	{
-		// Only add a payoff iteration if the history is not updated
-		if (currentIteration == getPayoffHistory().size())
-		{
-			this.payoffHistory.add(currentPayoff);
-
-			for (UserPayoffListener upl : this.payoffListeners)
-			{
-				upl.payoffUpdated(new UserPayoffEvent(this));
-			}
-
-		}
+		recordIterationPayoff(currentIteration, () -> currentPayoff);
 	}
 
 }
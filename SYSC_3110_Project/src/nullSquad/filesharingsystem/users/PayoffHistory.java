@@ -0,0 +1,556 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.filesharingsystem.users;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import nullSquad.util.VarInts;
+
+/**
+ * The payoff of a user at every step of the simulation, stored as primitive
+ * ints. Payoffs can only be recorded at the end of the history (one per step).
+ *
+ * How the payoffs are stored depends on the policy:
+ * Full keeps the payoff of every step. RunLength keeps one entry per run of
+ * steps with the same payoff (Payoffs tend to stay the same for long
+ * stretches), and is just as exact. Downsampled keeps at most a fixed number
+ * of samples: Once the samples run out, every other sample is dropped and
+ * only every (2 * stride)th step is kept from then on, so a step reads the
+ * payoff of the closest sampled step before it.
+ *
+ * The payoffs can be read without boxing with getPayoff(step) and read(...).
+ * Steps after the last recorded step carry the last payoff forward (The
+ * payoff of a user is only recorded in the steps where it may have changed).
+ * As a List, the history is read-only apart from adding to the end.
+ *
+ * @author MVezina
+ */
+public class PayoffHistory extends AbstractList<Integer> implements RandomAccess, Serializable
+{
+	private static final long serialVersionUID = -4307342188529360447L;
+
+	/* The default maximum number of samples kept by a Downsampled history */
+	public static final int DEFAULT_MAX_SAMPLES = 4096;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 * How the payoffs of a history are stored
+	 *
+	 * @author MVezina
+	 */
+	public static enum Policy
+	{
+		Full, RunLength, Downsampled
+	}
+
+	private Policy policy;
+
+	// The number of steps recorded and the payoff of the last step
+	private int size;
+	private int lastPayoff;
+
+	// Full: The payoff of every step
+	// RunLength: The payoff of every run, and the first step of every run
+	// Downsampled: The payoff of every stride-th step
+	private int[] values;
+	private int[] runStarts;
+	private int count;
+
+	private int stride;
+	private int maxSamples;
+
+	/**
+	 * Creates an empty, run-length encoded history
+	 *
+	 * @author MVezina
+	 */
+	public PayoffHistory()
+	{
+		this(Policy.RunLength);
+	}
+
+	/**
+	 * Creates an empty history
+	 *
+	 * @param policy How the payoffs are stored
+	 * @author MVezina
+	 */
+	public PayoffHistory(Policy policy)
+	{
+		this(policy, DEFAULT_MAX_SAMPLES);
+	}
+
+	/**
+	 * Creates an empty history
+	 *
+	 * @param policy How the payoffs are stored
+	 * @param maxSamples The maximum number of samples kept (Only used by the
+	 *            Downsampled policy, at least 2)
+	 * @author MVezina
+	 */
+	public PayoffHistory(Policy policy, int maxSamples)
+	{
+		if (policy == null)
+			throw new NullPointerException();
+
+		if (maxSamples < 2)
+			throw new IllegalArgumentException("maxSamples < 2: " + maxSamples);
+
+		this.policy = policy;
+		this.maxSamples = maxSamples;
+		reset();
+	}
+
+	private void reset()
+	{
+		size = 0;
+		lastPayoff = 0;
+		count = 0;
+		stride = 1;
+		values = new int[INITIAL_CAPACITY];
+		runStarts = (policy == Policy.RunLength ? new int[INITIAL_CAPACITY] : null);
+	}
+
+	/**
+	 * Records the payoff of the next step
+	 *
+	 * @param payoff The payoff of the step
+	 * @author MVezina
+	 */
+	public void record(int payoff)
+	{
+		switch (policy)
+		{
+			case Full:
+				append(payoff);
+				break;
+
+			case RunLength:
+				// Only a change of payoff starts a new run
+				if (count == 0 || values[count - 1] != payoff)
+				{
+					if (count == runStarts.length)
+						runStarts = Arrays.copyOf(runStarts, count * 2);
+
+					runStarts[count] = size;
+					append(payoff);
+				}
+				break;
+
+			case Downsampled:
+				if (size % stride == 0)
+				{
+					if (count == maxSamples)
+						halveSamples();
+
+					if (size % stride == 0)
+						append(payoff);
+				}
+				break;
+		}
+
+		lastPayoff = payoff;
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Carries the last payoff forward until the history has the specified
+	 * number of steps. Only the runs / samples that are needed are stored
+	 *
+	 * @param steps The number of steps
+	 * @author MVezina
+	 */
+	public void padTo(int steps)
+	{
+		if (steps <= size)
+			return;
+
+		switch (policy)
+		{
+			case Full:
+				if (steps > values.length)
+					values = Arrays.copyOf(values, Math.max(steps, values.length * 2));
+
+				Arrays.fill(values, count, steps, lastPayoff);
+				count = steps;
+				size = steps;
+				break;
+
+			case RunLength:
+				// Extend the last run (or start the first one)
+				if (count == 0)
+					record(lastPayoff);
+
+				size = steps;
+				break;
+
+			case Downsampled:
+				while (size < steps)
+				{
+					// Skip ahead to the next sampled step
+					if (size % stride == 0)
+						record(lastPayoff);
+					else
+						size = Math.min(steps, (size / stride + 1) * stride);
+				}
+				break;
+		}
+
+		modCount++;
+	}
+
+	/**
+	 * Drops every step after the specified number of steps (ex: To undo the
+	 * steps recorded since the history had that many steps)
+	 *
+	 * @param steps The number of steps to keep
+	 * @param lastPayoff The payoff of the last step kept (getLastPayoff() at
+	 *            the time the history had that many steps, which is exact even
+	 *            if the history is downsampled)
+	 * @author MVezina
+	 */
+	public void truncate(int steps, int lastPayoff)
+	{
+		if (steps < 0 || steps > size)
+			throw new IndexOutOfBoundsException("Steps: " + steps + ", Size: " + size);
+
+		switch (policy)
+		{
+			case Full:
+				count = steps;
+				break;
+
+			case RunLength:
+				count = (steps == 0 ? 0 : findRun(steps - 1) + 1);
+				break;
+
+			case Downsampled:
+				count = (steps + stride - 1) / stride;
+				break;
+		}
+
+		size = steps;
+		this.lastPayoff = (steps == 0 ? 0 : lastPayoff);
+		modCount++;
+	}
+
+	private void append(int value)
+	{
+		if (count == values.length)
+			values = Arrays.copyOf(values, count * 2);
+
+		values[count++] = value;
+	}
+
+	/**
+	 * Keeps every other sample and doubles the stride
+	 */
+	private void halveSamples()
+	{
+		for (int i = 0; 2 * i < count; i++)
+		{
+			values[i] = values[2 * i];
+		}
+
+		count = (count + 1) / 2;
+		stride *= 2;
+	}
+
+	/**
+	 * Gets the payoff of a step
+	 *
+	 * @param step The step (0 is the first step)
+	 * @return The payoff of the step (Of the closest sampled step before it
+	 *         if the history is downsampled, the last payoff if the step is
+	 *         after the last recorded step)
+	 * @author MVezina
+	 */
+	public int getPayoff(int step)
+	{
+		if (step < 0)
+			throw new IndexOutOfBoundsException("Step: " + step);
+
+		if (step >= size)
+			return lastPayoff;
+
+		switch (policy)
+		{
+			case RunLength:
+				return values[findRun(step)];
+
+			case Downsampled:
+				return values[step / stride];
+
+			default:
+				return values[step];
+		}
+	}
+
+	/**
+	 * @return The payoff of the last recorded step (0 if no steps have been
+	 *         recorded). Always exact
+	 * @author MVezina
+	 */
+	public int getLastPayoff()
+	{
+		return lastPayoff;
+	}
+
+	/**
+	 * Reads the payoffs of a range of steps into an array
+	 *
+	 * @param fromStep The first step to read (inclusive)
+	 * @param toStep The last step to read (exclusive, may be after the last
+	 *            recorded step)
+	 * @param dest The array to read the payoffs into
+	 * @param offset The position in the array of the payoff of fromStep
+	 * @return The number of payoffs read
+	 * @author MVezina
+	 */
+	public int read(int fromStep, int toStep, int[] dest, int offset)
+	{
+		if (fromStep < 0 || fromStep > toStep)
+			throw new IndexOutOfBoundsException("From: " + fromStep + ", To: " + toStep);
+
+		int length = toStep - fromStep;
+
+		// The steps after the last recorded step carry the last payoff forward
+		if (toStep > size)
+		{
+			Arrays.fill(dest, offset + Math.max(0, size - fromStep), offset + length, lastPayoff);
+			toStep = Math.max(fromStep, size);
+		}
+
+		switch (policy)
+		{
+			case Full:
+				// The range may start after the last recorded step
+				if (toStep > fromStep)
+					System.arraycopy(values, fromStep, dest, offset, toStep - fromStep);
+				break;
+
+			case RunLength:
+				// Fill in each run that overlaps the range
+				for (int run = findRun(fromStep), step = fromStep; step < toStep; run++)
+				{
+					int runEnd = Math.min(toStep, (run + 1 < count ? runStarts[run + 1] : size));
+					Arrays.fill(dest, offset + step - fromStep, offset + runEnd - fromStep, values[run]);
+					step = runEnd;
+				}
+				break;
+
+			case Downsampled:
+				for (int step = fromStep; step < toStep;)
+				{
+					int sampleEnd = Math.min(toStep, (step / stride + 1) * stride);
+					Arrays.fill(dest, offset + step - fromStep, offset + sampleEnd - fromStep, values[step / stride]);
+					step = sampleEnd;
+				}
+				break;
+		}
+
+		return length;
+	}
+
+	/**
+	 * @return The payoffs of every step
+	 * @author MVezina
+	 */
+	public int[] toIntArray()
+	{
+		int[] payoffs = new int[size];
+		read(0, size, payoffs, 0);
+		return payoffs;
+	}
+
+	/**
+	 * @return The policy used to store the payoffs
+	 * @author MVezina
+	 */
+	public Policy getPolicy()
+	{
+		return policy;
+	}
+
+	/**
+	 * Changes how the payoffs are stored. The recorded payoffs are stored
+	 * again with the new policy (Payoffs that were dropped by downsampling can
+	 * not be recovered)
+	 *
+	 * @param policy The new policy
+	 * @author MVezina
+	 */
+	public void setPolicy(Policy policy)
+	{
+		if (policy == null)
+			throw new NullPointerException();
+
+		if (policy == this.policy)
+			return;
+
+		int[] payoffs = toIntArray();
+		int last = lastPayoff;
+
+		this.policy = policy;
+		reset();
+
+		for (int payoff : payoffs)
+		{
+			record(payoff);
+		}
+
+		lastPayoff = last;
+	}
+
+	/**
+	 * @return The number of ints used to store the payoffs
+	 * @author MVezina
+	 */
+	public int getStoredCount()
+	{
+		return (policy == Policy.RunLength ? count * 2 : count);
+	}
+
+	/**
+	 * Writes the history as it is stored (ex: One entry per run of a
+	 * run-length encoded history), so that read(..) gets back the same
+	 * history. Each value is written as the change from the previous value
+	 *
+	 * @param out The output to write to
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeByte(policy.ordinal());
+		VarInts.writeVarInt(out, maxSamples);
+		VarInts.writeVarInt(out, size);
+		VarInts.writeSignedVarInt(out, lastPayoff);
+		VarInts.writeVarInt(out, stride);
+		VarInts.writeVarInt(out, count);
+
+		int previous = 0;
+		for (int i = 0; i < count; i++)
+		{
+			VarInts.writeSignedVarInt(out, values[i] - previous);
+			previous = values[i];
+		}
+
+		// The first step of each run is written as the gap from the previous
+		// run
+		if (policy == Policy.RunLength)
+		{
+			previous = 0;
+			for (int i = 0; i < count; i++)
+			{
+				VarInts.writeVarInt(out, runStarts[i] - previous);
+				previous = runStarts[i];
+			}
+		}
+	}
+
+	/**
+	 * Reads a history written by write(..)
+	 *
+	 * @param in The input to read from
+	 * @return The history
+	 * @throws IOException If the history is not valid
+	 * @author MVezina
+	 */
+	public static PayoffHistory read(DataInput in) throws IOException
+	{
+		int policyOrdinal = in.readUnsignedByte();
+		if (policyOrdinal >= Policy.values().length)
+			throw new StreamCorruptedException("Unknown payoff history policy: " + policyOrdinal);
+
+		Policy policy = Policy.values()[policyOrdinal];
+		int maxSamples = VarInts.readVarInt(in);
+		int size = VarInts.readVarInt(in);
+		int lastPayoff = VarInts.readSignedVarInt(in);
+		int stride = VarInts.readVarInt(in);
+		int count = VarInts.readVarInt(in);
+
+		if (maxSamples < 2 || size < 0 || stride < 1 || count < 0 || count > size || (policy == Policy.Full && count != size) || (policy == Policy.Downsampled && count > maxSamples))
+			throw new StreamCorruptedException("Invalid payoff history");
+
+		PayoffHistory history = new PayoffHistory(policy, maxSamples);
+		history.size = size;
+		history.lastPayoff = lastPayoff;
+		history.stride = stride;
+		history.count = count;
+		history.values = new int[Math.max(count, INITIAL_CAPACITY)];
+
+		int previous = 0;
+		for (int i = 0; i < count; i++)
+		{
+			previous += VarInts.readSignedVarInt(in);
+			history.values[i] = previous;
+		}
+
+		if (policy == Policy.RunLength)
+		{
+			history.runStarts = new int[history.values.length];
+
+			previous = 0;
+			for (int i = 0; i < count; i++)
+			{
+				previous += VarInts.readVarInt(in);
+				history.runStarts[i] = previous;
+			}
+		}
+
+		return history;
+	}
+
+	/**
+	 * Binary search for the run containing the step
+	 */
+	private int findRun(int step)
+	{
+		int run = Arrays.binarySearch(runStarts, 0, count, step);
+		return (run >= 0 ? run : -run - 2);
+	}
+
+	@Override
+	public boolean add(Integer payoff)
+	{
+		record(payoff);
+		return true;
+	}
+
+	@Override
+	public Integer get(int step)
+	{
+		if (step >= size)
+			throw new IndexOutOfBoundsException("Step: " + step + ", Size: " + size);
+
+		return getPayoff(step);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void clear()
+	{
+		reset();
+		modCount++;
+	}
+
+}
@@ -8,9 +8,10 @@ package nullSquad.filesharingsystem.users;
 
 import nullSquad.filesharingsystem.*;
 import nullSquad.filesharingsystem.document.*;
-import nullSquad.simulator.Simulator;
+import nullSquad.simulator.log.SimulationLog;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 import nullSquad.strategies.act.ProducerActStrategy;
 import nullSquad.strategies.payoff.ProducerPayoffStrategy;
@@ -35,6 +36,22 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 	private ProducerPayoffStrategy payoffStrategy;
 	private ProducerActStrategy.Strategy actStrategy;
 
+	// View of the produced documents that keeps the counters up to date
+	private transient List<Document> docsProducedView;
+
+	// Produced document -> Number of times it is in the list, and the total
+	// number of likes of all produced documents (Recounted when not valid)
+	private transient Map<Document, Integer> producedDocumentCounts;
+	private transient int likesReceived;
+	private transient boolean likesReceivedValid;
+
+	// Payoff of a non-incremental payoff strategy
+	private transient int cachedPayoff;
+	private transient boolean cachedPayoffValid;
+
+	// Calculates the payoff for log messages (Only if the message is logged)
+	private transient Supplier<Integer> payoffSupplier;
+
 	/**
 	 * Constructor that sets the Producer Payoff Strategy and Producer Act
 	 * Strategy
@@ -123,10 +140,10 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 	public boolean addFollower(User user)
 	{
 		// If added a follower succeeds, Append text to the log and return the
-		// status
+		// status (The payoff is only calculated if the log is enabled)
 		if (super.addFollower(user))
 		{
-			Simulator.appendLineLog(this.getUserName() + " has been followed by " + user.getUserName() + ". Updated Producer Payoff: " + calculatePayoff());
+			SimulationLog.getInstance().info("{} has been followed by {}. Updated Producer Payoff: {}", this.getUserName(), user.getUserName(), payoffSupplier());
 			return true;
 		}
 		return false;
@@ -167,7 +184,7 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 		Document newDoc = new Document("Document " + this.taste + " (" + (new Random()).nextInt(500) + ")", this.taste, this);
 
 		// Add new document to document produced
-		docsProduced.add(newDoc);
+		getDocumentsProduced().add(newDoc);
 
 		// The document is now added to the file sharing system
 		if (fileSharingSystem != null)
@@ -179,14 +196,137 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 	}
 
 	/**
-	 * Calls the set Producer Payoff Strategy
+	 * Calls the set Producer Payoff Strategy. The payoff of a non-incremental
+	 * strategy is only recalculated after it has been invalidated
 	 * 
 	 * @return The payoff of the producer using the selected strategy
 	 * @author MVezina
 	 */
 	public int calculatePayoff()
 	{
-		return payoffStrategy.producerPayoffStrategy(this);
+		if (payoffStrategy.isIncremental())
+			return payoffStrategy.producerPayoffStrategy(this);
+
+		if (!cachedPayoffValid)
+		{
+			cachedPayoff = payoffStrategy.producerPayoffStrategy(this);
+			cachedPayoffValid = true;
+		}
+
+		return cachedPayoff;
+	}
+
+	/**
+	 * @return A supplier of the payoff of the producer, for log messages that
+	 *         should only calculate the payoff if they are logged
+	 */
+	private Supplier<Integer> payoffSupplier()
+	{
+		if (payoffSupplier == null)
+			payoffSupplier = this::calculatePayoff;
+
+		return payoffSupplier;
+	}
+
+	/**
+	 * Forces the payoff of a non-incremental payoff strategy to be
+	 * recalculated the next time it is needed. Called whenever the producer
+	 * gains / loses a follower or like (The payoff may have changed)
+	 * 
+	 * @author MVezina
+	 */
+	public void invalidatePayoff()
+	{
+		cachedPayoffValid = false;
+		payoffChanged();
+	}
+
+	/**
+	 * Gets the total number of likes of all documents produced by this
+	 * producer. The total is kept up to date as the documents are liked /
+	 * unliked
+	 * 
+	 * @return The number of likes received by this producer
+	 * @author MVezina
+	 */
+	public int getLikesReceived()
+	{
+		if (!likesReceivedValid)
+		{
+			producedDocumentCounts = new IdentityHashMap<>();
+			likesReceived = 0;
+
+			for (Document d : docsProduced)
+			{
+				producedDocumentCounts.merge(d, 1, Integer::sum);
+				likesReceived += d.getUserLikes().size();
+			}
+
+			likesReceivedValid = true;
+		}
+
+		return likesReceived;
+	}
+
+	/**
+	 * Updates the counters when a document is added to / removed from the
+	 * list of produced documents
+	 * 
+	 * @param doc The document
+	 * @param count 1 if the document was added, -1 if it was removed
+	 */
+	private void producedDocumentsChanged(Document doc, int count)
+	{
+		invalidatePayoff();
+
+		if (doc == null)
+			return;
+
+		// Listen to the likes of the document
+		if (count > 0)
+			doc.addLikeListener(this);
+
+		if (!likesReceivedValid)
+			return;
+
+		int newCount = producedDocumentCounts.getOrDefault(doc, 0) + count;
+		if (newCount > 0)
+			producedDocumentCounts.put(doc, newCount);
+		else
+			producedDocumentCounts.remove(doc);
+
+		likesReceived += count * doc.getUserLikes().size();
+	}
+
+	/**
+	 * Updates the counters when a document is liked / unliked
+	 * 
+	 * @param doc The document
+	 * @param change 1 if the document was liked, -1 if it was unliked
+	 */
+	private void documentLikesChanged(Document doc, int change)
+	{
+		if (!likesReceivedValid)
+		{
+			invalidatePayoff();
+			return;
+		}
+
+		Integer count = producedDocumentCounts.get(doc);
+
+		// Only the likes of documents produced by this producer count
+		if (count != null)
+		{
+			likesReceived += count * change;
+			invalidatePayoff();
+		}
+	}
+
+	@Override
+	protected void followersChanged()
+	{
+		super.followersChanged();
+		invalidatePayoff();
 	}
 
 	/**
@@ -208,16 +348,20 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 	@Override
 	public int producerPayoffStrategy(Producer prod)
 	{
-		// Two points for every follower the producer has
-		int totalPayoff = prod.getFollowers().size() * 2;
-
-		// One point for every like the producer has
-		for (Document d : prod.getDocumentsProduced())
-		{
-			totalPayoff += d.getUserLikes().size();
-		}
+		// Two points for every follower the producer has, one point for every
+		// like the producer has
+		return prod.getFollowers().size() * 2 + prod.getLikesReceived();
+	}
 
-		return totalPayoff;
+	/**
+	 * The default payoff is calculated from counters
+	 * 
+	 * @author MVezina
+	 */
+	@Override
+	public boolean isIncremental()
+	{
+		return true;
 	}
 
 	/**
@@ -226,7 +370,10 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 	 */
 	public List<Document> getDocumentsProduced()
 	{
-		return this.docsProduced;
+		if (docsProducedView == null)
+			docsProducedView = new ProducedDocumentList();
+
+		return docsProducedView;
 	}
 
 	/**
@@ -239,6 +386,9 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 		if (producerActStrategy == null)
 			return;
 		this.actStrategy = producerActStrategy;
+
+		if (getChangeRecorder() != null)
+			getChangeRecorder().actStrategyChanged(this, producerActStrategy);
 	}
 
 	/**
@@ -277,32 +427,76 @@ public class Producer extends User implements ProducerPayoffStrategy, DocumentLi
 	@Override
 	public void DocumentLiked(DocumentLikeEvent docLikeEvent)
 	{
+		documentLikesChanged(docLikeEvent.getDocument(), 1);
+
 		// Check to see if the document containing the event is owned by this
 		// producer
 		if (docLikeEvent.getDocument().getProducer().equals(this))
 		{
-			// Calculate and print the payoff
-			Simulator.appendLineLog(docLikeEvent.getLikingUser().getUserName() + " has liked '" + docLikeEvent.getDocument().getDocumentName() + "'. " + docLikeEvent.getDocument().getProducer().getUserName() + " Payoff: " + calculatePayoff());
+			// Calculate and print the payoff (If the log is enabled)
+			SimulationLog.getInstance().info("{} has liked '{}'. {} Payoff: {}", docLikeEvent.getLikingUser().getUserName(), docLikeEvent.getDocument().getDocumentName(), this.getUserName(), payoffSupplier());
 		}
 
 	}
 
+	@Override
+	public void DocumentUnliked(DocumentLikeEvent docLikeEvent)
+	{
+		documentLikesChanged(docLikeEvent.getDocument(), -1);
+	}
+
 	@Override
 	public void addIterationPayoff(int currentIteration)
 	{
+		// The payoff is only calculated if the step is recorded
+		recordIterationPayoff(currentIteration, this::calculatePayoff);
+	}
 
-		// Ensures the number of iterations matches the size of the payoff list
-		if (currentIteration == getPayoffHistory().size())
+	/**
+	 * The list of produced documents. Keeps the counters of the producer up
+	 * to date when documents are added / removed
+	 * 
+	 * @author MVezina
+	 */
+	private class ProducedDocumentList extends AbstractList<Document> implements RandomAccess
+	{
+		@Override
+		public Document get(int index)
 		{
-			// Add payoff to list
-			payoffHistory.add(calculatePayoff());
+			return docsProduced.get(index);
+		}
 
-			// Update all payoff listeners
-			for (UserPayoffListener upl : this.payoffListeners)
-			{
-				// Call all listener methods
-				upl.payoffUpdated(new UserPayoffEvent(this));
-			}
+		@Override
+		public int size()
+		{
+			return docsProduced.size();
+		}
+
+		@Override
+		public void add(int index, Document doc)
+		{
+			docsProduced.add(index, doc);
+			producedDocumentsChanged(doc, 1);
+
+			if (isRecordingUndo())
+				recordUndo(() -> remove(index), () -> add(index, doc));
+		}
+
+		@Override
+		public Document set(int index, Document doc)
+		{
+			Document previous = docsProduced.set(index, doc);
+			producedDocumentsChanged(previous, -1);
+			producedDocumentsChanged(doc, 1);
+			return previous;
+		}
+
+		@Override
+		public Document remove(int index)
+		{
+			Document previous = docsProduced.remove(index);
+			producedDocumentsChanged(previous, -1);
+			return previous;
 		}
 	}
 }
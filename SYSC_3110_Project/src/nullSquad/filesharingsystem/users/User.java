@@ -6,12 +6,20 @@
 
 package nullSquad.filesharingsystem.users;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 import nullSquad.filesharingsystem.*;
 import nullSquad.filesharingsystem.document.*;
 import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.strategies.ranking.NeighbourhoodCache;
+import nullSquad.util.OrderedIdentitySet;
+import nullSquad.util.SparseBitSet;
 
 /**
  * Abstract class that represents a User
@@ -27,10 +35,48 @@ public abstract class User implements Serializable
 	protected List<User> followers;
 	protected List<User> following;
 	protected List<Document> likedDocuments;
+
+	// Read-only views of the relations returned by the getters
+	private transient List<User> followersView;
+	private transient List<User> followingView;
+	private transient List<Document> likedDocumentsView;
 	protected String taste;
+
+	// The payoff of every step (A PayoffHistory, declared as a list so that
+	// older saves can still be read)
 	protected List<Integer> payoffHistory;
 	protected List<UserPayoffListener> payoffListeners;
 
+	// Pages in the payoff history the first time it is needed (null once the
+	// history is loaded)
+	private transient Supplier<PayoffHistory> payoffHistoryLoader;
+
+	// IDs of the liked documents (Rebuilt from likedDocuments when null)
+	private transient SparseBitSet likedDocumentIDs;
+
+	// Number of liked documents that do not have an ID yet (Not in the bitmap)
+	private transient int unregisteredLikes;
+
+	// Notified when the payoff of this user may have changed (null if the
+	// payoff is not tracked)
+	private transient UserPayoffTracker payoffTracker;
+
+	// Records the changes made to this user (null if the changes are not
+	// recorded)
+	private transient UndoJournal undoJournal;
+
+	// Records the changes made to this user as they are made (null if the
+	// changes are not recorded)
+	private transient ChangeRecorder changeRecorder;
+
+	// The cache of the friend neighbourhoods of the system this user is
+	// registered on (null if none)
+	private transient NeighbourhoodCache neighbourhoodCache;
+
+	// The compact follow graph this user is in (null if none) and its vertex
+	private transient FollowGraph followGraph;
+	private transient int followGraphVertex;
+
 	/**
 	 * Creates a user with the specified taste
 	 * 
@@ -50,10 +96,10 @@ public abstract class User implements Serializable
 		this.userID = 0;
 		this.userName = userName;
 		this.taste = taste;
-		followers = new ArrayList<>();
-		following = new ArrayList<>();
-		likedDocuments = new ArrayList<>();
-		payoffHistory = new ArrayList<>();
+		followers = new OrderedIdentitySet<>();
+		following = new OrderedIdentitySet<>();
+		likedDocuments = new OrderedIdentitySet<>();
+		payoffHistory = new PayoffHistory();
 		payoffListeners = new ArrayList<>();
 
 		// Sets the default ranking strategy
@@ -69,15 +115,170 @@ public abstract class User implements Serializable
 	 */
 	public abstract void addIterationPayoff(int currentIteration);
 
+	/**
+	 * Adds a known payoff to the payoff history (ex: A payoff read from an
+	 * event log)
+	 * 
+	 * @param currentIteration The step of the payoff
+	 * @param payoff The payoff
+	 * @author MVezina
+	 */
+	public void addIterationPayoff(int currentIteration, int payoff)
+	{
+		recordIterationPayoff(currentIteration, () -> payoff);
+	}
+
+	/**
+	 * Records the payoff of a step in the payoff history, and notifies the
+	 * payoff listeners
+	 * 
+	 * @param currentIteration The step of the payoff
+	 * @param payoff Calculates the payoff (Only called if the step is
+	 *        recorded)
+	 * @author MVezina
+	 */
+	protected void recordIterationPayoff(int currentIteration, IntSupplier payoff)
+	{
+		payoffHistoryChanging();
+
+		// The steps since the last recorded step carry the previous payoff
+		// forward
+		getPayoffHistory().padTo(currentIteration);
+
+		// Only add a payoff iteration if the history is not updated
+		if (currentIteration != getPayoffHistory().size())
+			return;
+
+		int iterationPayoff = payoff.getAsInt();
+		getPayoffHistory().record(iterationPayoff);
+
+		if (changeRecorder != null)
+			changeRecorder.payoffRecorded(this, currentIteration, iterationPayoff);
+
+		for (UserPayoffListener upl : this.payoffListeners)
+		{
+			upl.payoffUpdated(new UserPayoffEvent(this));
+		}
+	}
+
 	/**
 	 * Returns the history of the user's payoff
 	 * 
-	 * @return The List of integers representing the user's payoff
+	 * @return The payoff of the user at every step
+	 * @author MVezina
+	 */
+	public PayoffHistory getPayoffHistory()
+	{
+		if (payoffHistoryLoader != null)
+		{
+			payoffHistory = payoffHistoryLoader.get();
+			payoffHistoryLoader = null;
+		}
+
+		return (PayoffHistory) payoffHistory;
+	}
+
+	/**
+	 * @return Whether or not the payoff history is loaded (It is paged in the
+	 *         first time it is needed when restored lazily)
+	 * @author MVezina
+	 */
+	public boolean isPayoffHistoryLoaded()
+	{
+		return payoffHistoryLoader == null;
+	}
+
+	/**
+	 * Sets the tracker that is notified when the payoff of this user may have
+	 * changed
+	 * 
+	 * @param payoffTracker The tracker (null to stop tracking the payoff)
+	 * @author MVezina
+	 */
+	public void setPayoffTracker(UserPayoffTracker payoffTracker)
+	{
+		this.payoffTracker = payoffTracker;
+	}
+
+	/**
+	 * Called by subclasses when the payoff of this user may have changed
+	 * 
+	 * @author MVezina
+	 */
+	protected void payoffChanged()
+	{
+		if (payoffTracker != null)
+			payoffTracker.payoffChanged(this);
+	}
+
+	/**
+	 * Sets the journal that records the changes made to this user (likes,
+	 * follows, payoffs)
+	 * 
+	 * @param undoJournal The journal (null to stop recording the changes)
+	 * @author MVezina
+	 */
+	public void setUndoJournal(UndoJournal undoJournal)
+	{
+		this.undoJournal = undoJournal;
+	}
+
+	/**
+	 * Sets the recorder that records the changes made to this user as they
+	 * are made (ex: To an event log)
+	 * 
+	 * @param changeRecorder The recorder (null to stop recording the changes)
 	 * @author MVezina
 	 */
-	public List<Integer> getPayoffHistory()
+	public void setChangeRecorder(ChangeRecorder changeRecorder)
 	{
-		return payoffHistory;
+		this.changeRecorder = changeRecorder;
+	}
+
+	/**
+	 * @return The recorder of the changes made to this user (null if the
+	 *         changes are not recorded)
+	 * @author MVezina
+	 */
+	protected ChangeRecorder getChangeRecorder()
+	{
+		return changeRecorder;
+	}
+
+	/**
+	 * @return Whether or not the changes made to this user are being
+	 *         recorded (Subclasses can skip creating the inverse change
+	 *         otherwise)
+	 * @author MVezina
+	 */
+	protected boolean isRecordingUndo()
+	{
+		return undoJournal != null && undoJournal.isRecording();
+	}
+
+	/**
+	 * Records a change made to this user (if the changes are being recorded)
+	 * 
+	 * @param undo Undoes the change
+	 * @param redo Makes the change again
+	 * @author MVezina
+	 */
+	protected void recordUndo(Runnable undo, Runnable redo)
+	{
+		if (undoJournal != null)
+			undoJournal.record(undo, redo);
+	}
+
+	/**
+	 * Called before the payoff history is padded / recorded, so
+	 * that the change can be undone
+	 * 
+	 * @author MVezina
+	 */
+	protected void payoffHistoryChanging()
+	{
+		if (isRecordingUndo())
+			undoJournal.record(new PayoffHistoryChange(getPayoffHistory()));
 	}
 
 	/**
@@ -116,7 +317,15 @@ public abstract class User implements Serializable
 		// Registers this user with the file sharing system
 		// Registering a user returns the userID
 		if (userID <= 0)
+		{
 			this.userID = fileSharingSystem.registerUser(this);
+
+			if (userID > 0 && isRecordingUndo())
+			{
+				int registeredID = userID;
+				recordUndo(() -> userID = 0, () -> userID = registeredID);
+			}
+		}
 	}
 
 	/**
@@ -131,12 +340,17 @@ public abstract class User implements Serializable
 		if (doc == null)
 			return false;
 
-		// Check to see if the document already exists in the list
-		if (likedDocuments.contains(doc))
+		// Adds the document to the list of liked documents (unless it already
+		// exists in the list)
+		if (!likedDocuments.add(doc))
 			return false;
+		addLikedDocumentID(doc);
+
+		if (isRecordingUndo())
+			recordUndo(() -> unlikeDocument(doc), () -> likeDocument(doc));
 
-		// Adds the document to the list of liked documents
-		likedDocuments.add(doc);
+		if (changeRecorder != null)
+			changeRecorder.documentLiked(this, doc);
 
 		// Adds this user to the list of users who like the document and return
 		// the result
@@ -155,14 +369,89 @@ public abstract class User implements Serializable
 		if (doc == null)
 			return false;
 
-		// Checks to make sure that the document has been liked before unliking
-		// the document
-		if (!likedDocuments.contains(doc))
-			return false;
-
 		// Removes the document from the list of liked documents and tells the
 		// document that the user no longer likes it
-		return likedDocuments.remove(doc) && doc.unlikeDocument(this);
+		if (!likedDocuments.remove(doc))
+			return false;
+
+		removeLikedDocumentID(doc);
+
+		if (isRecordingUndo())
+			recordUndo(() -> likeDocument(doc), () -> unlikeDocument(doc));
+
+		if (changeRecorder != null)
+			changeRecorder.documentUnliked(this, doc);
+
+		return doc.unlikeDocument(this);
+	}
+
+	/**
+	 * Gets the IDs of all documents liked by this user as a bitmap. Documents
+	 * that have not been given an ID yet are not included (see
+	 * getUnregisteredLikeCount()). The bitmap must not be modified
+	 * 
+	 * @return The IDs of the documents liked by this user
+	 * @author MVezina
+	 */
+	public SparseBitSet getLikedDocumentIDs()
+	{
+		if (likedDocumentIDs == null)
+		{
+			likedDocumentIDs = new SparseBitSet();
+			unregisteredLikes = 0;
+
+			for (Document d : likedDocuments)
+			{
+				addLikedDocumentID(d);
+			}
+		}
+
+		return likedDocumentIDs;
+	}
+
+	/**
+	 * @return The number of documents liked by this user that have not been
+	 *         given an ID yet
+	 * @author MVezina
+	 */
+	public int getUnregisteredLikeCount()
+	{
+		getLikedDocumentIDs();
+		return unregisteredLikes;
+	}
+
+	/**
+	 * Called by a liked document when its ID changes, so that the bitmap of
+	 * liked document IDs gets rebuilt
+	 * 
+	 * @param doc The document whose ID changed
+	 * @author MVezina
+	 */
+	public void likedDocumentIDChanged(Document doc)
+	{
+		likedDocumentIDs = null;
+	}
+
+	private void addLikedDocumentID(Document doc)
+	{
+		if (likedDocumentIDs == null)
+			return;
+
+		if (doc.getDocumentID() > 0)
+			likedDocumentIDs.set(doc.getDocumentID());
+		else
+			unregisteredLikes++;
+	}
+
+	private void removeLikedDocumentID(Document doc)
+	{
+		if (likedDocumentIDs == null)
+			return;
+
+		if (doc.getDocumentID() > 0)
+			likedDocumentIDs.clear(doc.getDocumentID());
+		else
+			unregisteredLikes--;
 	}
 
 	/**
@@ -177,6 +466,21 @@ public abstract class User implements Serializable
 		return this.getDocumentRankingStrategy().getStrategy().rankDocuments(allDocuments, this);
 	}
 
+	/**
+	 * Call the User's selected ranking strategy to rank only the top k
+	 * documents
+	 * 
+	 * @param candidates The documents to be ranked
+	 * @param k The number of documents to return
+	 * @return The top k Documents ranked according to the User's selected
+	 *         strategy
+	 * @author MVezina
+	 */
+	public List<Document> rankTopDocuments(List<Document> candidates, int k)
+	{
+		return this.getDocumentRankingStrategy().getStrategy().rankTopK(candidates, this, k);
+	}
+
 	/**
 	 * Adds a user to the list of followers
 	 * 
@@ -189,12 +493,18 @@ public abstract class User implements Serializable
 		if (user == null || user.equals(this))
 			return false;
 
-		// Checks to see if the user is already following this user
-		if (followers.contains(user))
+		// Add the user to the list of people who are following this user
+		// (unless the user is already following this user)
+		if (!followers.add(user))
 			return false;
 
-		// Add the user to the list of people who are following this user
-		return followers.add(user);
+		followersChanged();
+
+		if (followGraph != null)
+			followGraph.followAdded(user, this);
+
+		followChanged(user);
+		return true;
 	}
 
 	/**
@@ -210,7 +520,100 @@ public abstract class User implements Serializable
 			return false;
 
 		// Returns whether or not the user was removed
-		return followers.remove(user);
+		if (!followers.remove(user))
+			return false;
+
+		followersChanged();
+
+		if (followGraph != null)
+			followGraph.followRemoved(user, this);
+
+		followChanged(user);
+		return true;
+	}
+
+	/**
+	 * Invalidates the cached friend neighbourhoods containing either user (The
+	 * cache of either user, since only one of them may be registered)
+	 * 
+	 * @param follower The user that followed / unfollowed this user
+	 */
+	private void followChanged(User follower)
+	{
+		NeighbourhoodCache cache = (neighbourhoodCache != null ? neighbourhoodCache : follower.neighbourhoodCache);
+
+		if (cache != null)
+			cache.followChanged(follower, this);
+	}
+
+	/**
+	 * Gets the compact follow graph that this user is in
+	 * 
+	 * @return The follow graph (null if the user is not in a follow graph)
+	 * @author MVezina
+	 */
+	public FollowGraph getFollowGraph()
+	{
+		return followGraph;
+	}
+
+	/**
+	 * @return The vertex of this user in its follow graph
+	 * @author MVezina
+	 */
+	public int getFollowGraphVertex()
+	{
+		return followGraphVertex;
+	}
+
+	/**
+	 * @return The cache of the friend neighbourhoods of the system this user
+	 *         is registered on (null if the user is not registered)
+	 * @author MVezina
+	 */
+	public NeighbourhoodCache getNeighbourhoodCache()
+	{
+		return neighbourhoodCache;
+	}
+
+	/**
+	 * Called by a File Sharing System when this user is registered on it or
+	 * removed from it
+	 * 
+	 * @param neighbourhoodCache The cache of the friend neighbourhoods of the
+	 *            system (null if the user was removed)
+	 * @author MVezina
+	 */
+	public void setNeighbourhoodCache(NeighbourhoodCache neighbourhoodCache)
+	{
+		this.neighbourhoodCache = neighbourhoodCache;
+	}
+
+	/**
+	 * Called by a follow graph when this user is added to or removed from it
+	 * 
+	 * @param followGraph The follow graph (null if the user was removed)
+	 * @param vertex The vertex of this user in the follow graph
+	 * @author MVezina
+	 */
+	public void setFollowGraph(FollowGraph followGraph, int vertex)
+	{
+		this.followGraph = followGraph;
+		this.followGraphVertex = vertex;
+	}
+
+	/**
+	 * Called after this user gains or loses a follower. Tells the documents
+	 * liked by this user that its number of followers changed
+	 * 
+	 * @author MVezina
+	 */
+	protected void followersChanged()
+	{
+		for (Document d : likedDocuments)
+		{
+			d.likerFollowersChanged(this);
+		}
 	}
 
 	/**
@@ -231,8 +634,17 @@ public abstract class User implements Serializable
 		if (!user.addFollower(this) || equals(user))
 			return false;
 
+		if (isRecordingUndo())
+			recordUndo(() -> unfollowUser(user), () -> followUser(user));
+
 		// Add the user to the list of users being followed by this user
-		return this.following.add(user);
+		if (!this.following.add(user))
+			return false;
+
+		if (changeRecorder != null)
+			changeRecorder.userFollowed(this, user);
+
+		return true;
 	}
 
 	public DocumentRankingStrategy.Strategy getDocumentRankingStrategy()
@@ -247,8 +659,13 @@ public abstract class User implements Serializable
 	 */
 	public void setDocumentRankingStrategy(DocumentRankingStrategy.Strategy searchStrategy)
 	{
-		if (searchStrategy != null)
-			this.searchStrategy = searchStrategy;
+		if (searchStrategy == null)
+			return;
+
+		this.searchStrategy = searchStrategy;
+
+		if (changeRecorder != null)
+			changeRecorder.rankingStrategyChanged(this, searchStrategy);
 	}
 
 	/**
@@ -285,34 +702,43 @@ public abstract class User implements Serializable
 	/**
 	 * Gets all of the users that are currently following this user
 	 * 
-	 * @return The list of followers
+	 * @return The list of followers (Read-only)
 	 * @author MVezina
 	 */
 	public List<User> getFollowers()
 	{
-		return this.followers;
+		if (followersView == null)
+			followersView = Collections.unmodifiableList(followers);
+
+		return followersView;
 	}
 
 	/**
 	 * Gets all of the users that this user is following
 	 * 
-	 * @return The list of users being followed by this user
+	 * @return The list of users being followed by this user (Read-only)
 	 * @author MVezina
 	 */
 	public List<User> getFollowing()
 	{
-		return this.following;
+		if (followingView == null)
+			followingView = Collections.unmodifiableList(following);
+
+		return followingView;
 	}
 
 	/**
 	 * Gets all of the documents liked by this user
 	 * 
-	 * @return The List of documents liked by this user
+	 * @return The List of documents liked by this user (Read-only)
 	 * @author MVezina
 	 */
 	public List<Document> getLikedDocuments()
 	{
-		return this.likedDocuments;
+		if (likedDocumentsView == null)
+			likedDocumentsView = Collections.unmodifiableList(likedDocuments);
+
+		return likedDocumentsView;
 	}
 
 	/**
@@ -325,7 +751,16 @@ public abstract class User implements Serializable
 	public boolean unfollowUser(User user)
 	{
 		// Remove user from following list
-		return user.removeFollower(this) && this.following.remove(user);
+		if (!user.removeFollower(this) || !this.following.remove(user))
+			return false;
+
+		if (isRecordingUndo())
+			recordUndo(() -> followUser(user), () -> unfollowUser(user));
+
+		if (changeRecorder != null)
+			changeRecorder.userUnfollowed(this, user);
+
+		return true;
 	}
 
 	/**
@@ -363,6 +798,115 @@ public abstract class User implements Serializable
 
 	}
 
+	/**
+	 * Overrides the hashCode method (from Object). Consistent with equals:
+	 * Registered users hash by ID, unregistered users by name and taste. Since
+	 * the hash changes once the user is registered, hash based collections of
+	 * users should be keyed by user ID
+	 * 
+	 * @return The hash code of the user
+	 * @author MVezina
+	 */
+	@Override
+	public int hashCode()
+	{
+		if (userID > 0)
+			return userID;
+
+		return Objects.hash(userName, taste);
+	}
+
+	/**
+	 * Restores the ID and relations of a user read from a saved state. The
+	 * relations are replaced as they are, without notifying the other users /
+	 * documents (They are restored from the same state)
+	 * 
+	 * @param userID The ID of the user
+	 * @param followers The users following this user (in order)
+	 * @param following The users this user is following (in order)
+	 * @param likedDocuments The documents liked by this user (in order)
+	 * @author MVezina
+	 */
+	public void restoreState(int userID, Collection<User> followers, Collection<User> following, Collection<Document> likedDocuments)
+	{
+		this.userID = userID;
+		this.followers = new OrderedIdentitySet<>(followers);
+		this.following = new OrderedIdentitySet<>(following);
+		this.likedDocuments = new OrderedIdentitySet<>(likedDocuments);
+
+		// The views and the bitmap belong to the replaced relations
+		followersView = null;
+		followingView = null;
+		likedDocumentsView = null;
+		likedDocumentIDs = null;
+
+		followersChanged();
+	}
+
+	/**
+	 * Restores the payoff history of a user read from a saved state
+	 * 
+	 * @param payoffHistory The payoff history of the user
+	 * @author MVezina
+	 */
+	public void restorePayoffHistory(PayoffHistory payoffHistory)
+	{
+		this.payoffHistory = payoffHistory;
+		payoffHistoryLoader = null;
+	}
+
+	/**
+	 * Restores the payoff history of a user lazily: The history is only read
+	 * the first time it is needed (ex: When it is graphed, or when the user
+	 * acts again)
+	 * 
+	 * @param payoffHistoryLoader Reads the payoff history of the user
+	 * @author MVezina
+	 */
+	public void restorePayoffHistory(Supplier<PayoffHistory> payoffHistoryLoader)
+	{
+		this.payoffHistoryLoader = payoffHistoryLoader;
+	}
+
+	/**
+	 * A payoff history that has not been paged in yet is loaded before the
+	 * user is written
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		getPayoffHistory();
+		out.defaultWriteObject();
+	}
+
+	/**
+	 * Relations saved before they were kept in ordered identity sets (and
+	 * payoff histories saved as lists) are converted when read
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		if (!(followers instanceof OrderedIdentitySet))
+			followers = new OrderedIdentitySet<>(followers);
+
+		if (!(following instanceof OrderedIdentitySet))
+			following = new OrderedIdentitySet<>(following);
+
+		if (!(likedDocuments instanceof OrderedIdentitySet))
+			likedDocuments = new OrderedIdentitySet<>(likedDocuments);
+
+		if (!(payoffHistory instanceof PayoffHistory))
+		{
+			PayoffHistory history = new PayoffHistory();
+			for (Integer payoff : payoffHistory)
+			{
+				history.record(payoff);
+			}
+
+			payoffHistory = history;
+		}
+	}
+
 	/**
 	 * Gets the string representation of the user
 	 * 
@@ -375,4 +919,47 @@ public abstract class User implements Serializable
 		return "User ID: " + this.userID + "\nUser Name: " + this.userName + "\nTaste: " + this.taste + "\nFollowers: " + followers.size() + "\nFollowing: " + this.following.size() + "\nNumber of Documents Liked: " + this.likedDocuments.size();
 	}
 
+	/**
+	 * The payoffs recorded in a payoff history during a step. Undoing the
+	 * change keeps the size and last payoff that were recorded, so that they
+	 * can be recorded again
+	 * 
+	 * @author MVezina
+	 */
+	private static final class PayoffHistoryChange implements UndoJournal.Change
+	{
+		private final PayoffHistory history;
+		private final int previousSize;
+		private final int previousLastPayoff;
+		private int size;
+		private int lastPayoff;
+
+		private PayoffHistoryChange(PayoffHistory history)
+		{
+			this.history = history;
+			this.previousSize = history.size();
+			this.previousLastPayoff = history.getLastPayoff();
+		}
+
+		@Override
+		public void undo()
+		{
+			size = history.size();
+			lastPayoff = history.getLastPayoff();
+			history.truncate(previousSize, previousLastPayoff);
+		}
+
+		@Override
+		public void redo()
+		{
+			if (size == previousSize)
+				return;
+
+			// The steps before the recorded step carry the previous payoff
+			// forward
+			history.padTo(size - 1);
+			history.record(lastPayoff);
+		}
+	}
+
 }
@@ -0,0 +1,19 @@
+package nullSquad.filesharingsystem.users;
+
+/**
+ * Interface used to track the users whose payoff may have changed (Used by
+ * the simulator to only record the payoff of the users that changed during a
+ * step)
+ * 
+ * @author MVezina
+ */
+public interface UserPayoffTracker
+{
+	/**
+	 * Called when the payoff of the user may have changed
+	 * 
+	 * @param user The user whose payoff may have changed
+	 * @author MVezina
+	 */
+	public void payoffChanged(User user);
+}
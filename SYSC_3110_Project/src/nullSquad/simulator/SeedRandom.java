@@ -0,0 +1,158 @@
+package nullSquad.simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+/**
+ * A random number generator whose state can be read and restored, so the
+ * simulator can record the generator before / after each step without
+ * copying it. It generates the same numbers as a Random with the same seed
+ * (It uses the same linear congruential generator).
+ *
+ * Restoring a state clears the Gaussian cached by nextGaussian (The simulator
+ * does not use it)
+ *
+ * @author MVezina
+ */
+class SeedRandom extends Random
+{
+	private static final long serialVersionUID = 2786407513985213264L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	// The state of the generator (Set by the constructor of Random, through
+	// setSeed)
+	private long state;
+
+	/**
+	 * Creates a generator with a seed that is different every time
+	 *
+	 * @author MVezina
+	 */
+	SeedRandom()
+	{
+		super();
+	}
+
+	/**
+	 * Creates a generator with a seed
+	 *
+	 * @param seed The seed (as for a Random)
+	 * @author MVezina
+	 */
+	SeedRandom(long seed)
+	{
+		super(seed);
+	}
+
+	/**
+	 * Converts a random number generator into a SeedRandom that generates the
+	 * same numbers (ex: The generator of a state saved before SeedRandom
+	 * existed). The state of a Random can only be read from its serialized
+	 * form, so it is copied once here
+	 *
+	 * @param random The random number generator
+	 * @return The generator itself if it is already a SeedRandom, a copy of
+	 *         its state otherwise
+	 * @throws IllegalStateException If the state of the generator could not be
+	 *             read
+	 * @author MVezina
+	 */
+	static SeedRandom of(Random random)
+	{
+		if (random instanceof SeedRandom)
+			return (SeedRandom) random;
+
+		try
+		{
+			ByteArrayOutputStream bAOS = new ByteArrayOutputStream();
+			try (ObjectOutputStream oOS = new ObjectOutputStream(bAOS))
+			{
+				oOS.writeObject(random);
+			}
+
+			// The state is read from the numbers the copy generates, so the
+			// generator itself is not changed
+			Random copy = (Random) new ObjectInputStream(new ByteArrayInputStream(bAOS.toByteArray())).readObject();
+
+			SeedRandom seedRandom = new SeedRandom();
+			seedRandom.setState(previousState(copy));
+			return seedRandom;
+		} catch (IOException | ClassNotFoundException e)
+		{
+			throw new IllegalStateException("The random number generator could not be copied", e);
+		}
+	}
+
+	/**
+	 * @return The state of the generator
+	 * @author MVezina
+	 */
+	long getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Restores a state of the generator (The generator then generates the same
+	 * numbers it did after the state was read)
+	 *
+	 * @param state The state returned by getState
+	 * @author MVezina
+	 */
+	void setState(long state)
+	{
+		// Clears the cached Gaussian of Random
+		super.setSeed(state);
+		this.state = state & MASK;
+	}
+
+	@Override
+	public synchronized void setSeed(long seed)
+	{
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits)
+	{
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * Reads the state of a Random from the next two numbers it generates (The
+	 * high 32 bits of its next two states), and steps the state back
+	 */
+	private static long previousState(Random random)
+	{
+		long first = random.nextInt() & 0xFFFFFFFFL;
+		long second = random.nextInt() & 0xFFFFFFFFL;
+
+		// Only the low 16 bits of the first state are unknown
+		for (long low = 0; low < (1L << 16); low++)
+		{
+			long state = (first << 16) | low;
+			if (((state * MULTIPLIER + ADDEND) & MASK) >>> 16 == second)
+				return inverse(state);
+		}
+
+		throw new IllegalStateException("The state of the random number generator could not be found");
+	}
+
+	/**
+	 * @return The state before a state of the generator
+	 */
+	private static long inverse(long state)
+	{
+		// The multiplicative inverse of MULTIPLIER modulo 2^48
+		return ((state - ADDEND) * 0xDFE05BCB1365L) & MASK;
+	}
+}
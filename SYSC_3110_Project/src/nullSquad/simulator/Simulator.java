@@ -1,10 +1,19 @@
 package nullSquad.simulator;
 
 import java.io.*;
+import java.util.List;
 import java.util.Random;
 
 import nullSquad.filesharingsystem.*;
 import nullSquad.filesharingsystem.users.*;
+import nullSquad.simulator.log.LogLevel;
+import nullSquad.simulator.log.SimulationLog;
+import nullSquad.simulator.snapshot.Compression;
+import nullSquad.simulator.snapshot.EventLogReader;
+import nullSquad.simulator.snapshot.EventLogWriter;
+import nullSquad.simulator.snapshot.SnapshotFile;
+import nullSquad.simulator.snapshot.SnapshotReader;
+import nullSquad.simulator.snapshot.SnapshotWriter;
 
 public class Simulator implements Serializable
 {
@@ -13,20 +22,56 @@ public class Simulator implements Serializable
 	private FileSharingSystem fileSharingSystem;
 	private int currentSimulatorSequence;
 	private int totalSimulatorSequences;
+	// Always a SeedRandom, so its state can be recorded for each step
 	private Random randomNumber;
-	byte[] previousState;
 
-	// The log text
-	public static String logText = "Welcome to the Simulator!\n\n";
+	// Records the changes made during a step, and the steps that can be
+	// undone / redone
+	private transient UndoJournal undoJournal;
+	private transient StepHistory stepHistory;
+
+	// Writes every change to an event log, with a checkpoint every few steps
+	// (null if no event log is written), and the number of the next log event
+	// to write to it
+	private transient EventLogWriter eventLog;
+	private transient int checkpointInterval;
+	private transient long eventLogSequence;
+
+	// The file the state was restored from, while the payoff histories of
+	// its users may still be mapped from it (null otherwise)
+	private transient SnapshotFile snapshotFile;
 
 	public Simulator(FileSharingSystem fileSharingSystem, int totalSequences)
+	{
+		this(fileSharingSystem, totalSequences, new SeedRandom());
+	}
+
+	/**
+	 * Creates a simulator that picks the users to act with the specified
+	 * random number generator (ex: The generator of a saved state)
+	 * 
+	 * @param fileSharingSystem The File Sharing System to simulate
+	 * @param totalSequences The total number of sequences to simulate
+	 * @param randomNumber The random number generator
+	 * @throws IllegalStateException If the state of the generator could not be
+	 *             read
+	 * @author MVezina
+	 */
+	public Simulator(FileSharingSystem fileSharingSystem, int totalSequences, Random randomNumber)
 	{
 		this.fileSharingSystem = fileSharingSystem;
-		randomNumber = new Random();
+		this.randomNumber = SeedRandom.of(randomNumber);
 		this.currentSimulatorSequence = 0;
 		this.totalSimulatorSequences = totalSequences;
 
-		previousState = null;
+		// The payoffs of producers returned by searches are refreshed once per
+		// step, and only the changed payoffs are recorded
+		fileSharingSystem.setDeferPayoffRefresh(true);
+		fileSharingSystem.setPayoffTracking(true);
+
+		undoJournal = new UndoJournal();
+		fileSharingSystem.setUndoJournal(undoJournal);
+		stepHistory = new StepHistory();
 
 	}
 
@@ -46,46 +91,59 @@ public class Simulator implements Serializable
 	 */
 	public void simulationStep()
 	{
+		if (undoJournal == null)
+		{
+			undoJournal = new UndoJournal();
+			fileSharingSystem.setUndoJournal(undoJournal);
+			stepHistory = new StepHistory();
+		}
+
+		// Record the changes of this step, and the state of the simulator
+		// before the step
+		int sequence = currentSimulatorSequence;
+		long randomBefore = getSeedRandom().getState();
+		long logSequence = SimulationLog.getInstance().getSequence();
+
+		undoJournal.beginStep();
 
 		// Generate a random number so the simulation can get a random user
-		User randomUser = fileSharingSystem.getUsers().get(randomNumber.nextInt(fileSharingSystem.getUsers().size()));
+		List<User> users = fileSharingSystem.getUsers();
+		User randomUser = users.get(randomNumber.nextInt(users.size()));
 
-		String startText = " === " + randomUser.getUserName() + " has been called to act: === ";
-		Simulator.appendLineLog(startText);
+		SimulationLog log = SimulationLog.getInstance();
+		log.setStep(currentSimulatorSequence);
+		log.info(" === {} has been called to act: === ", randomUser.getUserName());
 
 		randomUser.act(fileSharingSystem, 10);
 
-		Simulator.appendLineLog("\n");
+		// Refresh the payoff of every producer returned by the searches of
+		// this step (once per producer)
+		fileSharingSystem.refreshProducerPayoffs();
 
-		// Add the payoff iteration for each user
-		for (User u : fileSharingSystem.getUsers())
+		// Add the payoff iteration for each user whose payoff may have changed
+		// during this step (The payoff of every other user carries forward)
+		for (User u : fileSharingSystem.takeChangedPayoffs())
 		{
 			u.addIterationPayoff(currentSimulatorSequence);
 		}
 
 		currentSimulatorSequence++;
 
+		// Notify any listeners of the documents uploaded during this step
+		fileSharingSystem.flushChanges();
+
+		stepHistory.addStep(new StepHistory.Entry(undoJournal.endStep(), sequence, randomBefore, getSeedRandom().getState(), logSequence));
+
+		if (eventLog != null)
+			writeStep(sequence, randomUser);
 	}
 
 	/**
-	 * Saves the previous state of the simulator
-	 * 
-	 * @author MVezina
+	 * @return The random number generator, whose state can be recorded
 	 */
-	public void savePreviousState()
+	private SeedRandom getSeedRandom()
 	{
-		try
-		{
-			ByteArrayOutputStream bAOS = new ByteArrayOutputStream();
-			// Write the state to the output stream
-			saveState(bAOS);
-			previousState = (bAOS.toByteArray());
-		} catch (IOException e)
-		{
-			System.out.println("Failed to write save state to byte array");
-			e.printStackTrace();
-		}
-
+		return (SeedRandom) randomNumber;
 	}
 
 	/**
@@ -101,6 +159,11 @@ public class Simulator implements Serializable
 			User user = new Consumer("Consumer" + x, fileSharingSystem.getTags().get(randomNumber.nextInt(fileSharingSystem.getTags().size())));
 			user.registerUser(fileSharingSystem);
 		}
+
+		fileSharingSystem.flushChanges();
+
+		if (eventLog != null)
+			writeRandom();
 	}
 
 	/**
@@ -116,6 +179,11 @@ public class Simulator implements Serializable
 			User user = new Producer("Producer" + x, fileSharingSystem.getTags().get(randomNumber.nextInt(fileSharingSystem.getTags().size())));
 			user.registerUser(fileSharingSystem);
 		}
+
+		fileSharingSystem.flushChanges();
+
+		if (eventLog != null)
+			writeRandom();
 	}
 
 	/**
@@ -148,27 +216,279 @@ public class Simulator implements Serializable
 	}
 
 	/**
-	 * Saves the state of the Simulator to the specified OutputStream
+	 * @return The random number generator used to pick the user that acts
+	 * @author MVezina
+	 */
+	public Random getRandomNumber()
+	{
+		return randomNumber;
+	}
+
+	/**
+	 * Sets the random number generator used to pick the user that acts (ex:
+	 * The generator read from an event log)
+	 * 
+	 * @param randomNumber The random number generator
+	 * @throws IllegalStateException If the state of the generator could not be
+	 *             read
+	 * @author MVezina
+	 */
+	public void setRandomNumber(Random randomNumber)
+	{
+		if (randomNumber != null)
+			this.randomNumber = SeedRandom.of(randomNumber);
+	}
+
+	/**
+	 * Starts writing every change made to the simulation to an event log,
+	 * starting with a checkpoint of the current state. A checkpoint of the
+	 * whole state is written again every few steps, and the changes of each
+	 * step are written when the step ends (so at most the step in progress is
+	 * lost if the simulator stops)
+	 * 
+	 * @param oS The stream to write the event log to (ex: A file)
+	 * @param checkpointInterval The number of steps between checkpoints
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void startEventLog(OutputStream oS, int checkpointInterval) throws IOException
+	{
+		stopEventLog();
+
+		eventLog = new EventLogWriter(oS);
+		this.checkpointInterval = Math.max(1, checkpointInterval);
+		fileSharingSystem.setChangeRecorder(eventLog);
+
+		try
+		{
+			checkpoint();
+		} catch (IOException e)
+		{
+			stopEventLog();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the changes that have not been written yet, and stops writing
+	 * the event log
+	 * 
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void stopEventLog() throws IOException
+	{
+		if (eventLog == null)
+			return;
+
+		EventLogWriter writer = eventLog;
+		eventLog = null;
+		fileSharingSystem.setChangeRecorder(null);
+
+		try
+		{
+			writer.logged(SimulationLog.getInstance().getEventsSince(eventLogSequence));
+		} finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return Whether or not an event log is being written
+	 * @author MVezina
+	 */
+	public boolean isEventLogEnabled()
+	{
+		return eventLog != null;
+	}
+
+	/**
+	 * Restores the state of an event log: The last checkpoint is restored,
+	 * and the changes written after it are made again. The event log that is
+	 * being written (if any) is stopped first
+	 * 
+	 * @param file The event log file
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 * @author MVezina
+	 */
+	public void restoreEventLog(File file) throws IOException, ClassNotFoundException
+	{
+		stopEventLog();
+
+		EventLogReader reader = new EventLogReader(file);
+		setCurrentState(reader.readCheckpoint());
+		reader.replay(this);
+	}
+
+	/**
+	 * Writes a checkpoint of the current state to the event log
+	 * 
+	 * @throws IOException
+	 */
+	private void checkpoint() throws IOException
+	{
+		eventLog.checkpoint(new SimulatorSaveState(this));
+		eventLogSequence = SimulationLog.getInstance().getSequence();
+	}
+
+	/**
+	 * Writes the changes of a step to the event log (or a checkpoint, every
+	 * few steps)
+	 * 
+	 * @param sequence The step
+	 * @param actingUser The user that acted during the step
+	 */
+	private void writeStep(int sequence, User actingUser)
+	{
+		try
+		{
+			if ((sequence + 1) % checkpointInterval == 0)
+			{
+				checkpoint();
+				return;
+			}
+
+			eventLog.stepEnded(sequence, actingUser);
+			commitEventLog();
+		} catch (IOException | UncheckedIOException e)
+		{
+			eventLogFailed(e);
+		}
+	}
+
+	/**
+	 * Writes the random number generator to the event log, after it was used
+	 * outside of a step
+	 */
+	private void writeRandom()
+	{
+		try
+		{
+			eventLog.randomChanged(randomNumber);
+			commitEventLog();
+		} catch (IOException | UncheckedIOException e)
+		{
+			eventLogFailed(e);
+		}
+	}
+
+	/**
+	 * Writes a checkpoint to the event log after the state was replaced (ex:
+	 * A step was undone)
+	 */
+	private void writeCheckpoint()
+	{
+		try
+		{
+			checkpoint();
+		} catch (IOException | UncheckedIOException e)
+		{
+			eventLogFailed(e);
+		}
+	}
+
+	/**
+	 * Writes the log events since the last frame, and commits the recorded
+	 * changes as a frame
+	 */
+	private void commitEventLog() throws IOException
+	{
+		SimulationLog log = SimulationLog.getInstance();
+
+		eventLog.logged(log.getEventsSince(eventLogSequence));
+		eventLogSequence = log.getSequence();
+		eventLog.commit();
+	}
+
+	/**
+	 * Stops writing an event log that could not be written
+	 * 
+	 * @param e The reason
+	 */
+	private void eventLogFailed(Exception e)
+	{
+		EventLogWriter writer = eventLog;
+		eventLog = null;
+		fileSharingSystem.setChangeRecorder(null);
+
+		try
+		{
+			writer.close();
+		} catch (IOException closeException)
+		{
+			// The log could not be written in the first place
+		}
+
+		SimulationLog.getInstance().warning("The event log has been stopped: {}", e.getMessage());
+	}
+
+	/**
+	 * Saves the state of the Simulator to the specified OutputStream (in the
+	 * binary snapshot format)
 	 * 
 	 * @param oS The OutputStream to write the saved state to
 	 * @throws IOException
 	 * @author MVezina
 	 */
 	public void saveState(OutputStream oS) throws IOException
+	{
+		saveState(oS, Compression.None);
+	}
+
+	/**
+	 * Saves the state of the Simulator to the specified OutputStream (in the
+	 * binary snapshot format), compressed as it is written. The compression
+	 * is detected when the state is restored (A state that is not compressed
+	 * can be restored faster from a file, see restoreState(File))
+	 * 
+	 * @param oS The OutputStream to write the saved state to
+	 * @param compression How the state is compressed
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void saveState(OutputStream oS, Compression compression) throws IOException
 	{
 		if (oS == null)
 			return;
 
-		ObjectOutputStream oos = new ObjectOutputStream(oS);
+		SnapshotWriter writer = new SnapshotWriter(compression.compress(oS));
 
 		SimulatorSaveState saveState = new SimulatorSaveState(this);
 
-		oos.writeObject(saveState);
-		oos.close();
+		writer.write(saveState);
+		writer.close();
 	}
 
 	/**
-	 * Restores a previously saved simulator state from an InputStream
+	 * Saves the state of the Simulator to a file. The file may be the one the
+	 * state was restored from: The payoff histories that are still mapped
+	 * from it are paged in before it is overwritten
+	 * 
+	 * @param file The file to write the saved state to
+	 * @param compression How the state is compressed
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void saveState(File file, Compression compression) throws IOException
+	{
+		if (file == null)
+			return;
+
+		if (snapshotFile != null && snapshotFile.isMappedFile(file))
+		{
+			snapshotFile.loadPayoffHistories();
+			snapshotFile = null;
+		}
+
+		saveState(new FileOutputStream(file), compression);
+	}
+
+	/**
+	 * Restores a previously saved simulator state from an InputStream. Both
+	 * the binary snapshot format and states saved with Java serialization (by
+	 * older versions) can be read, compressed or not
 	 * 
 	 * @param iS The InputStream to read the state from
 	 * @throws IOException
@@ -181,14 +501,28 @@ public class Simulator implements Serializable
 		if (iS == null)
 			return;
 
-		// Create the object input stream
-		ObjectInputStream oIS = new ObjectInputStream(iS);
+		// The compression and the format are detected from the start of the
+		// stream
+		BufferedInputStream bIS = new BufferedInputStream(Compression.decompress(iS));
 
-		// Read the Simulator State
-		Object inputObject = oIS.readObject();
+		Object inputObject;
+		if (SnapshotReader.isSnapshot(bIS))
+		{
+			SnapshotReader reader = new SnapshotReader(bIS);
+			inputObject = reader.read();
+			reader.close();
+		}
+		else
+		{
+			// Create the object input stream
+			ObjectInputStream oIS = new ObjectInputStream(bIS);
+
+			// Read the Simulator State
+			inputObject = oIS.readObject();
 
-		// Close the stream
-		oIS.close();
+			// Close the stream
+			oIS.close();
+		}
 
 		// Ensure the Object is an instance of a SimulatorSaveState
 		if (!(inputObject instanceof SimulatorSaveState))
@@ -199,6 +533,40 @@ public class Simulator implements Serializable
 
 	}
 
+	/**
+	 * Restores a previously saved simulator state from a file. A state in the
+	 * binary snapshot format is memory-mapped, and the payoff history of each
+	 * user is only read the first time it is needed (ex: When it is graphed).
+	 * Any other state (ex: A compressed state) is read from the file as a
+	 * stream
+	 * 
+	 * @param file The file to read the state from
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 * @author MVezina
+	 */
+	public void restoreState(File file) throws IOException, ClassNotFoundException
+	{
+		if (file == null)
+			return;
+
+		if (EventLogReader.isEventLog(file))
+		{
+			restoreEventLog(file);
+			return;
+		}
+
+		SnapshotFile snapshotFile = SnapshotFile.open(file);
+		if (snapshotFile == null)
+		{
+			restoreState(new FileInputStream(file));
+			return;
+		}
+
+		setCurrentState(snapshotFile.read());
+		this.snapshotFile = snapshotFile;
+	}
+
 	/**
 	 * Sets the current simulator state so that it matches the passed in
 	 * simulator save state
@@ -211,22 +579,32 @@ public class Simulator implements Serializable
 
 		Simulator simulator = saveState.getSimulator();
 
-		// Get the log text from the state
-		logText = saveState.getLogText();
+		// The generator is converted first, so nothing is replaced if it
+		// cannot be (ex: The generator of a state saved by an older version)
+		Random random = SeedRandom.of(simulator.randomNumber);
+
+		// The users restored from a mapped file are replaced
+		snapshotFile = null;
+
+		// Restore the log events from the state
+		SimulationLog.getInstance().restore(saveState.getLogEvents());
 
 		// Set the simulator sequences
 		this.currentSimulatorSequence = simulator.currentSimulatorSequence;
 		this.totalSimulatorSequences = simulator.totalSimulatorSequences;
 
 		// Set the random number instance
-		this.randomNumber = simulator.randomNumber;
+		this.randomNumber = random;
 
 		// Restore the state of the file sharing system
 		fileSharingSystem.restoreState(simulator.fileSharingSystem);
 
-		// Set the previous state equal to the previous state (saved in the
-		// SimulatorSaveState object)
-		this.previousState = simulator.previousState;
+		// The changes of the recorded steps were made to the replaced state
+		if (stepHistory != null)
+			stepHistory.clear();
+
+		if (eventLog != null)
+			writeCheckpoint();
 
 	}
 
@@ -236,65 +614,155 @@ public class Simulator implements Serializable
 	 */
 	public boolean canStepBack()
 	{
-		return previousState != null;
+		return stepHistory != null && stepHistory.getUndoCount() > 0;
 	}
 
 	/**
-	 * Step back
+	 * Step back: Undoes the changes made during the last step
 	 * 
 	 * @author MVezina
 	 */
 	public void stepBack()
 	{
 		// Check to see that we can step back
-		if (canStepBack())
-		{
-			try
-			{
-				// Create a byte array input stream
-				ByteArrayInputStream bAIS = new ByteArrayInputStream(previousState);
+		if (!canStepBack())
+			return;
 
-				// Restore the simulator state from the previous states byte
-				// array
-				restoreState(bAIS);
+		StepHistory.Entry step = stepHistory.takeUndo();
+		SimulationLog log = SimulationLog.getInstance();
 
-				// Set the previous state to null (
-				previousState = null;
+		// The changes are undone without being logged, and the events logged
+		// during the step are kept to be logged again by a redo
+		runUnlogged(step.changes::undo);
 
-			} catch (ClassNotFoundException | IOException e)
-			{
-				System.out.println("Failed to restore state from stack!");
-				e.printStackTrace();
-			}
-		}
+		step.logEvents = log.getEventsSince(step.logSequence);
+		log.truncate(step.logSequence);
+
+		currentSimulatorSequence = step.sequence;
+		getSeedRandom().setState(step.randomBefore);
+
+		stepChanged();
+
+		// An undone step is not a change the event log can replay
+		if (eventLog != null)
+			writeCheckpoint();
+		stepHistory.pushRedo(step);
+	}
+
+	/**
+	 * @return Whether or not the Simulator can step forward (redo an undone
+	 *         step)
+	 * @author MVezina
+	 */
+	public boolean canStepForward()
+	{
+		return stepHistory != null && stepHistory.getRedoCount() > 0;
+	}
+
+	/**
+	 * Step forward: Redoes the changes of the last undone step
+	 * 
+	 * @author MVezina
+	 */
+	public void stepForward()
+	{
+		// Check to see that we can step forward
+		if (!canStepForward())
+			return;
+
+		StepHistory.Entry step = stepHistory.takeRedo();
+
+		runUnlogged(step.changes::redo);
+
+		SimulationLog.getInstance().replay(step.logEvents);
+		step.logEvents = null;
+
+		currentSimulatorSequence = step.sequence + 1;
+		getSeedRandom().setState(step.randomAfter);
+
+		stepChanged();
+
+		if (eventLog != null)
+			writeCheckpoint();
+		stepHistory.pushUndo(step);
+	}
+
+	/**
+	 * @return The number of steps that can be undone
+	 * @author MVezina
+	 */
+	public int getUndoStepCount()
+	{
+		return (stepHistory == null ? 0 : stepHistory.getUndoCount());
 	}
 
 	/**
-	 * Appends line t to log text
+	 * @return The number of steps that can be redone
+	 * @author MVezina
+	 */
+	public int getRedoStepCount()
+	{
+		return (stepHistory == null ? 0 : stepHistory.getRedoCount());
+	}
+
+	/**
+	 * @return The memory budget of the undo / redo history (in bytes)
+	 * @author MVezina
+	 */
+	public long getUndoMemoryBudget()
+	{
+		return (stepHistory == null ? StepHistory.DEFAULT_MEMORY_BUDGET : stepHistory.getMemoryBudget());
+	}
+
+	/**
+	 * Sets the memory budget of the undo / redo history. Once the (estimated)
+	 * memory used by the history exceeds the budget, the oldest steps are
+	 * dropped first (The last step can always be undone)
 	 * 
-	 * @param t The text to be appended
+	 * @param memoryBudget The memory budget (in bytes)
+	 * @author MVezina
 	 */
-	public static void appendLineLog(String t)
+	public void setUndoMemoryBudget(long memoryBudget)
 	{
-		appendLog(t + "\n");
+		if (stepHistory == null)
+			stepHistory = new StepHistory();
+
+		stepHistory.setMemoryBudget(memoryBudget);
 	}
 
 	/**
-	 * Appends text t to log text
+	 * Runs an action with the log disabled
 	 * 
-	 * @param t The text to be appended
+	 * @param action The action to run
+	 * @author MVezina
 	 */
-	public static void appendLog(String t)
+	private static void runUnlogged(Runnable action)
 	{
-		logText += t;
+		SimulationLog log = SimulationLog.getInstance();
+		LogLevel level = log.getLevel();
+
+		log.setLevel(LogLevel.Off);
+		try
+		{
+			action.run();
+		} finally
+		{
+			log.setLevel(level);
+		}
 	}
 
 	/**
-	 * Clears log text
+	 * Called after a step is undone / redone
+	 * 
+	 * @author MVezina
 	 */
-	public static void clearLog()
+	private void stepChanged()
 	{
-		logText = "";
+		// The payoffs that changed back are the payoffs recorded by the step
+		fileSharingSystem.takeChangedPayoffs();
+
+		// Notify any listeners of the documents added / removed
+		fileSharingSystem.flushChanges();
 	}
 
 }
@@ -4,6 +4,13 @@
 package nullSquad.simulator;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import nullSquad.simulator.log.LogEvent;
+import nullSquad.simulator.log.LogLevel;
+import nullSquad.simulator.log.MemoryLogSink;
+import nullSquad.simulator.log.SimulationLog;
 
 /**
  * Represents a saved simulator state
@@ -14,12 +21,29 @@ public class SimulatorSaveState implements Serializable
 {
 	private static final long serialVersionUID = 6037231624539182213L;
 	private Simulator simulatorState;
+
+	// The log text of states saved before the log kept events (null otherwise)
 	private String logTextState;
+	private List<LogEvent> logEventsState;
 
 	public SimulatorSaveState(Simulator simulator)
 	{
 		this.simulatorState = simulator;
-		this.logTextState = Simulator.logText;
+		this.logEventsState = new ArrayList<>(SimulationLog.getInstance().getEvents());
+	}
+
+	/**
+	 * Creates a saved state with the specified log events (ex: A state read
+	 * from a file)
+	 * 
+	 * @param simulator The saved simulator
+	 * @param logEvents The saved log events
+	 * @author MVezina
+	 */
+	public SimulatorSaveState(Simulator simulator, List<LogEvent> logEvents)
+	{
+		this.simulatorState = simulator;
+		this.logEventsState = logEvents;
 	}
 
 	/**
@@ -28,7 +52,28 @@ public class SimulatorSaveState implements Serializable
 	 */
 	public String getLogText()
 	{
-		return this.logTextState;
+		if (logEventsState == null)
+			return this.logTextState;
+
+		return MemoryLogSink.toText(logEventsState, -1);
+	}
+
+	/**
+	 * @return Get the log events (The log text of an older state is returned
+	 *         as a single event)
+	 * @author MVezina
+	 */
+	public List<LogEvent> getLogEvents()
+	{
+		if (logEventsState != null)
+			return this.logEventsState;
+
+		List<LogEvent> legacyEvents = new ArrayList<>();
+
+		if (logTextState != null && !logTextState.isEmpty())
+			legacyEvents.add(new LogEvent(LogLevel.Info, simulatorState.getCurrentSimulatorSequence(), logTextState));
+
+		return legacyEvents;
 	}
 
 	/**
@@ -0,0 +1,207 @@
+package nullSquad.simulator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import nullSquad.filesharingsystem.UndoJournal;
+import nullSquad.simulator.log.LogEvent;
+
+/**
+ * The steps of a simulator that can be undone and redone. The history is kept
+ * within a memory budget (an estimate of the bytes used by the recorded
+ * changes): Once the budget is exceeded, the oldest undo steps are dropped
+ * first, then the redo steps furthest from the current step. The most recent
+ * undo step is always kept.
+ * 
+ * @author MVezina
+ */
+class StepHistory
+{
+	/* The default memory budget of the history (in bytes) */
+	public static final long DEFAULT_MEMORY_BUDGET = 16L * 1024 * 1024;
+
+	// The approximate number of bytes used by an entry (Without its changes
+	// and log events)
+	private static final int ENTRY_BYTES = 160;
+
+	// The steps that can be undone / redone (The next step to undo / redo is
+	// last)
+	private final Deque<Entry> undoEntries;
+	private final Deque<Entry> redoEntries;
+
+	private long memoryBudget;
+	private long estimatedBytes;
+
+	/**
+	 * A step of the simulator: The changes made to the file sharing system,
+	 * and the state of the simulator itself before / after the step
+	 * 
+	 * @author MVezina
+	 */
+	static final class Entry
+	{
+		final UndoJournal.Step changes;
+		final int sequence;
+		final long randomBefore;
+		final long randomAfter;
+		final long logSequence;
+
+		// The events logged during the step (Only kept while the step is
+		// undone, so they can be logged again)
+		List<LogEvent> logEvents;
+
+		// The approximate number of bytes used by the entry when it was added
+		private long estimatedBytes;
+
+		Entry(UndoJournal.Step changes, int sequence, long randomBefore, long randomAfter, long logSequence)
+		{
+			this.changes = changes;
+			this.sequence = sequence;
+			this.randomBefore = randomBefore;
+			this.randomAfter = randomAfter;
+			this.logSequence = logSequence;
+		}
+
+		private long estimateBytes()
+		{
+			long bytes = ENTRY_BYTES + changes.getEstimatedBytes();
+
+			if (logEvents != null)
+			{
+				for (LogEvent event : logEvents)
+				{
+					bytes += 48 + 2 * event.getMessage().length();
+				}
+			}
+
+			return bytes;
+		}
+	}
+
+	StepHistory()
+	{
+		undoEntries = new ArrayDeque<>();
+		redoEntries = new ArrayDeque<>();
+		memoryBudget = DEFAULT_MEMORY_BUDGET;
+	}
+
+	/**
+	 * Adds a new step that can be undone (The undone steps can no longer be
+	 * redone)
+	 */
+	void addStep(Entry entry)
+	{
+		for (Entry redoEntry : redoEntries)
+		{
+			estimatedBytes -= redoEntry.estimatedBytes;
+		}
+
+		redoEntries.clear();
+		pushUndo(entry);
+	}
+
+	/**
+	 * @return The next step to undo (null if there is none)
+	 */
+	Entry takeUndo()
+	{
+		Entry entry = undoEntries.pollLast();
+
+		if (entry != null)
+			estimatedBytes -= entry.estimatedBytes;
+
+		return entry;
+	}
+
+	/**
+	 * @return The next step to redo (null if there is none)
+	 */
+	Entry takeRedo()
+	{
+		Entry entry = redoEntries.pollLast();
+
+		if (entry != null)
+			estimatedBytes -= entry.estimatedBytes;
+
+		return entry;
+	}
+
+	/**
+	 * Adds a step that has been done (or redone)
+	 */
+	void pushUndo(Entry entry)
+	{
+		undoEntries.addLast(entry);
+		entry.estimatedBytes = entry.estimateBytes();
+		estimatedBytes += entry.estimatedBytes;
+		trim();
+	}
+
+	/**
+	 * Adds a step that has been undone
+	 */
+	void pushRedo(Entry entry)
+	{
+		redoEntries.addLast(entry);
+		entry.estimatedBytes = entry.estimateBytes();
+		estimatedBytes += entry.estimatedBytes;
+		trim();
+	}
+
+	/**
+	 * Drops the oldest steps until the history is within its budget
+	 */
+	private void trim()
+	{
+		while (estimatedBytes > memoryBudget)
+		{
+			Entry dropped;
+
+			if (undoEntries.size() > 1)
+				dropped = undoEntries.pollFirst();
+			else if (!redoEntries.isEmpty())
+				dropped = redoEntries.pollFirst();
+			else
+				break;
+
+			estimatedBytes -= dropped.estimatedBytes;
+		}
+	}
+
+	int getUndoCount()
+	{
+		return undoEntries.size();
+	}
+
+	int getRedoCount()
+	{
+		return redoEntries.size();
+	}
+
+	long getEstimatedBytes()
+	{
+		return estimatedBytes;
+	}
+
+	long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+
+	void setMemoryBudget(long memoryBudget)
+	{
+		if (memoryBudget < 0)
+			throw new IllegalArgumentException("memoryBudget < 0: " + memoryBudget);
+
+		this.memoryBudget = memoryBudget;
+		trim();
+	}
+
+	void clear()
+	{
+		undoEntries.clear();
+		redoEntries.clear();
+		estimatedBytes = 0;
+	}
+}
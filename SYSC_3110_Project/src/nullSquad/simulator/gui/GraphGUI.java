@@ -5,6 +5,7 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
+import java.util.function.IntSupplier;
 
 import nullSquad.filesharingsystem.users.*;
 
@@ -22,6 +23,7 @@ public class GraphGUI extends JFrame implements UserPayoffListener
 	
 	private JFreeChart chart;
 	private User userInfo;
+	private transient IntSupplier stepCount;
 	private XYSeriesCollection xySeriesCollection;
 
 	/**
@@ -31,9 +33,23 @@ public class GraphGUI extends JFrame implements UserPayoffListener
 	 */
 	public GraphGUI(User user)
 	{
-		super(user.getUserName() + "'s Payoff History (Over " + user.getPayoffHistory().size() + " Steps)");
+		this(user, null);
+	}
+
+	/**
+	 * Create a GUI that shows a graph for the specified user's payoff history
+	 * 
+	 * @param user The user to show the Payoff history for
+	 * @param stepCount The number of steps simulated so far (The payoff is
+	 *        only recorded in the steps where it changed). If null, only the
+	 *        recorded steps are shown
+	 */
+	public GraphGUI(User user, IntSupplier stepCount)
+	{
+		super(user.getUserName() + "'s Payoff History");
 
 		this.userInfo = user;
+		this.stepCount = stepCount;
 		this.pack();
 
 		// Set size
@@ -97,15 +113,28 @@ public class GraphGUI extends JFrame implements UserPayoffListener
 		if (userInfo == null)
 			return null;
 
+		// The steps after the last recorded step carry the last payoff
+		// forward
+		int steps = Math.max(userInfo.getPayoffHistory().size(), (stepCount == null ? 0 : stepCount.getAsInt()));
+
 		// Set the title of the frame
-		this.setTitle(userInfo.getUserName() + "'s Payoff History (Over " + userInfo.getPayoffHistory().size() + " Steps)");
+		this.setTitle(userInfo.getUserName() + "'s Payoff History (Over " + steps + " Steps)");
 
-		// Set the points of the data set
-		for (int i = 0; i < userInfo.getPayoffHistory().size(); i++)
+		int[] payoffs = new int[steps];
+		userInfo.getPayoffHistory().read(0, steps, payoffs, 0);
+
+		// Set the points of the data set. Only the steps where the payoff
+		// changes (and the step before) are needed to draw the same line
+		for (int i = 0; i < payoffs.length; i++)
 		{
-			xySeries.add(i, userInfo.getPayoffHistory().get(i));
+			boolean changed = (i == 0 || payoffs[i] != payoffs[i - 1]);
+			boolean changesNext = (i == payoffs.length - 1 || payoffs[i] != payoffs[i + 1]);
+
+			if (changed || changesNext)
+				xySeries.add(i, payoffs[i], false);
 		}
 
+		xySeries.fireSeriesChanged();
 		return xySeries;
 	}
 
@@ -0,0 +1,119 @@
+package nullSquad.simulator.gui;
+
+import javax.swing.DefaultListModel;
+import javax.swing.SwingUtilities;
+
+import nullSquad.filesharingsystem.*;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.User;
+
+/**
+ * Keeps Swing list models of the users and documents in sync with a File
+ * Sharing System. The File Sharing System itself does not depend on Swing,
+ * this adapter applies its batched changes to the list models instead
+ *
+ * @author MVezina
+ */
+public class ListModelAdapter implements FileSharingSystemListener
+{
+	private FileSharingSystem fileSharingSystem;
+	private DefaultListModel<User> usersListModel;
+	private DefaultListModel<Document> documentsListModel;
+
+	/**
+	 * Creates the list models and subscribes to the changes of the specified
+	 * File Sharing System
+	 *
+	 * @param fileSharingSystem The File Sharing System to mirror
+	 * @author MVezina
+	 */
+	public ListModelAdapter(FileSharingSystem fileSharingSystem)
+	{
+		this.fileSharingSystem = fileSharingSystem;
+		usersListModel = new DefaultListModel<>();
+		documentsListModel = new DefaultListModel<>();
+
+		// Copy over the current users / documents
+		resyncModels();
+
+		fileSharingSystem.addFileSharingSystemListener(this);
+	}
+
+	/**
+	 * @return The list model of all users
+	 * @author MVezina
+	 */
+	public DefaultListModel<User> getUsersListModel()
+	{
+		return usersListModel;
+	}
+
+	/**
+	 * @return The list model of all documents
+	 * @author MVezina
+	 */
+	public DefaultListModel<Document> getDocumentsListModel()
+	{
+		return documentsListModel;
+	}
+
+	/**
+	 * Clears both list models and copies all users and documents over from
+	 * the File Sharing System
+	 *
+	 * @author MVezina
+	 */
+	private void resyncModels()
+	{
+		usersListModel.clear();
+		documentsListModel.clear();
+
+		for (User u : fileSharingSystem.getUsers())
+		{
+			usersListModel.addElement(u);
+		}
+
+		for (Document d : fileSharingSystem.getAllDocuments())
+		{
+			documentsListModel.addElement(d);
+		}
+	}
+
+	@Override
+	public void fileSharingSystemChanged(FileSharingSystemEvent fssEvent)
+	{
+		// Swing components may only be updated from the event dispatch thread
+		if (!SwingUtilities.isEventDispatchThread())
+		{
+			SwingUtilities.invokeLater(() -> fileSharingSystemChanged(fssEvent));
+			return;
+		}
+
+		if (fssEvent.isReset())
+		{
+			resyncModels();
+			return;
+		}
+
+		for (User u : fssEvent.getRemovedUsers())
+		{
+			usersListModel.removeElement(u);
+		}
+
+		for (User u : fssEvent.getAddedUsers())
+		{
+			usersListModel.addElement(u);
+		}
+
+		for (Document d : fssEvent.getRemovedDocuments())
+		{
+			documentsListModel.removeElement(d);
+		}
+
+		for (Document d : fssEvent.getAddedDocuments())
+		{
+			documentsListModel.addElement(d);
+		}
+	}
+
+}
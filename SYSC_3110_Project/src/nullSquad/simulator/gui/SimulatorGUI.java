@@ -7,8 +7,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.util.Arrays;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
@@ -17,6 +16,9 @@ import nullSquad.filesharingsystem.*;
 
 import nullSquad.filesharingsystem.users.*;
 import nullSquad.simulator.Simulator;
+import nullSquad.simulator.log.MemoryLogSink;
+import nullSquad.simulator.log.SimulationLog;
+import nullSquad.simulator.snapshot.Compression;
 import nullSquad.filesharingsystem.document.*;
 
 /**
@@ -50,13 +52,20 @@ public class SimulatorGUI extends JFrame
 	private JButton saveSimulatorButton;
 	private JButton restoreSimulatorButton;
 	private JButton undoSimulatorButton;
+	private JButton redoSimulatorButton;
 	private JPanel simulatorControlsPanel;
 
 	private JFileChooser fileChooser;
 
+	// The file filter of each compression (Chosen when saving)
+	private FileFilter[] compressionFileFilters;
+
 	/* Simulator */
 	private Simulator simulator;
 
+	/* Keeps the list models in sync with the File Sharing System */
+	private ListModelAdapter listModelAdapter;
+
 	/**
 	 * Constructor for creating a simulator GUI. Initializes all values and
 	 * components
@@ -68,8 +77,9 @@ public class SimulatorGUI extends JFrame
 		// Create Frame with specified frame title
 		super(frameTitle);
 
-		// Ensure the Log is cleared
-		Simulator.clearLog();
+		// Keep the events in memory, so they can be shown (The log starts out
+		// empty)
+		SimulationLog.getInstance().setSink(new MemoryLogSink());
 
 		// Run the setup dialog
 		SetupDialog sD = new SetupDialog(this);
@@ -112,7 +122,13 @@ public class SimulatorGUI extends JFrame
 		});
 
 		// Set the file filter to only enable simulation save files
-		fileChooser.setFileFilter(createSimulationStateFileFilter());
+		compressionFileFilters = new FileFilter[Compression.values().length];
+		for (Compression compression : Compression.values())
+		{
+			compressionFileFilters[compression.ordinal()] = createSimulationStateFileFilter(compression);
+		}
+
+		fileChooser.setFileFilter(compressionFileFilters[Compression.None.ordinal()]);
 
 		// Set current directory to user's home directory
 		fileChooser.setCurrentDirectory(null);
@@ -178,14 +194,18 @@ public class SimulatorGUI extends JFrame
 		// Create all of the tab panels
 		simulatorPanel = new SimulatorPanel();
 
-		// Obtain the users list model from the file sharing system
-		DefaultListModel<User> allUsersListModel = simulator.getFileSharingSystem().getUsersListModel();
+		// Create the list models of the users / documents in the file sharing
+		// system
+		listModelAdapter = new ListModelAdapter(simulator.getFileSharingSystem());
+
+		// Obtain the users list model
+		DefaultListModel<User> allUsersListModel = listModelAdapter.getUsersListModel();
 
 		// Create the users panel
-		this.usersPanel = new UsersPanel(allUsersListModel);
+		this.usersPanel = new UsersPanel(allUsersListModel, () -> simulator.getCurrentSimulatorSequence());
 
-		// Obtain the documents list model from the file sharing system
-		DefaultListModel<Document> allDocumentsListModel = simulator.getFileSharingSystem().getDocumentsListModel();
+		// Obtain the documents list model
+		DefaultListModel<Document> allDocumentsListModel = listModelAdapter.getDocumentsListModel();
 
 		// Create the documents panel
 		this.documentsPanel = new DocumentsPanel(allDocumentsListModel);
@@ -223,6 +243,10 @@ public class SimulatorGUI extends JFrame
 		undoSimulatorButton.setEnabled(false);
 		undoSimulatorButton.addActionListener(click -> undoSimulator());
 
+		redoSimulatorButton = new JButton("Redo");
+		redoSimulatorButton.setEnabled(false);
+		redoSimulatorButton.addActionListener(click -> redoSimulator());
+
 		// Create a panel solely for simulator controls
 		simulatorControlsPanel = new JPanel();
 
@@ -233,6 +257,7 @@ public class SimulatorGUI extends JFrame
 		simulatorControlsPanel.add(saveSimulatorButton);
 		simulatorControlsPanel.add(restoreSimulatorButton);
 		simulatorControlsPanel.add(undoSimulatorButton);
+		simulatorControlsPanel.add(redoSimulatorButton);
 		simulatorControlsPanel.setBorder(BorderFactory.createTitledBorder("Simulator Controls"));
 
 		this.add(mainTabPanel);
@@ -250,6 +275,24 @@ public class SimulatorGUI extends JFrame
 		simulator.stepBack();
 		updateSimulatorInfo();
 
+		documentsPanel.updateDocumentStats();
+		usersPanel.updateUserStats();
+
+	}
+
+	/**
+	 * Steps the simulator forward (Redoes the last undone step)
+	 * 
+	 * @author MVezina
+	 */
+	private void redoSimulator()
+	{
+		// Steps forward and updates simulator panel information
+		simulator.stepForward();
+		updateSimulatorInfo();
+
+		documentsPanel.updateDocumentStats();
+		usersPanel.updateUserStats();
 	}
 
 	/**
@@ -298,8 +341,6 @@ public class SimulatorGUI extends JFrame
 	 */
 	private void stepSimulator_Click()
 	{
-		simulator.savePreviousState();
-
 		simulator.simulationStep();
 
 		this.updateSimulatorInfo();
@@ -338,6 +379,10 @@ public class SimulatorGUI extends JFrame
 			undoSimulatorButton.setEnabled(false);
 		}
 
+		// Enable/Disable redo button based on whether or not there is an
+		// undone step
+		redoSimulatorButton.setEnabled(simulator.canStepForward());
+
 		// Enable / disable step/run buttons based on the number of sequences
 		// left
 		if (simulator.getCurrentSimulatorSequence() == simulator.getTotalSimulatorSequences())
@@ -351,8 +396,8 @@ public class SimulatorGUI extends JFrame
 			runSimulatorButton.setEnabled(true);
 		}
 
-		// Set the log text box
-		simulatorPanel.setLogText(Simulator.logText);
+		// Show the events logged since the last update
+		simulatorPanel.updateLog(SimulationLog.getInstance().getMemorySink());
 
 	}
 
@@ -375,7 +420,7 @@ public class SimulatorGUI extends JFrame
 			try
 			{
 				// Restore the simulator state
-				simulator.restoreState(new FileInputStream(fileChooser.getSelectedFile()));
+				simulator.restoreState(fileChooser.getSelectedFile());
 			} catch (Exception ex)
 			{
 				JOptionPane.showMessageDialog(this, "Failed to Restore state From file!");
@@ -401,6 +446,12 @@ public class SimulatorGUI extends JFrame
 		fileChooser.setDialogTitle("Save Simulation State");
 		fileChooser.setName("SaveFileDialog");
 
+		// The compression is chosen with the file filter
+		for (FileFilter fileFilter : compressionFileFilters)
+		{
+			fileChooser.addChoosableFileFilter(fileFilter);
+		}
+
 		// Show the save dialog and ensure the 'Save' (approve) button was
 		// clicked
 		if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
@@ -408,7 +459,7 @@ public class SimulatorGUI extends JFrame
 			try
 			{
 				// Save the simulator state
-				simulator.saveState(new FileOutputStream(fileChooser.getSelectedFile()));
+				simulator.saveState(fileChooser.getSelectedFile(), getSelectedCompression());
 			} catch (Exception ex)
 			{
 				JOptionPane.showMessageDialog(this, "Failed to Save state to file!");
@@ -416,23 +467,46 @@ public class SimulatorGUI extends JFrame
 			}
 		}
 
+		// Any compression is detected when restoring
+		for (FileFilter fileFilter : compressionFileFilters)
+		{
+			fileChooser.removeChoosableFileFilter(fileFilter);
+		}
+
+		fileChooser.setFileFilter(compressionFileFilters[Compression.None.ordinal()]);
+	}
+
+	/**
+	 * @return The compression of the file filter selected in the file chooser
+	 *         (None if another filter is selected)
+	 * @author MVezina
+	 */
+	private Compression getSelectedCompression()
+	{
+		int index = Arrays.asList(compressionFileFilters).indexOf(fileChooser.getFileFilter());
+
+		return (index < 0 ? Compression.None : Compression.values()[index]);
 	}
 
 	/**
 	 * Creates and return a new file filter used to filter out non-simulator
 	 * state files
 	 * 
+	 * @param compression The compression the filter saves with
 	 * @return The file filter
 	 * @author MVezina
 	 */
-	private FileFilter createSimulationStateFileFilter()
+	private FileFilter createSimulationStateFileFilter(Compression compression)
 	{
 		return new FileFilter()
 		{
 			@Override
 			public String getDescription()
 			{
-				return "Simulation State File (.ssf)";
+				if (compression == Compression.None)
+					return "Simulation State File (.ssf)";
+
+				return "Simulation State File, " + compression + " compressed (.ssf)";
 			}
 
 			@Override
@@ -1,6 +1,12 @@
 package nullSquad.simulator.gui;
 
+import java.util.List;
+
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+
+import nullSquad.simulator.log.LogEvent;
+import nullSquad.simulator.log.MemoryLogSink;
 
 /**
  * Representation of the Simulator Tab Panel
@@ -11,9 +17,17 @@ public class SimulatorPanel extends JPanel
 {
 	/* Serializable ID */
 	private static final long serialVersionUID = 1L;
-	
+
+	private static final String WELCOME_TEXT = "Welcome to the Simulator!\n";
+
 	private JTextArea mainSimulatorTextArea;
 
+	// The log events that are shown (The reset count of the log, the number of
+	// the next event to show, and the step of the last event shown)
+	private int shownResetCount;
+	private long shownSequence;
+	private int shownStep;
+
 	/**
 	 * Creates the simulator panel and all associated components
 	 * 
@@ -24,10 +38,12 @@ public class SimulatorPanel extends JPanel
 		this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 
 		// Create a scrollable JTextArea pane
-		mainSimulatorTextArea = new JTextArea("Welcome to the Simulator!\n");
+		mainSimulatorTextArea = new JTextArea(WELCOME_TEXT);
 		mainSimulatorTextArea.setEditable(false);
 
 		this.add(new JScrollPane(mainSimulatorTextArea));
+
+		shownResetCount = -1;
 	}
 
 	/**
@@ -41,4 +57,50 @@ public class SimulatorPanel extends JPanel
 		mainSimulatorTextArea.setText(logText);
 	}
 
+	/**
+	 * Appends the events logged since the last update to the Log Text Area.
+	 * The whole log is only shown again if it was cleared or restored
+	 * 
+	 * @param logSink The sink that keeps the log events (null if the events
+	 *            are not kept)
+	 * @author MVezina
+	 */
+	public void updateLog(MemoryLogSink logSink)
+	{
+		if (logSink == null)
+			return;
+
+		if (logSink.getResetCount() != shownResetCount)
+		{
+			shownResetCount = logSink.getResetCount();
+			shownSequence = 0;
+			shownStep = -1;
+			setLogText(WELCOME_TEXT + "\n");
+		}
+
+		List<LogEvent> events = logSink.getEventsSince(shownSequence);
+		shownSequence = logSink.getNextSequence();
+
+		if (events.isEmpty())
+			return;
+
+		mainSimulatorTextArea.append(MemoryLogSink.toText(events, shownStep));
+		shownStep = events.get(events.size() - 1).getStep();
+
+		// Keep about as many lines as the sink keeps events (Plus the blank
+		// lines between the steps)
+		int excessLines = mainSimulatorTextArea.getLineCount() - 2 * logSink.getCapacity();
+
+		if (excessLines > 0)
+		{
+			try
+			{
+				mainSimulatorTextArea.replaceRange("", 0, mainSimulatorTextArea.getLineStartOffset(excessLines));
+			} catch (BadLocationException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
 }
@@ -62,7 +62,22 @@ public class UserListHandler implements ListDataListener
 		if (!(e.getSource() instanceof DefaultListModel<?>))
 			return;
 
-		resyncLists((DefaultListModel<?>) e.getSource());
+		DefaultListModel<?> allUsers = (DefaultListModel<?>) e.getSource();
+
+		// Only the users in the added interval need to be split up
+		for (int i = e.getIndex0(); i <= e.getIndex1(); i++)
+		{
+			Object newUser = allUsers.get(i);
+
+			if (newUser instanceof Producer)
+			{
+				producerListModel.addElement((Producer) newUser);
+			}
+			else if (newUser instanceof Consumer)
+			{
+				consumersListModel.addElement((Consumer) newUser);
+			}
+		}
 
 	}
 
@@ -5,6 +5,7 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.function.IntSupplier;
 
 import javax.swing.*;
 import javax.swing.event.*;
@@ -38,6 +39,9 @@ public class UsersPanel extends JPanel implements ListCellRenderer<User>
 	private DefaultListModel<Producer> producerListModel;
 	private DefaultListModel<User> allUsersListModel;
 
+	// The number of steps simulated so far (Shown by the payoff graphs)
+	private IntSupplier stepCount;
+
 	// Fields for the user stats panel
 	private JPanel userStatsListPanel;
 	private JLabel userStatsLabel;
@@ -65,11 +69,14 @@ public class UsersPanel extends JPanel implements ListCellRenderer<User>
 	/**
 	 * Creates the Users panel and all associated components
 	 * 
+	 * @param allUsersListModel The list model of all users
+	 * @param stepCount The number of steps simulated so far
 	 * @author MVezina
 	 */
-	public UsersPanel(DefaultListModel<User> allUsersListModel)
+	public UsersPanel(DefaultListModel<User> allUsersListModel, IntSupplier stepCount)
 	{
 		currentlySelectedUser = null;
+		this.stepCount = stepCount;
 
 		// Set the users list model
 		this.allUsersListModel = allUsersListModel;
@@ -306,12 +313,12 @@ public class UsersPanel extends JPanel implements ListCellRenderer<User>
 			// graph view for the selected user
 			if (e.getSource() == consumersJList && consumersJList.getSelectedValue() != null)
 			{
-				new GraphGUI(consumersJList.getSelectedValue());
+				new GraphGUI(consumersJList.getSelectedValue(), stepCount);
 			}
 
 			if (e.getSource() == producersJList && producersJList.getSelectedValue() != null)
 			{
-				new GraphGUI(producersJList.getSelectedValue());
+				new GraphGUI(producersJList.getSelectedValue(), stepCount);
 			}
 		}
 
@@ -358,7 +365,7 @@ public class UsersPanel extends JPanel implements ListCellRenderer<User>
 
 		userStats += ("<b>ID</b>: " + currentlySelectedUser.getUserID() + newLine);
 		userStats += ("<b>Name</b>: " + currentlySelectedUser.getUserName() + newLine);
-		userStats += ("<b>User Type</b>: " + (currentlySelectedUser instanceof Producer ? "Producer" : "Consumer") + " (Payoff: " + (currentlySelectedUser.getPayoffHistory().size() > 0 ? currentlySelectedUser.getPayoffHistory().get(currentlySelectedUser.getPayoffHistory().size() - 1) : 0) + ")" + newLine);
+		userStats += ("<b>User Type</b>: " + (currentlySelectedUser instanceof Producer ? "Producer" : "Consumer") + " (Payoff: " + currentlySelectedUser.getPayoffHistory().getLastPayoff() + ")" + newLine);
 		userStats += ("<b>Taste</b>: " + currentlySelectedUser.getTaste() + newLine);
 		userStats += ("<b>Followers</b>: " + currentlySelectedUser.getFollowers().size() + newLine);
 		userStats += ("<b>Following</b>: " + currentlySelectedUser.getFollowing().size() + newLine);
@@ -0,0 +1,84 @@
+package nullSquad.simulator.log;
+
+import java.io.*;
+
+/**
+ * Writes the events of the log to a file (One line per event, buffered)
+ * 
+ * @author MVezina
+ */
+public class FileLogSink implements LogSink, Closeable
+{
+	private Writer writer;
+
+	/**
+	 * Creates a sink that writes to a file
+	 * 
+	 * @param file The file to write the events to
+	 * @param append Whether to append to the file instead of replacing it
+	 * @throws IOException If the file can not be opened
+	 * @author MVezina
+	 */
+	public FileLogSink(File file, boolean append) throws IOException
+	{
+		this.writer = new BufferedWriter(new FileWriter(file, append));
+	}
+
+	@Override
+	public synchronized void log(LogEvent event)
+	{
+		if (writer == null)
+			return;
+
+		try
+		{
+			writer.write(event.toString());
+			writer.write(System.lineSeparator());
+		} catch (IOException e)
+		{
+			// Stop writing to the file after the first failure
+			System.out.println("Failed to write to the log file");
+			e.printStackTrace();
+			close();
+		}
+	}
+
+	@Override
+	public synchronized void flush()
+	{
+		if (writer == null)
+			return;
+
+		try
+		{
+			writer.flush();
+		} catch (IOException e)
+		{
+			System.out.println("Failed to flush the log file");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Flushes and closes the file
+	 * 
+	 * @author MVezina
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (writer == null)
+			return;
+
+		try
+		{
+			writer.close();
+		} catch (IOException e)
+		{
+			System.out.println("Failed to close the log file");
+			e.printStackTrace();
+		}
+
+		writer = null;
+	}
+}
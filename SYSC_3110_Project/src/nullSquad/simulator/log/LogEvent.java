@@ -0,0 +1,144 @@
+package nullSquad.simulator.log;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.function.Supplier;
+
+/**
+ * A single event of the simulation log. The message of an event can be a
+ * template with arguments ("{}" is replaced by each argument), which is only
+ * formatted the first time the message is read (or the event is saved)
+ * 
+ * @author MVezina
+ */
+public class LogEvent implements Serializable
+{
+	private static final long serialVersionUID = 3265086745364409712L;
+
+	private final LogLevel level;
+	private final int step;
+	private String message;
+
+	// The template and arguments of a message that has not been formatted
+	private transient String template;
+	private transient Object[] arguments;
+
+	/**
+	 * Creates a log event
+	 * 
+	 * @param level The severity of the event
+	 * @param step The simulation step the event happened in
+	 * @param message The message of the event
+	 * @author MVezina
+	 */
+	public LogEvent(LogLevel level, int step, String message)
+	{
+		this.level = level;
+		this.step = step;
+		this.message = message;
+	}
+
+	/**
+	 * Creates a log event with a message template. The arguments that are
+	 * Suppliers are evaluated now, so the message shows the values at the
+	 * time of the event (ex: A payoff that changes in the next step). Events
+	 * are only created if a sink consumes them (see SimulationLog). Every
+	 * other argument is only converted to text once the message is formatted
+	 * 
+	 * @param level The severity of the event
+	 * @param step The simulation step the event happened in
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param arguments The arguments of the template
+	 * @author MVezina
+	 */
+	public LogEvent(LogLevel level, int step, String template, Object... arguments)
+	{
+		this.level = level;
+		this.step = step;
+		this.template = template;
+		this.arguments = arguments;
+
+		for (int i = 0; i < arguments.length; i++)
+		{
+			if (arguments[i] instanceof Supplier)
+				arguments[i] = ((Supplier<?>) arguments[i]).get();
+		}
+	}
+
+	/**
+	 * @return The severity of the event
+	 * @author MVezina
+	 */
+	public LogLevel getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * @return The simulation step the event happened in
+	 * @author MVezina
+	 */
+	public int getStep()
+	{
+		return step;
+	}
+
+	/**
+	 * @return The message of the event
+	 * @author MVezina
+	 */
+	public synchronized String getMessage()
+	{
+		if (message == null && template != null)
+		{
+			message = format(template, arguments);
+			template = null;
+			arguments = null;
+		}
+
+		return message;
+	}
+
+	/**
+	 * Replaces each "{}" of a template with the next argument (Any extra
+	 * "{}" are kept as they are)
+	 * 
+	 * @param template The template
+	 * @param arguments The arguments of the template
+	 * @return The formatted message
+	 * @author MVezina
+	 */
+	public static String format(String template, Object... arguments)
+	{
+		StringBuilder message = new StringBuilder(template.length() + 16 * arguments.length);
+
+		int start = 0;
+		for (Object argument : arguments)
+		{
+			int placeholder = template.indexOf("{}", start);
+
+			if (placeholder < 0)
+				break;
+
+			message.append(template, start, placeholder).append(argument);
+			start = placeholder + 2;
+		}
+
+		return message.append(template, start, template.length()).toString();
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		// Only the formatted message is saved
+		getMessage();
+		out.defaultWriteObject();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[" + step + "] " + level + ": " + getMessage();
+	}
+}
@@ -0,0 +1,12 @@
+package nullSquad.simulator.log;
+
+/**
+ * The severity of a log event (From least to most severe). Off is only used
+ * to disable every level
+ * 
+ * @author MVezina
+ */
+public enum LogLevel
+{
+	Debug, Info, Warning, Off
+}
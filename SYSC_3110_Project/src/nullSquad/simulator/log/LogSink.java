@@ -0,0 +1,35 @@
+package nullSquad.simulator.log;
+
+/**
+ * Interface used to consume the events of the simulation log
+ * 
+ * @author MVezina
+ */
+public interface LogSink
+{
+	/* A sink that drops every event (The log skips creating events for it) */
+	public static final LogSink NONE = new LogSink()
+	{
+		@Override
+		public void log(LogEvent event)
+		{
+		}
+	};
+
+	/**
+	 * Consumes a log event
+	 * 
+	 * @param event The event that was logged
+	 * @author MVezina
+	 */
+	public void log(LogEvent event);
+
+	/**
+	 * Writes out any buffered events
+	 * 
+	 * @author MVezina
+	 */
+	public default void flush()
+	{
+	}
+}
@@ -0,0 +1,242 @@
+package nullSquad.simulator.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the most recent events of the log in a fixed size ring buffer (The
+ * oldest event is dropped once the buffer is full).
+ * 
+ * Every event is numbered in the order it was logged, so a reader can fetch
+ * only the events logged since it last read the log. Clearing or restoring
+ * the log starts the numbering over and increments the reset count.
+ * 
+ * @author MVezina
+ */
+public class MemoryLogSink implements LogSink
+{
+	/* The default maximum number of events kept */
+	public static final int DEFAULT_CAPACITY = 5000;
+
+	private final LogEvent[] events;
+
+	// The position of the oldest event and the number of events kept
+	private int head;
+	private int count;
+
+	// The number of the next event logged, and the number of resets
+	private long nextSequence;
+	private int resetCount;
+
+	/**
+	 * Creates a sink that keeps the default number of events
+	 * 
+	 * @author MVezina
+	 */
+	public MemoryLogSink()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a sink
+	 * 
+	 * @param capacity The maximum number of events kept (at least 1)
+	 * @author MVezina
+	 */
+	public MemoryLogSink(int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity < 1: " + capacity);
+
+		this.events = new LogEvent[capacity];
+	}
+
+	@Override
+	public synchronized void log(LogEvent event)
+	{
+		if (count == events.length)
+		{
+			// Overwrite the oldest event
+			events[head] = event;
+			head = (head + 1) % events.length;
+		}
+		else
+		{
+			events[(head + count) % events.length] = event;
+			count++;
+		}
+
+		nextSequence++;
+	}
+
+	/**
+	 * @return The events kept, oldest first
+	 * @author MVezina
+	 */
+	public synchronized List<LogEvent> getEvents()
+	{
+		return getEventsSince(0);
+	}
+
+	/**
+	 * Gets the events logged since the specified event number
+	 * 
+	 * @param sequence The number of the first event to get
+	 * @return The events from the event number on (Only the events that are
+	 *         still kept), oldest first
+	 * @author MVezina
+	 */
+	public synchronized List<LogEvent> getEventsSince(long sequence)
+	{
+		long firstSequence = getFirstSequence();
+		int from = (int) (Math.max(sequence, firstSequence) - firstSequence);
+
+		List<LogEvent> eventsSince = new ArrayList<>(Math.max(0, count - from));
+
+		for (int i = from; i < count; i++)
+		{
+			eventsSince.add(events[(head + i) % events.length]);
+		}
+
+		return eventsSince;
+	}
+
+	/**
+	 * @return The number of the oldest event kept
+	 * @author MVezina
+	 */
+	public synchronized long getFirstSequence()
+	{
+		return nextSequence - count;
+	}
+
+	/**
+	 * @return The number that the next event logged will get
+	 * @author MVezina
+	 */
+	public synchronized long getNextSequence()
+	{
+		return nextSequence;
+	}
+
+	/**
+	 * @return The number of times the log has been cleared or restored
+	 * @author MVezina
+	 */
+	public synchronized int getResetCount()
+	{
+		return resetCount;
+	}
+
+	/**
+	 * @return The maximum number of events kept
+	 * @author MVezina
+	 */
+	public int getCapacity()
+	{
+		return events.length;
+	}
+
+	/**
+	 * @return The number of events kept
+	 * @author MVezina
+	 */
+	public synchronized int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Removes every event
+	 * 
+	 * @author MVezina
+	 */
+	public synchronized void clear()
+	{
+		Arrays.fill(events, null);
+		head = 0;
+		count = 0;
+		nextSequence = 0;
+		resetCount++;
+	}
+
+	/**
+	 * Removes the events logged since the specified event number (ex: The
+	 * events of an undone step). Counts as a reset, since the numbers are
+	 * given out again
+	 * 
+	 * @param sequence The number of the first event to remove
+	 * @author MVezina
+	 */
+	public synchronized void truncate(long sequence)
+	{
+		if (sequence >= nextSequence)
+			return;
+
+		long firstSequence = getFirstSequence();
+		int kept = (int) Math.max(0, sequence - firstSequence);
+
+		for (int i = kept; i < count; i++)
+		{
+			events[(head + i) % events.length] = null;
+		}
+
+		count = kept;
+		nextSequence = sequence;
+		resetCount++;
+	}
+
+	/**
+	 * Replaces the events with previously saved events
+	 * 
+	 * @param savedEvents The events to restore, oldest first (Only the most
+	 *            recent events are kept if there are too many)
+	 * @author MVezina
+	 */
+	public synchronized void restore(List<LogEvent> savedEvents)
+	{
+		clear();
+
+		for (LogEvent event : savedEvents.subList(Math.max(0, savedEvents.size() - events.length), savedEvents.size()))
+		{
+			log(event);
+		}
+	}
+
+	/**
+	 * @return The text of the events kept
+	 * @author MVezina
+	 */
+	public String getText()
+	{
+		return toText(getEvents(), -1);
+	}
+
+	/**
+	 * Gets the text of log events: One line per event, with a blank line
+	 * between the events of different steps
+	 * 
+	 * @param events The events, oldest first
+	 * @param previousStep The step of the event before the first event (-1 if
+	 *            there is none)
+	 * @return The text of the events
+	 * @author MVezina
+	 */
+	public static String toText(List<LogEvent> events, int previousStep)
+	{
+		StringBuilder text = new StringBuilder();
+
+		for (LogEvent event : events)
+		{
+			if (previousStep >= 0 && event.getStep() != previousStep)
+				text.append('\n');
+
+			text.append(event.getMessage()).append('\n');
+			previousStep = event.getStep();
+		}
+
+		return text.toString();
+	}
+}
@@ -0,0 +1,445 @@
+package nullSquad.simulator.log;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The log of the simulation. Events below the log level (or every event, if
+ * the sink is NONE) are dropped before an event is created. Messages are
+ * logged as a template and its arguments, so callers should pass the values
+ * of a message (and a Supplier for values that are expensive to calculate)
+ * instead of building the message themselves.
+ * 
+ * By default, nothing is logged (The sink is NONE), so a simulator run
+ * without the GUI does not create any events. The GUI logs every level to a
+ * MemoryLogSink.
+ * 
+ * @author MVezina
+ */
+public final class SimulationLog
+{
+	private static final SimulationLog instance = new SimulationLog();
+
+	private LogSink sink;
+	private LogLevel level;
+
+	// The ordinal of the least severe level that is logged
+	private int enabledOrdinal;
+
+	// The current simulation step
+	private int step;
+
+	private SimulationLog()
+	{
+		this.sink = LogSink.NONE;
+		this.level = LogLevel.Debug;
+		updateEnabledOrdinal();
+	}
+
+	/**
+	 * @return The simulation log
+	 * @author MVezina
+	 */
+	public static SimulationLog getInstance()
+	{
+		return instance;
+	}
+
+	private void updateEnabledOrdinal()
+	{
+		enabledOrdinal = (sink == LogSink.NONE ? LogLevel.Off.ordinal() : level.ordinal());
+	}
+
+	/**
+	 * @param level The level to check
+	 * @return Whether or not events of the level are logged
+	 * @author MVezina
+	 */
+	public boolean isEnabled(LogLevel level)
+	{
+		return level.ordinal() >= enabledOrdinal && level != LogLevel.Off;
+	}
+
+	/**
+	 * Logs an event. The message is only formatted if it is read, and
+	 * arguments that are Suppliers are only evaluated if the level is enabled
+	 * (The debug and info methods do not create an array of arguments if the
+	 * level is disabled)
+	 * 
+	 * @param level The severity of the event
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param arguments The arguments of the template
+	 * @author MVezina
+	 */
+	public void log(LogLevel level, String template, Object... arguments)
+	{
+		if (isEnabled(level))
+			logEvent(level, template, arguments);
+	}
+
+	private void logEvent(LogLevel level, String template, Object[] arguments)
+	{
+		sink.log(new LogEvent(level, step, template, arguments));
+	}
+
+	/**
+	 * Logs a Debug event
+	 * 
+	 * @param message The message of the event
+	 * @author MVezina
+	 */
+	public void debug(String message)
+	{
+		if (isEnabled(LogLevel.Debug))
+			sink.log(new LogEvent(LogLevel.Debug, step, message));
+	}
+
+	/**
+	 * Logs a Debug event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @author MVezina
+	 */
+	public void debug(String template, Object argument1)
+	{
+		if (isEnabled(LogLevel.Debug))
+			logEvent(LogLevel.Debug, template, new Object[] { argument1 });
+	}
+
+	/**
+	 * Logs a Debug event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @param argument2 The second argument of the template
+	 * @author MVezina
+	 */
+	public void debug(String template, Object argument1, Object argument2)
+	{
+		if (isEnabled(LogLevel.Debug))
+			logEvent(LogLevel.Debug, template, new Object[] { argument1, argument2 });
+	}
+
+	/**
+	 * Logs a Debug event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @param argument2 The second argument of the template
+	 * @param argument3 The third argument of the template
+	 * @author MVezina
+	 */
+	public void debug(String template, Object argument1, Object argument2, Object argument3)
+	{
+		if (isEnabled(LogLevel.Debug))
+			logEvent(LogLevel.Debug, template, new Object[] { argument1, argument2, argument3 });
+	}
+
+	/**
+	 * Logs a Debug event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @param argument2 The second argument of the template
+	 * @param argument3 The third argument of the template
+	 * @param argument4 The fourth argument of the template
+	 * @author MVezina
+	 */
+	public void debug(String template, Object argument1, Object argument2, Object argument3, Object argument4)
+	{
+		if (isEnabled(LogLevel.Debug))
+			logEvent(LogLevel.Debug, template, new Object[] { argument1, argument2, argument3, argument4 });
+	}
+
+	/**
+	 * Logs an Info event
+	 * 
+	 * @param message The message of the event
+	 * @author MVezina
+	 */
+	public void info(String message)
+	{
+		if (isEnabled(LogLevel.Info))
+			sink.log(new LogEvent(LogLevel.Info, step, message));
+	}
+
+	/**
+	 * Logs an Info event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @author MVezina
+	 */
+	public void info(String template, Object argument1)
+	{
+		if (isEnabled(LogLevel.Info))
+			logEvent(LogLevel.Info, template, new Object[] { argument1 });
+	}
+
+	/**
+	 * Logs an Info event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @param argument2 The second argument of the template
+	 * @author MVezina
+	 */
+	public void info(String template, Object argument1, Object argument2)
+	{
+		if (isEnabled(LogLevel.Info))
+			logEvent(LogLevel.Info, template, new Object[] { argument1, argument2 });
+	}
+
+	/**
+	 * Logs an Info event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @param argument2 The second argument of the template
+	 * @param argument3 The third argument of the template
+	 * @author MVezina
+	 */
+	public void info(String template, Object argument1, Object argument2, Object argument3)
+	{
+		if (isEnabled(LogLevel.Info))
+			logEvent(LogLevel.Info, template, new Object[] { argument1, argument2, argument3 });
+	}
+
+	/**
+	 * Logs an Info event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @param argument2 The second argument of the template
+	 * @param argument3 The third argument of the template
+	 * @param argument4 The fourth argument of the template
+	 * @author MVezina
+	 */
+	public void info(String template, Object argument1, Object argument2, Object argument3, Object argument4)
+	{
+		if (isEnabled(LogLevel.Info))
+			logEvent(LogLevel.Info, template, new Object[] { argument1, argument2, argument3, argument4 });
+	}
+
+	/**
+	 * Logs a Warning event
+	 * 
+	 * @param message The message of the event
+	 * @author MVezina
+	 */
+	public void warning(String message)
+	{
+		if (isEnabled(LogLevel.Warning))
+			sink.log(new LogEvent(LogLevel.Warning, step, message));
+	}
+
+	/**
+	 * Logs a Warning event
+	 * 
+	 * @param template The message of the event ("{}" is replaced by each
+	 *            argument)
+	 * @param argument1 The first argument of the template
+	 * @author MVezina
+	 */
+	public void warning(String template, Object argument1)
+	{
+		if (isEnabled(LogLevel.Warning))
+			logEvent(LogLevel.Warning, template, new Object[] { argument1 });
+	}
+
+	/**
+	 * @return The least severe level that is logged
+	 * @author MVezina
+	 */
+	public LogLevel getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * Sets the least severe level that is logged
+	 * 
+	 * @param level The level (Off disables the log)
+	 * @author MVezina
+	 */
+	public void setLevel(LogLevel level)
+	{
+		if (level == null)
+			throw new NullPointerException();
+
+		this.level = level;
+		updateEnabledOrdinal();
+	}
+
+	/**
+	 * @return The sink that consumes the events
+	 * @author MVezina
+	 */
+	public LogSink getSink()
+	{
+		return sink;
+	}
+
+	/**
+	 * Sets the sink that consumes the events. The previous sink is flushed
+	 * 
+	 * @param sink The sink (LogSink.NONE disables the log)
+	 * @author MVezina
+	 */
+	public void setSink(LogSink sink)
+	{
+		if (sink == null)
+			throw new NullPointerException();
+
+		this.sink.flush();
+		this.sink = sink;
+		updateEnabledOrdinal();
+	}
+
+	/**
+	 * @return The sink if it keeps the events in memory, null otherwise
+	 * @author MVezina
+	 */
+	public MemoryLogSink getMemorySink()
+	{
+		return (sink instanceof MemoryLogSink ? (MemoryLogSink) sink : null);
+	}
+
+	/**
+	 * @return The simulation step of the events being logged
+	 * @author MVezina
+	 */
+	public int getStep()
+	{
+		return step;
+	}
+
+	/**
+	 * Sets the simulation step of the events being logged
+	 * 
+	 * @param step The current simulation step
+	 * @author MVezina
+	 */
+	public void setStep(int step)
+	{
+		this.step = step;
+	}
+
+	/**
+	 * @return The events kept in memory (None if the sink does not keep
+	 *         events)
+	 * @author MVezina
+	 */
+	public List<LogEvent> getEvents()
+	{
+		MemoryLogSink memorySink = getMemorySink();
+		return (memorySink == null ? Collections.emptyList() : memorySink.getEvents());
+	}
+
+	/**
+	 * @return The text of the events kept in memory
+	 * @author MVezina
+	 */
+	public String getText()
+	{
+		return MemoryLogSink.toText(getEvents(), -1);
+	}
+
+	/**
+	 * Removes the events kept in memory
+	 * 
+	 * @author MVezina
+	 */
+	public void clear()
+	{
+		MemoryLogSink memorySink = getMemorySink();
+
+		if (memorySink != null)
+			memorySink.clear();
+	}
+
+	/**
+	 * @return The number of the next event kept in memory (0 if the sink
+	 *         does not keep events)
+	 * @author MVezina
+	 */
+	public long getSequence()
+	{
+		MemoryLogSink memorySink = getMemorySink();
+		return (memorySink == null ? 0 : memorySink.getNextSequence());
+	}
+
+	/**
+	 * Removes the events kept in memory since the specified event number
+	 * 
+	 * @param sequence The number of the first event to remove (see
+	 *            getSequence())
+	 * @author MVezina
+	 */
+	public void truncate(long sequence)
+	{
+		MemoryLogSink memorySink = getMemorySink();
+
+		if (memorySink != null)
+			memorySink.truncate(sequence);
+	}
+
+	/**
+	 * Gets the events kept in memory since the specified event number
+	 * 
+	 * @param sequence The number of the first event to get (see
+	 *            getSequence())
+	 * @return The events (None if the sink does not keep events)
+	 * @author MVezina
+	 */
+	public List<LogEvent> getEventsSince(long sequence)
+	{
+		MemoryLogSink memorySink = getMemorySink();
+		return (memorySink == null ? Collections.emptyList() : memorySink.getEventsSince(sequence));
+	}
+
+	/**
+	 * Adds previously logged events to the events kept in memory (ex: The
+	 * events of a redone step). The events are not logged again to any other
+	 * sink
+	 * 
+	 * @param events The events, oldest first (null for none)
+	 * @author MVezina
+	 */
+	public void replay(List<LogEvent> events)
+	{
+		MemoryLogSink memorySink = getMemorySink();
+
+		if (memorySink == null || events == null)
+			return;
+
+		for (LogEvent event : events)
+		{
+			memorySink.log(event);
+		}
+	}
+
+	/**
+	 * Replaces the events kept in memory with previously saved events
+	 * 
+	 * @param savedEvents The events to restore, oldest first
+	 * @author MVezina
+	 */
+	public void restore(List<LogEvent> savedEvents)
+	{
+		MemoryLogSink memorySink = getMemorySink();
+
+		if (memorySink != null)
+			memorySink.restore(savedEvents);
+	}
+}
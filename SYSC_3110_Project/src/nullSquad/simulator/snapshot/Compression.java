@@ -0,0 +1,139 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How a saved simulator state is compressed. A compressed state starts with
+ * its own header (MAGIC as 4 bytes, then the ID of the compression as 1
+ * byte), followed by the compressed state, so the compression is detected
+ * when the state is restored. A state that is not compressed has no header.
+ *
+ * Deflate: The JDK's gzip streams (smallest files, with a CRC32 of the
+ * state). Fast: A lightweight LZ77 codec (see LzOutputStream), several times
+ * faster than Deflate, for states that are written and read often.
+ *
+ * @author MVezina
+ */
+public enum Compression
+{
+	None(0), Deflate(1), Fast(2);
+
+	// "SSZ" followed by a zero byte
+	private static final int MAGIC = 0x53535A00;
+	private static final int HEADER_SIZE = 5;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final int id;
+
+	private Compression(int id)
+	{
+		this.id = id;
+	}
+
+	/**
+	 * Writes the header of the compression, and wraps a stream so that
+	 * everything written to it is compressed
+	 *
+	 * @param out The stream to write the compressed state to
+	 * @return The stream to write the state to (The stream itself if the
+	 *         state is not compressed). It must be closed to write the end of
+	 *         the compressed state
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public OutputStream compress(OutputStream out) throws IOException
+	{
+		if (this == None)
+			return out;
+
+		out.write(new byte[] { (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC, (byte) id });
+
+		if (this == Deflate)
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+
+		return new LzOutputStream(out);
+	}
+
+	/**
+	 * Detects the compression of a state from its header, and wraps the
+	 * stream so that the state is read decompressed
+	 *
+	 * @param in The stream to read the state from
+	 * @return The stream to read the decompressed state from (The stream
+	 *         itself, or a stream that buffers it, if the state is not
+	 *         compressed)
+	 * @throws IOException If the compression is not known
+	 * @author MVezina
+	 */
+	public static InputStream decompress(InputStream in) throws IOException
+	{
+		if (!in.markSupported())
+			in = new BufferedInputStream(in);
+
+		Compression compression = readHeader(in);
+
+		switch (compression)
+		{
+			case Deflate:
+				return new GZIPInputStream(in, BUFFER_SIZE);
+
+			case Fast:
+				return new LzInputStream(in);
+
+			default:
+				return in;
+		}
+	}
+
+	/**
+	 * Reads the header of a compressed state. Nothing is consumed from the
+	 * stream if the state is not compressed
+	 *
+	 * @param in The stream to read (Must support mark / reset)
+	 * @return The compression of the state
+	 * @throws IOException If the compression is not known
+	 */
+	private static Compression readHeader(InputStream in) throws IOException
+	{
+		in.mark(HEADER_SIZE);
+
+		byte[] header = new byte[HEADER_SIZE];
+		int length = 0;
+
+		while (length < HEADER_SIZE)
+		{
+			int read = in.read(header, length, HEADER_SIZE - length);
+			if (read < 0)
+				break;
+
+			length += read;
+		}
+
+		int magic = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+		if (length < HEADER_SIZE || magic != MAGIC)
+		{
+			in.reset();
+			return None;
+		}
+
+		for (Compression compression : values())
+		{
+			if (compression.id == (header[4] & 0xFF) && compression != None)
+				return compression;
+		}
+
+		throw new IOException("Unsupported compression: " + (header[4] & 0xFF));
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+/**
+ * The binary format of an event log (.ssl file): An append-only log of every
+ * change made to a simulation, with a full checkpoint every few steps.
+ *
+ * The header (MAGIC and VERSION, 4 bytes each) is followed by frames. Each
+ * frame is its type (1 byte), the length of its payload (4 bytes), the
+ * payload, and the CRC32 of the payload (4 bytes), so a frame that was only
+ * partly written (ex: The simulator was killed while writing it) is detected
+ * and dropped with everything after it. A CHECKPOINT frame holds a saved state
+ * in the snapshot format (see SnapshotFormat). An EVENTS frame holds the
+ * records of the changes made since the previous frame (ex: One step), each
+ * starting with its record byte:
+ *
+ * REGISTER: User type, ID, name, taste, ranking strategy, then the act /
+ * payoff strategy of a producer, or the current payoff / payoff strategy of a
+ * consumer. UPLOAD: Document ID, producer ID, whether the document was added
+ * to the documents produced, name, tag and upload date. LIKE / UNLIKE: User ID
+ * and document ID. FOLLOW / UNFOLLOW: Follower ID and followed user ID.
+ * PAYOFF: User ID, step and payoff. CURRENT_PAYOFF: Consumer ID and total
+ * payoff. REMOVE_USER / REMOVE_DOCUMENT: The ID. RANKING_STRATEGY /
+ * ACT_STRATEGY: User ID and strategy. STEP: The step that ended and the ID of
+ * the user that acted. RANDOM: The random number generator (when it was used
+ * outside of a step). LOG: Level, step and message of a log event.
+ *
+ * Integers are variable-length (see VarInts), and strings are written in full.
+ * The random number generator is only written when it is used outside of a
+ * step: The user picked by a STEP is picked again when the step is replayed.
+ *
+ * @author MVezina
+ */
+final class EventLogFormat
+{
+	// "SSL" followed by a zero byte
+	static final int MAGIC = 0x53534C00;
+	static final int VERSION = 1;
+
+	// Frames
+	static final int CHECKPOINT = 1;
+	static final int EVENTS = 2;
+
+	// The type, length and CRC32 of a frame
+	static final int FRAME_OVERHEAD = 9;
+
+	// Records
+	static final int REGISTER = 1;
+	static final int UPLOAD = 2;
+	static final int LIKE = 3;
+	static final int UNLIKE = 4;
+	static final int FOLLOW = 5;
+	static final int UNFOLLOW = 6;
+	static final int PAYOFF = 7;
+	static final int CURRENT_PAYOFF = 8;
+	static final int REMOVE_USER = 9;
+	static final int REMOVE_DOCUMENT = 10;
+	static final int RANKING_STRATEGY = 11;
+	static final int ACT_STRATEGY = 12;
+	static final int STEP = 13;
+	static final int RANDOM = 14;
+	static final int LOG = 15;
+
+	private EventLogFormat()
+	{
+	}
+}
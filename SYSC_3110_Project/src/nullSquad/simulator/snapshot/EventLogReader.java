@@ -0,0 +1,433 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.simulator.Simulator;
+import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.simulator.log.LogEvent;
+import nullSquad.simulator.log.LogLevel;
+import nullSquad.simulator.log.SimulationLog;
+import nullSquad.strategies.act.ProducerActStrategy;
+import nullSquad.strategies.payoff.ConsumerPayoffStrategy;
+import nullSquad.strategies.payoff.ProducerPayoffStrategy;
+import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.util.VarInts;
+
+/**
+ * Reads an event log written by an EventLogWriter. The last complete
+ * checkpoint is read, and the frames written after it (the tail of the log)
+ * are replayed on top of it. A frame that was only partly written ends the
+ * log
+ *
+ * @author MVezina
+ */
+public class EventLogReader
+{
+	private static final int HEADER_SIZE = 8;
+
+	private final File file;
+
+	// The position and length of the payload of the last checkpoint, and the
+	// payloads of the EVENTS frames after it
+	private long checkpointPosition;
+	private int checkpointLength;
+	private final List<byte[]> tail;
+
+	/**
+	 * Creates a reader
+	 *
+	 * @param file The event log file
+	 * @author MVezina
+	 */
+	public EventLogReader(File file)
+	{
+		this.file = file;
+		tail = new ArrayList<>();
+	}
+
+	/**
+	 * Checks whether or not a file is an event log (rather than a saved state)
+	 *
+	 * @param file The file to check
+	 * @return Whether or not the file starts with the event log header
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public static boolean isEventLog(File file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file)))
+		{
+			return in.readInt() == EventLogFormat.MAGIC;
+		} catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the last complete checkpoint of the log
+	 *
+	 * @return The state of the checkpoint (The tail of the log is replayed on
+	 *         it by replay(..) once it has been restored)
+	 * @throws IOException If the log has no checkpoint, or is not valid
+	 * @throws ClassNotFoundException If a serialized strategy can not be
+	 *             loaded
+	 * @author MVezina
+	 */
+	public SimulatorSaveState readCheckpoint() throws IOException, ClassNotFoundException
+	{
+		scan();
+
+		if (checkpointPosition < 0)
+			throw new StreamCorruptedException("The event log has no checkpoint");
+
+		byte[] payload = new byte[checkpointLength];
+		int checksum;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+		{
+			raf.seek(checkpointPosition);
+			raf.readFully(payload);
+			checksum = raf.readInt();
+		}
+
+		if (checksum != checksum(payload))
+			throw new StreamCorruptedException("The last checkpoint of the event log is corrupted");
+
+		SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(payload));
+		SimulatorSaveState saveState = reader.read();
+		reader.close();
+
+		return saveState;
+	}
+
+	/**
+	 * Finds the last complete checkpoint, and reads the EVENTS frames after
+	 * it. The checkpoints are skipped rather than read
+	 */
+	private void scan() throws IOException
+	{
+		checkpointPosition = -1;
+		tail.clear();
+
+		long length = file.length();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (length < HEADER_SIZE || in.readInt() != EventLogFormat.MAGIC)
+				throw new StreamCorruptedException("Not an event log");
+
+			int version = in.readInt();
+			if (version < 1 || version > EventLogFormat.VERSION)
+				throw new IOException("Unsupported event log version: " + version);
+
+			long position = HEADER_SIZE;
+
+			while (position + EventLogFormat.FRAME_OVERHEAD <= length)
+			{
+				int type = in.readUnsignedByte();
+				int payloadLength = in.readInt();
+
+				// The frame was only partly written (or is not a frame)
+				if ((type != EventLogFormat.CHECKPOINT && type != EventLogFormat.EVENTS) || payloadLength < 0 || payloadLength > length - position - EventLogFormat.FRAME_OVERHEAD)
+					break;
+
+				if (type == EventLogFormat.CHECKPOINT)
+				{
+					in.skipBytes(payloadLength + 4);
+					checkpointPosition = position + 5;
+					checkpointLength = payloadLength;
+					tail.clear();
+				}
+				else
+				{
+					byte[] payload = new byte[payloadLength];
+					in.readFully(payload);
+
+					if (in.readInt() != checksum(payload))
+						break;
+
+					if (checkpointPosition >= 0)
+						tail.add(payload);
+				}
+
+				position += EventLogFormat.FRAME_OVERHEAD + payloadLength;
+			}
+		}
+	}
+
+	/**
+	 * Replays the tail of the log. The changes are made with the log
+	 * disabled, and the log events that were written with them are logged
+	 * again instead
+	 *
+	 * @param simulator The simulator the checkpoint was restored into
+	 * @return The number of steps replayed
+	 * @throws IOException If a record is not valid
+	 * @throws ClassNotFoundException If a serialized random number generator
+	 *             can not be loaded
+	 * @author MVezina
+	 */
+	public int replay(Simulator simulator) throws IOException, ClassNotFoundException
+	{
+		SimulationLog log = SimulationLog.getInstance();
+		LogLevel level = log.getLevel();
+		List<LogEvent> events = new ArrayList<>();
+		int steps = 0;
+
+		log.setLevel(LogLevel.Off);
+		try
+		{
+			for (byte[] payload : tail)
+			{
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+				while (in.available() > 0)
+				{
+					if (replayRecord(simulator, in, events))
+						steps++;
+				}
+			}
+		} finally
+		{
+			log.setLevel(level);
+		}
+
+		log.replay(events);
+		simulator.getFileSharingSystem().flushChanges();
+
+		return steps;
+	}
+
+	/**
+	 * Replays a record
+	 *
+	 * @return Whether or not the record ended a step
+	 */
+	private boolean replayRecord(Simulator simulator, DataInputStream in, List<LogEvent> events) throws IOException, ClassNotFoundException
+	{
+		FileSharingSystem fss = simulator.getFileSharingSystem();
+		int record = in.readUnsignedByte();
+
+		switch (record)
+		{
+			case EventLogFormat.REGISTER:
+				replayRegister(fss, in);
+				break;
+
+			case EventLogFormat.UPLOAD:
+				replayUpload(fss, in);
+				break;
+
+			case EventLogFormat.LIKE:
+				user(fss, in).likeDocument(document(fss, in));
+				break;
+
+			case EventLogFormat.UNLIKE:
+				user(fss, in).unlikeDocument(document(fss, in));
+				break;
+
+			case EventLogFormat.FOLLOW:
+				user(fss, in).followUser(user(fss, in));
+				break;
+
+			case EventLogFormat.UNFOLLOW:
+				user(fss, in).unfollowUser(user(fss, in));
+				break;
+
+			case EventLogFormat.PAYOFF:
+				user(fss, in).addIterationPayoff(VarInts.readSignedVarInt(in), VarInts.readSignedVarInt(in));
+				break;
+
+			case EventLogFormat.CURRENT_PAYOFF:
+				User consumer = user(fss, in);
+				if (!(consumer instanceof Consumer))
+					throw new StreamCorruptedException("Not a consumer: " + consumer.getUserID());
+
+				((Consumer) consumer).setCurrentPayoff(VarInts.readSignedVarInt(in));
+				break;
+
+			case EventLogFormat.REMOVE_USER:
+				fss.deactivateUser(user(fss, in));
+				break;
+
+			case EventLogFormat.REMOVE_DOCUMENT:
+				fss.removeDocument(document(fss, in));
+				break;
+
+			case EventLogFormat.RANKING_STRATEGY:
+				user(fss, in).setDocumentRankingStrategy(SnapshotReader.toEnum(DocumentRankingStrategy.Strategy.class, SnapshotReader.readText(in)));
+				break;
+
+			case EventLogFormat.ACT_STRATEGY:
+				producer(fss, VarInts.readSignedVarInt(in)).setActStrategyEnum(SnapshotReader.toEnum(ProducerActStrategy.Strategy.class, SnapshotReader.readText(in)));
+				break;
+
+			case EventLogFormat.STEP:
+				replayStep(simulator, in);
+				return true;
+
+			case EventLogFormat.RANDOM:
+				Object random = SnapshotReader.readSerialized(in);
+				if (!(random instanceof Random))
+					throw new StreamCorruptedException("Invalid random number generator");
+
+				simulator.setRandomNumber((Random) random);
+				break;
+
+			case EventLogFormat.LOG:
+				int logLevel = in.readUnsignedByte();
+				if (logLevel >= LogLevel.values().length)
+					throw new StreamCorruptedException("Unknown log level: " + logLevel);
+
+				int step = VarInts.readSignedVarInt(in);
+				events.add(new LogEvent(LogLevel.values()[logLevel], step, SnapshotReader.readText(in)));
+				break;
+
+			default:
+				throw new StreamCorruptedException("Unknown event log record: " + record);
+		}
+
+		return false;
+	}
+
+	private void replayRegister(FileSharingSystem fss, DataInputStream in) throws IOException, ClassNotFoundException
+	{
+		int type = in.readUnsignedByte();
+		int userID = VarInts.readSignedVarInt(in);
+		String userName = SnapshotReader.readText(in);
+		String taste = SnapshotReader.readText(in);
+		DocumentRankingStrategy.Strategy rankingStrategy = SnapshotReader.toEnum(DocumentRankingStrategy.Strategy.class, SnapshotReader.readText(in));
+
+		User user;
+		if (type == SnapshotFormat.PRODUCER)
+		{
+			ProducerActStrategy.Strategy actStrategy = SnapshotReader.toEnum(ProducerActStrategy.Strategy.class, SnapshotReader.readText(in));
+			ProducerPayoffStrategy payoffStrategy = SnapshotReader.readStrategy(in, ProducerPayoffStrategy.class);
+			user = new Producer(payoffStrategy, actStrategy, rankingStrategy, userName, taste);
+		}
+		else if (type == SnapshotFormat.CONSUMER)
+		{
+			int currentPayoff = VarInts.readSignedVarInt(in);
+			ConsumerPayoffStrategy payoffStrategy = SnapshotReader.readStrategy(in, ConsumerPayoffStrategy.class);
+
+			Consumer consumer = new Consumer(payoffStrategy, rankingStrategy, userName, taste);
+			consumer.setCurrentPayoff(currentPayoff);
+			user = consumer;
+		}
+		else
+		{
+			throw new StreamCorruptedException("Unknown user type: " + type);
+		}
+
+		user.registerUser(fss);
+		if (user.getUserID() != userID)
+			throw new StreamCorruptedException("User " + userID + " was registered as " + user.getUserID());
+	}
+
+	private void replayUpload(FileSharingSystem fss, DataInputStream in) throws IOException
+	{
+		int documentID = VarInts.readSignedVarInt(in);
+		int producerID = VarInts.readSignedVarInt(in);
+		boolean produced = in.readBoolean();
+		String name = SnapshotReader.readText(in);
+		String tag = SnapshotReader.readText(in);
+		long dateUploaded = in.readLong();
+
+		Producer producer = (producerID == 0 ? null : producer(fss, producerID));
+		Document document = new Document(name, tag, producer, (dateUploaded == SnapshotFormat.NO_DATE ? null : new Date(dateUploaded)));
+
+		if (produced && producer != null)
+			producer.getDocumentsProduced().add(document);
+
+		fss.addDocument(document);
+		if (document.getDocumentID() != documentID)
+			throw new StreamCorruptedException("Document " + documentID + " was uploaded as " + document.getDocumentID());
+	}
+
+	/**
+	 * Ends a replayed step the way Simulator.simulationStep() does. The user
+	 * that acted is picked again, so that the random number generator ends up
+	 * in the same state
+	 */
+	private void replayStep(Simulator simulator, DataInputStream in) throws IOException
+	{
+		FileSharingSystem fss = simulator.getFileSharingSystem();
+		int step = VarInts.readSignedVarInt(in);
+		int actingUserID = VarInts.readSignedVarInt(in);
+
+		List<User> users = fss.getUsers();
+		User actingUser = users.get(simulator.getRandomNumber().nextInt(users.size()));
+		if (actingUser.getUserID() != actingUserID)
+			throw new StreamCorruptedException("Step " + step + " was taken by user " + actingUserID + ", not " + actingUser.getUserID());
+
+		simulator.setCurrentSimulatorSequence(step + 1);
+
+		// The payoffs that changed during the step have been replayed
+		fss.takeChangedPayoffs();
+	}
+
+	private static User user(FileSharingSystem fss, DataInputStream in) throws IOException
+	{
+		int userID = VarInts.readSignedVarInt(in);
+		User user = fss.getUser(userID);
+
+		if (user == null)
+			throw new StreamCorruptedException("Unknown user: " + userID);
+
+		return user;
+	}
+
+	private static Producer producer(FileSharingSystem fss, int userID) throws IOException
+	{
+		User user = fss.getUser(userID);
+
+		if (!(user instanceof Producer))
+			throw new StreamCorruptedException("Unknown producer: " + userID);
+
+		return (Producer) user;
+	}
+
+	private static Document document(FileSharingSystem fss, DataInputStream in) throws IOException
+	{
+		int documentID = VarInts.readSignedVarInt(in);
+		Document document = fss.getDocument(documentID);
+
+		if (document == null)
+			throw new StreamCorruptedException("Unknown document: " + documentID);
+
+		return document;
+	}
+
+	private static int checksum(byte[] payload)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+
+}
@@ -0,0 +1,350 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import nullSquad.filesharingsystem.ChangeRecorder;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.simulator.log.LogEvent;
+import nullSquad.strategies.act.ProducerActStrategy;
+import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.util.VarInts;
+
+/**
+ * Writes an event log (see EventLogFormat). The changes are recorded as they
+ * are made, and written out as one frame when they are committed (ex: At the
+ * end of every step), so writing the log only costs as much as the simulation
+ * changed. A checkpoint writes the whole state instead
+ *
+ * @author MVezina
+ */
+public class EventLogWriter implements ChangeRecorder, Closeable
+{
+	private final OutputStream out;
+
+	// The records that have not been committed yet
+	private final ByteArrayOutputStream records;
+	private final DataOutputStream recordsOut;
+	private final CRC32 crc;
+
+	/**
+	 * Creates a writer, and writes the header of the log
+	 *
+	 * @param out The stream to write to (Every frame is written to it in full
+	 *            and flushed)
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public EventLogWriter(OutputStream out) throws IOException
+	{
+		this.out = out;
+		records = new ByteArrayOutputStream();
+		recordsOut = new DataOutputStream(records);
+		crc = new CRC32();
+
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(EventLogFormat.MAGIC);
+		header.writeInt(EventLogFormat.VERSION);
+		header.flush();
+	}
+
+	/**
+	 * Writes a checkpoint of the whole state. The records that have not been
+	 * committed are dropped, since the checkpoint already holds their changes
+	 *
+	 * @param saveState The current state
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void checkpoint(SimulatorSaveState saveState) throws IOException
+	{
+		records.reset();
+
+		ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		SnapshotWriter writer = new SnapshotWriter(snapshot);
+		writer.write(saveState);
+		writer.close();
+
+		writeFrame(EventLogFormat.CHECKPOINT, snapshot.toByteArray());
+	}
+
+	/**
+	 * Writes the records that have not been committed as one frame
+	 *
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void commit() throws IOException
+	{
+		if (records.size() == 0)
+			return;
+
+		byte[] payload = records.toByteArray();
+		records.reset();
+
+		writeFrame(EventLogFormat.EVENTS, payload);
+	}
+
+	private void writeFrame(int type, byte[] payload) throws IOException
+	{
+		crc.reset();
+		crc.update(payload, 0, payload.length);
+
+		// The frame is written at once, so that it is either complete or
+		// dropped when the log is read
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + EventLogFormat.FRAME_OVERHEAD);
+		DataOutputStream frameOut = new DataOutputStream(frame);
+		frameOut.writeByte(type);
+		frameOut.writeInt(payload.length);
+		frameOut.write(payload);
+		frameOut.writeInt((int) crc.getValue());
+
+		frame.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Records the end of a step
+	 *
+	 * @param step The step that ended
+	 * @param actingUser The user that acted during the step
+	 * @author MVezina
+	 */
+	public void stepEnded(int step, User actingUser)
+	{
+		writeRecord(EventLogFormat.STEP, step, actingUser.getUserID());
+	}
+
+	/**
+	 * Records the random number generator of the simulator, after it was used
+	 * outside of a step (ex: To create users)
+	 *
+	 * @param random The random number generator
+	 * @author MVezina
+	 */
+	public void randomChanged(Random random)
+	{
+		try
+		{
+			recordsOut.writeByte(EventLogFormat.RANDOM);
+			SnapshotWriter.writeSerialized(recordsOut, random);
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Records log events
+	 *
+	 * @param events The events logged since the last time
+	 * @author MVezina
+	 */
+	public void logged(List<LogEvent> events)
+	{
+		try
+		{
+			for (LogEvent event : events)
+			{
+				recordsOut.writeByte(EventLogFormat.LOG);
+				recordsOut.writeByte(event.getLevel().ordinal());
+				VarInts.writeSignedVarInt(recordsOut, event.getStep());
+				SnapshotWriter.writeText(recordsOut, event.getMessage());
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void userRegistered(User user, int userID)
+	{
+		try
+		{
+			recordsOut.writeByte(EventLogFormat.REGISTER);
+
+			if (user instanceof Producer)
+				recordsOut.writeByte(SnapshotFormat.PRODUCER);
+			else if (user instanceof Consumer)
+				recordsOut.writeByte(SnapshotFormat.CONSUMER);
+			else
+				throw new NotSerializableException(user.getClass().getName());
+
+			VarInts.writeSignedVarInt(recordsOut, userID);
+			SnapshotWriter.writeText(recordsOut, user.getUserName());
+			SnapshotWriter.writeText(recordsOut, user.getTaste());
+			SnapshotWriter.writeText(recordsOut, user.getDocumentRankingStrategy().name());
+
+			if (user instanceof Producer)
+			{
+				Producer p = (Producer) user;
+				SnapshotWriter.writeText(recordsOut, p.getActStrategyEnum().name());
+				SnapshotWriter.writeStrategy(recordsOut, p.getProducerPayoffStrategy(), p);
+			}
+			else
+			{
+				Consumer c = (Consumer) user;
+				VarInts.writeSignedVarInt(recordsOut, c.getCurrentPayoff());
+				SnapshotWriter.writeStrategy(recordsOut, c.getConsumerPayoffStrategy(), c);
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void userDeactivated(User user)
+	{
+		writeRecord(EventLogFormat.REMOVE_USER, user.getUserID());
+	}
+
+	@Override
+	public void documentUploaded(Document document)
+	{
+		try
+		{
+			Producer producer = document.getProducer();
+			List<Document> documentsProduced = (producer == null ? Collections.emptyList() : producer.getDocumentsProduced());
+
+			recordsOut.writeByte(EventLogFormat.UPLOAD);
+			VarInts.writeSignedVarInt(recordsOut, document.getDocumentID());
+			VarInts.writeSignedVarInt(recordsOut, (producer == null ? 0 : producer.getUserID()));
+			recordsOut.writeBoolean(!documentsProduced.isEmpty() && documentsProduced.get(documentsProduced.size() - 1) == document);
+			SnapshotWriter.writeText(recordsOut, document.getDocumentName());
+			SnapshotWriter.writeText(recordsOut, document.getTag());
+			recordsOut.writeLong(document.getDateUploaded() == null ? SnapshotFormat.NO_DATE : document.getDateUploaded().getTime());
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void documentRemoved(Document document)
+	{
+		writeRecord(EventLogFormat.REMOVE_DOCUMENT, document.getDocumentID());
+	}
+
+	@Override
+	public void documentLiked(User user, Document document)
+	{
+		writeRecord(EventLogFormat.LIKE, user.getUserID(), document.getDocumentID());
+	}
+
+	@Override
+	public void documentUnliked(User user, Document document)
+	{
+		writeRecord(EventLogFormat.UNLIKE, user.getUserID(), document.getDocumentID());
+	}
+
+	@Override
+	public void userFollowed(User follower, User user)
+	{
+		writeRecord(EventLogFormat.FOLLOW, follower.getUserID(), user.getUserID());
+	}
+
+	@Override
+	public void userUnfollowed(User follower, User user)
+	{
+		writeRecord(EventLogFormat.UNFOLLOW, follower.getUserID(), user.getUserID());
+	}
+
+	@Override
+	public void payoffRecorded(User user, int step, int payoff)
+	{
+		writeRecord(EventLogFormat.PAYOFF, user.getUserID(), step, payoff);
+	}
+
+	@Override
+	public void currentPayoffChanged(Consumer consumer, int currentPayoff)
+	{
+		writeRecord(EventLogFormat.CURRENT_PAYOFF, consumer.getUserID(), currentPayoff);
+	}
+
+	@Override
+	public void rankingStrategyChanged(User user, DocumentRankingStrategy.Strategy strategy)
+	{
+		writeStrategyRecord(EventLogFormat.RANKING_STRATEGY, user, strategy);
+	}
+
+	@Override
+	public void actStrategyChanged(Producer producer, ProducerActStrategy.Strategy strategy)
+	{
+		writeStrategyRecord(EventLogFormat.ACT_STRATEGY, producer, strategy);
+	}
+
+	/**
+	 * Writes a record made of integers
+	 */
+	private void writeRecord(int type, int... values)
+	{
+		try
+		{
+			recordsOut.writeByte(type);
+
+			for (int value : values)
+			{
+				VarInts.writeSignedVarInt(recordsOut, value);
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes a record of the strategy of a user (by name, like the snapshot
+	 * format)
+	 */
+	private void writeStrategyRecord(int type, User user, Enum<?> strategy)
+	{
+		try
+		{
+			recordsOut.writeByte(type);
+			VarInts.writeSignedVarInt(recordsOut, user.getUserID());
+			SnapshotWriter.writeText(recordsOut, strategy.name());
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Commits the records that have not been committed, and closes the stream
+	 *
+	 * @author MVezina
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			commit();
+		} finally
+		{
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Decompresses a stream written by an LzOutputStream, one block at a time
+ *
+ * @author MVezina
+ */
+class LzInputStream extends InputStream
+{
+	private final DataInputStream in;
+
+	// The decompressed block, and the position read up to in it
+	private final byte[] block;
+	private int position;
+	private int limit;
+
+	private final byte[] compressed;
+
+	// The position read up to in the compressed block
+	private int c;
+
+	private boolean finished;
+
+	/**
+	 * Creates a stream that reads compressed blocks from another stream
+	 *
+	 * @param in The stream to read from
+	 * @author MVezina
+	 */
+	LzInputStream(InputStream in)
+	{
+		this.in = new DataInputStream(in);
+		block = new byte[LzOutputStream.BLOCK_SIZE];
+		compressed = new byte[LzOutputStream.maxCompressedLength(LzOutputStream.BLOCK_SIZE)];
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (position == limit && !readBlock())
+			return -1;
+
+		return block[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+
+		if (position == limit && !readBlock())
+			return -1;
+
+		int length = Math.min(len, limit - position);
+		System.arraycopy(block, position, b, off, length);
+		position += length;
+
+		return length;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		return limit - position;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	/**
+	 * Reads the next block
+	 *
+	 * @return Whether or not there was another block (The stream has ended
+	 *         otherwise)
+	 */
+	private boolean readBlock() throws IOException
+	{
+		if (finished)
+			return false;
+
+		int length = in.readInt();
+		if (length == 0)
+		{
+			finished = true;
+			return false;
+		}
+
+		int storedLength = in.readInt();
+		if (length < 0 || length > block.length || storedLength <= 0 || storedLength > length)
+			throw new StreamCorruptedException("Invalid compressed block: " + storedLength + " / " + length + " bytes");
+
+		if (storedLength == length)
+		{
+			in.readFully(block, 0, length);
+		}
+		else
+		{
+			in.readFully(compressed, 0, storedLength);
+			decompressBlock(storedLength, length);
+		}
+
+		position = 0;
+		limit = length;
+
+		return true;
+	}
+
+	/**
+	 * Decompresses the compressed block into the block
+	 *
+	 * @param compressedLength The length of the compressed block
+	 * @param length The length of the block
+	 * @throws StreamCorruptedException If a sequence does not fit in the block
+	 */
+	private void decompressBlock(int compressedLength, int length) throws StreamCorruptedException
+	{
+		c = 0;
+		int d = 0;
+
+		while (true)
+		{
+			int token = nextByte(compressedLength);
+
+			int literalLength = readLength(token >>> 4, compressedLength, length);
+			if (literalLength > compressedLength - c || literalLength > length - d)
+				throw new StreamCorruptedException("Invalid literals at " + d);
+
+			System.arraycopy(compressed, c, block, d, literalLength);
+			c += literalLength;
+			d += literalLength;
+
+			// The last sequence only has literals
+			if (c == compressedLength)
+				break;
+
+			int distance = nextByte(compressedLength) | (nextByte(compressedLength) << 8);
+			int matchLength = readLength(token & 0x0F, compressedLength, length) + LzOutputStream.MIN_MATCH;
+			if (distance == 0 || distance > d || matchLength > length - d)
+				throw new StreamCorruptedException("Invalid match at " + d);
+
+			// A match can repeat the bytes it is copying (ex: A run of zeroes)
+			if (distance >= matchLength)
+			{
+				System.arraycopy(block, d - distance, block, d, matchLength);
+				d += matchLength;
+			}
+			else
+			{
+				for (int end = d + matchLength; d < end; d++)
+				{
+					block[d] = block[d - distance];
+				}
+			}
+		}
+
+		if (d != length)
+			throw new StreamCorruptedException("Compressed block has " + d + " bytes instead of " + length);
+	}
+
+	private int nextByte(int compressedLength) throws StreamCorruptedException
+	{
+		if (c >= compressedLength)
+			throw new StreamCorruptedException("Compressed block ended early");
+
+		return compressed[c++] & 0xFF;
+	}
+
+	/**
+	 * Reads the rest of a length whose 4 bits in the token are 15
+	 */
+	private int readLength(int length, int compressedLength, int maxLength) throws StreamCorruptedException
+	{
+		if (length < 15)
+			return length;
+
+		int b;
+		do
+		{
+			b = nextByte(compressedLength);
+			length += b;
+
+			if (length > maxLength)
+				throw new StreamCorruptedException("Invalid length: " + length);
+		} while (b == 255);
+
+		return length;
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compresses a stream with a lightweight LZ77 codec (The Fast compression).
+ * The stream is cut into blocks of up to BLOCK_SIZE bytes, and each block is
+ * written as its length and its stored length (4 bytes each), followed by the
+ * stored block. A block that does not get smaller is stored as is (Its stored
+ * length is its length). A length of 0 ends the stream.
+ *
+ * A compressed block is a list of sequences. Each sequence is a token byte
+ * (The number of literals in the high 4 bits, the length of the match minus
+ * MIN_MATCH in the low 4 bits, where 15 means that the rest of the length
+ * follows as bytes of 255 ended by a smaller byte), the literals, and the
+ * match: The distance back to the bytes it repeats (2 bytes, lowest first).
+ * The last sequence only has literals.
+ *
+ * Matches are found with a hash table of the last position of every 4 bytes,
+ * so every byte is only looked at once (The repeated strings and payoffs of a
+ * state compress well without searching any further back)
+ *
+ * @author MVezina
+ */
+class LzOutputStream extends OutputStream
+{
+	static final int BLOCK_SIZE = 65536;
+	static final int MIN_MATCH = 4;
+	static final int MAX_DISTANCE = 65535;
+
+	private static final int HASH_BITS = 14;
+
+	// Bytes without a match are skipped faster and faster (ex: Serialized
+	// strategies do not compress well)
+	private static final int SKIP_SHIFT = 6;
+
+	private final DataOutputStream out;
+
+	// The block being filled, and the compressed block
+	private final byte[] block;
+	private int count;
+	private final byte[] compressed;
+
+	// The last position of every hash of 4 bytes in the block
+	private final int[] positions;
+
+	private boolean closed;
+
+	/**
+	 * Creates a stream that writes compressed blocks to another stream
+	 *
+	 * @param out The stream to write to
+	 * @author MVezina
+	 */
+	LzOutputStream(OutputStream out)
+	{
+		this.out = new DataOutputStream(out);
+		block = new byte[BLOCK_SIZE];
+		compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+		positions = new int[1 << HASH_BITS];
+	}
+
+	/**
+	 * @param length The length of a block
+	 * @return The largest a compressed block can be (All literals)
+	 */
+	static int maxCompressedLength(int length)
+	{
+		return length + length / 255 + 16;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		if (count == BLOCK_SIZE)
+			writeBlock();
+
+		block[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		while (len > 0)
+		{
+			if (count == BLOCK_SIZE)
+				writeBlock();
+
+			int length = Math.min(len, BLOCK_SIZE - count);
+			System.arraycopy(b, off, block, count, length);
+
+			count += length;
+			off += length;
+			len -= length;
+		}
+	}
+
+	/**
+	 * Writes the block that is being filled (even though it is not full)
+	 *
+	 * @author MVezina
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		writeBlock();
+		out.flush();
+	}
+
+	/**
+	 * Writes the last block and the end of the stream, and closes the stream
+	 *
+	 * @author MVezina
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+			return;
+
+		closed = true;
+
+		try
+		{
+			writeBlock();
+			out.writeInt(0);
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	private void writeBlock() throws IOException
+	{
+		if (count == 0)
+			return;
+
+		int compressedLength = compressBlock(block, count, compressed);
+
+		out.writeInt(count);
+		if (compressedLength < count)
+		{
+			out.writeInt(compressedLength);
+			out.write(compressed, 0, compressedLength);
+		}
+		else
+		{
+			out.writeInt(count);
+			out.write(block, 0, count);
+		}
+
+		count = 0;
+	}
+
+	/**
+	 * Compresses a block
+	 *
+	 * @param src The block
+	 * @param length The length of the block
+	 * @param dst The compressed block (At least maxCompressedLength(length)
+	 *            bytes)
+	 * @return The length of the compressed block
+	 */
+	private int compressBlock(byte[] src, int length, byte[] dst)
+	{
+		Arrays.fill(positions, -1);
+
+		int anchor = 0;
+		int position = 0;
+		int d = 0;
+
+		while (position <= length - MIN_MATCH)
+		{
+			int value = readInt(src, position);
+			int hash = (value * -1640531535) >>> (32 - HASH_BITS);
+			int match = positions[hash];
+			positions[hash] = position;
+
+			if (match < 0 || position - match > MAX_DISTANCE || readInt(src, match) != value)
+			{
+				position += 1 + ((position - anchor) >>> SKIP_SHIFT);
+				continue;
+			}
+
+			int matchLength = MIN_MATCH;
+			while (position + matchLength < length && src[match + matchLength] == src[position + matchLength])
+			{
+				matchLength++;
+			}
+
+			d = writeSequence(src, anchor, position - anchor, matchLength, dst, d);
+			dst[d++] = (byte) (position - match);
+			dst[d++] = (byte) ((position - match) >>> 8);
+			d = writeLength(matchLength - MIN_MATCH, dst, d);
+
+			position += matchLength;
+			anchor = position;
+		}
+
+		// The last sequence only has literals
+		return writeSequence(src, anchor, length - anchor, MIN_MATCH, dst, d);
+	}
+
+	/**
+	 * Writes the token and the literals of a sequence
+	 *
+	 * @return The position after the literals
+	 */
+	private static int writeSequence(byte[] src, int literalStart, int literalLength, int matchLength, byte[] dst, int d)
+	{
+		dst[d++] = (byte) ((Math.min(literalLength, 15) << 4) | Math.min(matchLength - MIN_MATCH, 15));
+		d = writeLength(literalLength, dst, d);
+
+		System.arraycopy(src, literalStart, dst, d, literalLength);
+		return d + literalLength;
+	}
+
+	/**
+	 * Writes the rest of a length that did not fit in its 4 bits of the token
+	 *
+	 * @return The position after the length
+	 */
+	private static int writeLength(int length, byte[] dst, int d)
+	{
+		if (length < 15)
+			return d;
+
+		for (length -= 15; length >= 255; length -= 255)
+		{
+			dst[d++] = (byte) 255;
+		}
+
+		dst[d++] = (byte) length;
+		return d;
+	}
+
+	private static int readInt(byte[] src, int position)
+	{
+		return ((src[position] & 0xFF) << 24) | ((src[position + 1] & 0xFF) << 16) | ((src[position + 2] & 0xFF) << 8) | (src[position + 3] & 0xFF);
+	}
+}
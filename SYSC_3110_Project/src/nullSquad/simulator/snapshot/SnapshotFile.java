@@ -0,0 +1,296 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import nullSquad.filesharingsystem.users.PayoffHistory;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.util.VarInts;
+
+/**
+ * A saved simulator state (in the snapshot format) that is memory-mapped
+ * instead of read as a stream. The INDEX section at the end of the file gives
+ * the position of the payoff history of each user, so the histories (most of
+ * the state of a long run) are only paged in when they are needed, ex: When a
+ * user is graphed. The file stays mapped until every history has been read
+ * (Every history is read before the file is overwritten, see
+ * loadPayoffHistories)
+ *
+ * @author MVezina
+ */
+public class SnapshotFile
+{
+	private final File file;
+	private final ByteBuffer buffer;
+
+	// The position of each indexed section, and of the payoff history
+	// positions in the index
+	private final long[] sectionPositions;
+	private final int userCount;
+	private final int payoffPositions;
+
+	// The users given a loader for their payoff history (null until the state
+	// is read)
+	private User[] users;
+
+	private SnapshotFile(File file, ByteBuffer buffer, long[] sectionPositions, int userCount, int payoffPositions)
+	{
+		this.file = file;
+		this.buffer = buffer;
+		this.sectionPositions = sectionPositions;
+		this.userCount = userCount;
+		this.payoffPositions = payoffPositions;
+	}
+
+	/**
+	 * Maps a saved simulator state file
+	 *
+	 * @param file The file to map
+	 * @return The mapped state (null if the file is not in the snapshot
+	 *         format, ex: A state saved with Java serialization, or if it is
+	 *         too large to be mapped)
+	 * @throws IOException If the index is not valid (or the state is from a
+	 *             newer version)
+	 * @author MVezina
+	 */
+	public static SnapshotFile open(File file) throws IOException
+	{
+		ByteBuffer buffer;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			if (size < 5 + SnapshotFormat.TRAILER_SIZE || size > Integer.MAX_VALUE)
+				return null;
+
+			// The mapping stays valid once the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		if (buffer.getInt(0) != SnapshotFormat.MAGIC)
+			return null;
+
+		int version = VarInts.readVarInt(new DataInputStream(new BufferInputStream(buffer, 4)));
+		if (version != SnapshotFormat.VERSION)
+			throw new IOException("Unsupported simulation state file version: " + version);
+
+		int trailer = buffer.limit() - SnapshotFormat.TRAILER_SIZE;
+		if (buffer.getInt(trailer + 8) != SnapshotFormat.MAGIC)
+			throw new StreamCorruptedException("Missing index");
+
+		long indexPosition = buffer.getLong(trailer);
+		if (indexPosition < 0 || indexPosition + 1 + 8 * SnapshotFormat.INDEXED_SECTIONS + 4 > trailer || buffer.get((int) indexPosition) != SnapshotFormat.INDEX)
+			throw new StreamCorruptedException("Invalid index position: " + indexPosition);
+
+		int position = (int) indexPosition + 1;
+		long[] sectionPositions = new long[SnapshotFormat.INDEXED_SECTIONS];
+		for (int i = 0; i < sectionPositions.length; i++, position += 8)
+		{
+			sectionPositions[i] = buffer.getLong(position);
+			if (sectionPositions[i] < 0 || sectionPositions[i] >= indexPosition || buffer.get((int) sectionPositions[i]) != i + 1)
+				throw new StreamCorruptedException("Invalid position of section " + (i + 1) + ": " + sectionPositions[i]);
+		}
+
+		int userCount = buffer.getInt(position);
+		position += 4;
+		if (userCount < 0 || position + 8L * userCount != trailer)
+			throw new StreamCorruptedException("Invalid index user count: " + userCount);
+
+		return new SnapshotFile(file, buffer, sectionPositions, userCount, position);
+	}
+
+	/**
+	 * Reads the saved state. The users and documents are read in full, but the
+	 * payoff history of each user is only read the first time it is needed
+	 *
+	 * @return The saved state
+	 * @throws IOException If the state is not valid
+	 * @throws ClassNotFoundException If a serialized strategy can not be
+	 *             loaded
+	 * @author MVezina
+	 */
+	public SimulatorSaveState read() throws IOException, ClassNotFoundException
+	{
+		BufferInputStream stream = new BufferInputStream(buffer, 0);
+		return new MappedReader(stream).read();
+	}
+
+	/**
+	 * @return The number of users in the state (including the users that are
+	 *         not registered)
+	 * @author MVezina
+	 */
+	public int getUserCount()
+	{
+		return userCount;
+	}
+
+	/**
+	 * Reads the payoff history of a user, without reading the rest of the
+	 * state
+	 *
+	 * @param user The index of the user in the state (The registered users
+	 *            come first, in the order of the system)
+	 * @return The payoff history of the user
+	 * @throws IOException If the history is not valid
+	 * @author MVezina
+	 */
+	public PayoffHistory readPayoffHistory(int user) throws IOException
+	{
+		if (user < 0 || user >= userCount)
+			throw new IndexOutOfBoundsException("User: " + user + ", Users: " + userCount);
+
+		long position = buffer.getLong(payoffPositions + 8 * user);
+		if (position <= sectionPositions[SnapshotFormat.PAYOFFS - 1] || position >= sectionPositions[SnapshotFormat.LOG - 1])
+			throw new StreamCorruptedException("Invalid payoff history position: " + position);
+
+		return PayoffHistory.read(new DataInputStream(new BufferInputStream(buffer, (int) position)));
+	}
+
+	/**
+	 * @param file A file
+	 * @return Whether or not the file is the mapped file (ex: The file a state
+	 *         is about to be saved to)
+	 * @author MVezina
+	 */
+	public boolean isMappedFile(File file)
+	{
+		if (!file.exists())
+			return false;
+
+		try
+		{
+			return Files.isSameFile(this.file.toPath(), file.toPath());
+		} catch (IOException e)
+		{
+			// The mapped file may have been deleted
+			return false;
+		}
+	}
+
+	/**
+	 * Pages in every payoff history that has not been read yet, so that the
+	 * mapped file is no longer needed. The file can be overwritten once the
+	 * histories are loaded (Reading a mapped file that was truncated fails)
+	 *
+	 * @author MVezina
+	 */
+	public void loadPayoffHistories()
+	{
+		if (users == null)
+			return;
+
+		for (User user : users)
+		{
+			user.getPayoffHistory();
+		}
+
+		users = null;
+	}
+
+	/**
+	 * Pages in the payoff history of a user for User.getPayoffHistory()
+	 */
+	private PayoffHistory loadPayoffHistory(int user)
+	{
+		try
+		{
+			return readPayoffHistory(user);
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the state from the mapped file, but skips the PAYOFFS section:
+	 * Each user is given a loader for its payoff history instead
+	 */
+	private class MappedReader extends SnapshotReader
+	{
+		private final BufferInputStream stream;
+
+		MappedReader(BufferInputStream stream)
+		{
+			super(new DataInputStream(stream));
+			this.stream = stream;
+		}
+
+		@Override
+		void readPayoffHistories(User[] users) throws IOException
+		{
+			if (users.length != userCount)
+				throw new StreamCorruptedException("Index has " + userCount + " users, found " + users.length);
+
+			for (int i = 0; i < users.length; i++)
+			{
+				int user = i;
+				users[i].restorePayoffHistory(() -> loadPayoffHistory(user));
+			}
+			SnapshotFile.this.users = users;
+
+			stream.seek((int) sectionPositions[SnapshotFormat.LOG - 1]);
+		}
+	}
+
+	/**
+	 * A stream over (a copy of the position of) the mapped buffer
+	 */
+	private static class BufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer, int position)
+		{
+			this.buffer = buffer.duplicate();
+			this.buffer.position(position);
+		}
+
+		void seek(int position)
+		{
+			buffer.position(position);
+		}
+
+		@Override
+		public int read()
+		{
+			return (buffer.hasRemaining() ? buffer.get() & 0xFF : -1);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if (len == 0)
+				return 0;
+
+			if (!buffer.hasRemaining())
+				return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+/**
+ * The binary format of a saved simulator state (.ssf file). The network is
+ * written as flat tables instead of an object graph, so no part of it is
+ * written recursively:
+ *
+ * The header (MAGIC as 4 bytes, then the VERSION) is followed by the
+ * sections in the order below, each starting with its section byte. The
+ * USERS and DOCUMENTS tables list the registered users / documents first (in
+ * the order of the system), followed by any other user / document they
+ * reference. Every later section refers to a user or document by its index in
+ * these tables, and lists the users / documents in table order:
+ *
+ * SIMULATOR: Sequences and random number generator. SYSTEM: Next IDs and
+ * tags. USERS / DOCUMENTS: One entry per user / document. PRODUCED: The
+ * documents of each producer. LIKES: The documents liked by each user.
+ * LIKERS: The users that like each document. FOLLOWING / FOLLOWERS: The users
+ * each user follows / is followed by. PAYOFFS: The payoff history of each
+ * user. LOG: The log events. END.
+ *
+ * Integers are variable-length (see VarInts). Strings are kept in a
+ * dictionary: The first occurrence of a string is written in full, and every
+ * later occurrence only refers to it.
+ *
+ * END is followed by an INDEX section for readers that map the file (see SnapshotFile): The position of each section (SIMULATOR to
+ * LOG) as 8 bytes, the number of users as 4 bytes, and the position of the
+ * payoff history of each user as 8 bytes. The file ends with the position of
+ * the INDEX section (8 bytes) and MAGIC, so the index is found from the end of
+ * the file. Positions are from the start of the header.
+ *
+ * @author MVezina
+ */
+final class SnapshotFormat
+{
+	// "SSF" followed by a zero byte (Java serialization streams start with
+	// 0xACED instead)
+	static final int MAGIC = 0x53534600;
+	static final int VERSION = 1;
+
+	// Sections (in the order they are written)
+	static final int SIMULATOR = 1;
+	static final int SYSTEM = 2;
+	static final int USERS = 3;
+	static final int DOCUMENTS = 4;
+	static final int PRODUCED = 5;
+	static final int LIKES = 6;
+	static final int LIKERS = 7;
+	static final int FOLLOWING = 8;
+	static final int FOLLOWERS = 9;
+	static final int PAYOFFS = 10;
+	static final int LOG = 11;
+	static final int END = 0x7F;
+	static final int INDEX = 12;
+
+	// The number of sections with a position in the index (SIMULATOR to LOG)
+	static final int INDEXED_SECTIONS = LOG;
+
+	// The position of the INDEX section and MAGIC at the end of the file
+	static final int TRAILER_SIZE = 12;
+
+	// User types
+	static final int CONSUMER = 0;
+	static final int PRODUCER = 1;
+
+	// Strings: A string of the dictionary is written as its index + 2
+	static final int NULL_STRING = 0;
+	static final int NEW_STRING = 1;
+
+	// Payoff strategies: The default strategy of the user, or any other
+	// strategy written with Java serialization
+	static final int DEFAULT_STRATEGY = 0;
+	static final int SERIALIZED_STRATEGY = 1;
+
+	// The upload date of a document without one
+	static final long NO_DATE = Long.MIN_VALUE;
+
+	private SnapshotFormat()
+	{
+	}
+}
@@ -0,0 +1,480 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.PayoffHistory;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.simulator.Simulator;
+import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.simulator.log.LogEvent;
+import nullSquad.simulator.log.LogLevel;
+import nullSquad.strategies.act.ProducerActStrategy;
+import nullSquad.strategies.payoff.ConsumerPayoffStrategy;
+import nullSquad.strategies.payoff.ProducerPayoffStrategy;
+import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.util.VarInts;
+
+/**
+ * Reads a saved simulator state written by a SnapshotWriter. The users and
+ * documents are created from their tables first, and their relations are
+ * filled in once every section has been read
+ *
+ * @author MVezina
+ */
+public class SnapshotReader implements Closeable
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final DataInputStream in;
+
+	// The strings of the dictionary (in the order they were written)
+	private final List<String> strings;
+
+	// The tables of the state being read
+	private User[] users;
+	private int[] userIDs;
+	private int[] registeredIDs;
+	private Document[] documents;
+	private int registeredDocuments;
+
+	/**
+	 * Creates a reader
+	 *
+	 * @param in The stream to read from
+	 * @author MVezina
+	 */
+	public SnapshotReader(InputStream in)
+	{
+		this(new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in, BUFFER_SIZE)));
+	}
+
+	/**
+	 * Creates a reader of a stream that is not buffered again (ex: A stream
+	 * over a mapped file)
+	 *
+	 * @param in The stream to read from
+	 */
+	SnapshotReader(DataInputStream in)
+	{
+		this.in = in;
+		strings = new ArrayList<>();
+	}
+
+	/**
+	 * Checks whether or not a stream starts with a state in the snapshot
+	 * format (ex: Rather than a state saved with Java serialization). Nothing
+	 * is consumed from the stream
+	 *
+	 * @param in The stream to check (Must support mark / reset)
+	 * @return Whether or not the stream starts with the snapshot header
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public static boolean isSnapshot(InputStream in) throws IOException
+	{
+		in.mark(4);
+
+		try
+		{
+			int magic = 0;
+			for (int i = 0; i < 4; i++)
+			{
+				int b = in.read();
+				if (b < 0)
+					return false;
+
+				magic = (magic << 8) | b;
+			}
+
+			return magic == SnapshotFormat.MAGIC;
+		} finally
+		{
+			in.reset();
+		}
+	}
+
+	/**
+	 * Reads a saved simulator state. The users and documents are registered
+	 * with a new File Sharing System, which can be restored into an existing
+	 * system with FileSharingSystem.restoreState(..)
+	 *
+	 * @return The saved state
+	 * @throws IOException If the stream is not a valid snapshot (or is from a
+	 *             newer version)
+	 * @throws ClassNotFoundException If a serialized strategy can not be
+	 *             loaded
+	 * @author MVezina
+	 */
+	public SimulatorSaveState read() throws IOException, ClassNotFoundException
+	{
+		strings.clear();
+
+		if (in.readInt() != SnapshotFormat.MAGIC)
+			throw new StreamCorruptedException("Not a simulation state file");
+
+		int version = VarInts.readVarInt(in);
+		if (version != SnapshotFormat.VERSION)
+			throw new IOException("Unsupported simulation state file version: " + version);
+
+		expectSection(SnapshotFormat.SIMULATOR);
+		int currentSequence = VarInts.readSignedVarInt(in);
+		int totalSequences = VarInts.readSignedVarInt(in);
+		Object random = readSerialized(in);
+
+		if (!(random instanceof Random))
+			throw new StreamCorruptedException("Invalid random number generator");
+
+		expectSection(SnapshotFormat.SYSTEM);
+		int nextAvailableUserID = VarInts.readSignedVarInt(in);
+		int nextAvailableDocID = VarInts.readSignedVarInt(in);
+
+		int tagCount = VarInts.readVarInt(in);
+		List<String> tags = new ArrayList<>();
+		for (int i = 0; i < tagCount; i++)
+		{
+			tags.add(readString());
+		}
+
+		readUsers();
+		readDocuments();
+		readRelations();
+
+		expectSection(SnapshotFormat.LOG);
+		int eventCount = VarInts.readVarInt(in);
+		List<LogEvent> events = new ArrayList<>();
+		for (int i = 0; i < eventCount; i++)
+		{
+			int level = in.readUnsignedByte();
+			if (level >= LogLevel.values().length)
+				throw new StreamCorruptedException("Unknown log level: " + level);
+
+			int step = VarInts.readSignedVarInt(in);
+			events.add(new LogEvent(LogLevel.values()[level], step, readText(in)));
+		}
+
+		expectSection(SnapshotFormat.END);
+
+		// Register the users / documents once their relations are complete
+		FileSharingSystem fileSharingSystem = new FileSharingSystem(tags);
+
+		for (int i = 0; i < registeredIDs.length; i++)
+		{
+			if (!fileSharingSystem.restoreUser(registeredIDs[i], users[i]))
+				throw new StreamCorruptedException("Duplicate user ID: " + registeredIDs[i]);
+		}
+
+		for (int i = 0; i < registeredDocuments; i++)
+		{
+			if (!fileSharingSystem.restoreDocument(documents[i]))
+				throw new StreamCorruptedException("Duplicate document ID: " + documents[i].getDocumentID());
+		}
+
+		fileSharingSystem.restoreNextAvailableIDs(nextAvailableUserID, nextAvailableDocID);
+
+		Simulator simulator = new Simulator(fileSharingSystem, totalSequences, (Random) random);
+		simulator.setCurrentSimulatorSequence(currentSequence);
+
+		users = null;
+		documents = null;
+		return new SimulatorSaveState(simulator, events);
+	}
+
+	/**
+	 * Reads the USERS table
+	 */
+	private void readUsers() throws IOException, ClassNotFoundException
+	{
+		expectSection(SnapshotFormat.USERS);
+
+		int userCount = VarInts.readVarInt(in);
+		int registeredUsers = VarInts.readVarInt(in);
+		if (registeredUsers > userCount)
+			throw new StreamCorruptedException("Invalid user table");
+
+		users = new User[userCount];
+		userIDs = new int[userCount];
+		registeredIDs = new int[registeredUsers];
+
+		for (int i = 0; i < userCount; i++)
+		{
+			int type = in.readUnsignedByte();
+
+			if (i < registeredUsers)
+				registeredIDs[i] = VarInts.readSignedVarInt(in);
+
+			userIDs[i] = VarInts.readSignedVarInt(in);
+			String userName = readString();
+			String taste = readString();
+			DocumentRankingStrategy.Strategy rankingStrategy = readEnum(DocumentRankingStrategy.Strategy.class);
+
+			if (type == SnapshotFormat.PRODUCER)
+			{
+				ProducerActStrategy.Strategy actStrategy = readEnum(ProducerActStrategy.Strategy.class);
+				ProducerPayoffStrategy payoffStrategy = readStrategy(in, ProducerPayoffStrategy.class);
+				users[i] = new Producer(payoffStrategy, actStrategy, rankingStrategy, userName, taste);
+			}
+			else if (type == SnapshotFormat.CONSUMER)
+			{
+				int currentPayoff = VarInts.readSignedVarInt(in);
+				ConsumerPayoffStrategy payoffStrategy = readStrategy(in, ConsumerPayoffStrategy.class);
+
+				Consumer consumer = new Consumer(payoffStrategy, rankingStrategy, userName, taste);
+				consumer.setCurrentPayoff(currentPayoff);
+				users[i] = consumer;
+			}
+			else
+			{
+				throw new StreamCorruptedException("Unknown user type: " + type);
+			}
+		}
+	}
+
+	/**
+	 * Reads the DOCUMENTS table
+	 */
+	private void readDocuments() throws IOException
+	{
+		expectSection(SnapshotFormat.DOCUMENTS);
+
+		int documentCount = VarInts.readVarInt(in);
+		registeredDocuments = VarInts.readVarInt(in);
+		if (registeredDocuments > documentCount)
+			throw new StreamCorruptedException("Invalid document table");
+
+		documents = new Document[documentCount];
+
+		for (int i = 0; i < documentCount; i++)
+		{
+			int documentID = VarInts.readSignedVarInt(in);
+			String name = readString();
+			String tag = readString();
+
+			int producer = VarInts.readVarInt(in);
+			if (producer > users.length || (producer > 0 && !(users[producer - 1] instanceof Producer)))
+				throw new StreamCorruptedException("Invalid producer: " + producer);
+
+			long dateUploaded = in.readLong();
+
+			documents[i] = new Document(name, tag, (producer == 0 ? null : (Producer) users[producer - 1]), (dateUploaded == SnapshotFormat.NO_DATE ? null : new Date(dateUploaded)));
+			documents[i].setDocumentID(documentID);
+		}
+	}
+
+	/**
+	 * Reads the relations and payoff histories, and restores them into the
+	 * users / documents
+	 */
+	private void readRelations() throws IOException
+	{
+		expectSection(SnapshotFormat.PRODUCED);
+		for (User u : users)
+		{
+			if (u instanceof Producer)
+				((Producer) u).getDocumentsProduced().addAll(readReferences(documents));
+		}
+
+		expectSection(SnapshotFormat.LIKES);
+		List<List<Document>> likedDocuments = new ArrayList<>(users.length);
+		for (int i = 0; i < users.length; i++)
+		{
+			likedDocuments.add(readReferences(documents));
+		}
+
+		expectSection(SnapshotFormat.LIKERS);
+		for (Document d : documents)
+		{
+			d.restoreLikes(readReferences(users));
+		}
+
+		expectSection(SnapshotFormat.FOLLOWING);
+		List<List<User>> following = new ArrayList<>(users.length);
+		for (int i = 0; i < users.length; i++)
+		{
+			following.add(readReferences(users));
+		}
+
+		expectSection(SnapshotFormat.FOLLOWERS);
+		List<List<User>> followers = new ArrayList<>(users.length);
+		for (int i = 0; i < users.length; i++)
+		{
+			followers.add(readReferences(users));
+		}
+
+		for (int i = 0; i < users.length; i++)
+		{
+			users[i].restoreState(userIDs[i], followers.get(i), following.get(i), likedDocuments.get(i));
+		}
+
+		expectSection(SnapshotFormat.PAYOFFS);
+		readPayoffHistories(users);
+	}
+
+	/**
+	 * Reads the PAYOFFS section (after its section byte), and restores the
+	 * payoff history of each user
+	 *
+	 * @param users The users in table order
+	 * @throws IOException
+	 */
+	void readPayoffHistories(User[] users) throws IOException
+	{
+		for (User u : users)
+		{
+			u.restorePayoffHistory(PayoffHistory.read(in));
+		}
+	}
+
+	/**
+	 * Reads a number of table indices, and gets the item of each
+	 */
+	private <T> List<T> readReferences(T[] table) throws IOException
+	{
+		int count = VarInts.readVarInt(in);
+		List<T> items = new ArrayList<>(Math.min(count, table.length));
+
+		for (int i = 0; i < count; i++)
+		{
+			int index = VarInts.readVarInt(in);
+			if (index < 0 || index >= table.length)
+				throw new StreamCorruptedException("Invalid reference: " + index);
+
+			items.add(table[index]);
+		}
+
+		return items;
+	}
+
+	private void expectSection(int section) throws IOException
+	{
+		int actual = in.readUnsignedByte();
+		if (actual != section)
+			throw new StreamCorruptedException("Expected section " + section + ", found " + actual);
+	}
+
+	private <E extends Enum<E>> E readEnum(Class<E> enumType) throws IOException
+	{
+		return toEnum(enumType, readString());
+	}
+
+	/**
+	 * Gets the constant of an enum from its name
+	 */
+	static <E extends Enum<E>> E toEnum(Class<E> enumType, String name) throws IOException
+	{
+		try
+		{
+			return Enum.valueOf(enumType, name);
+		} catch (IllegalArgumentException | NullPointerException e)
+		{
+			throw new StreamCorruptedException("Unknown " + enumType.getSimpleName() + ": " + name);
+		}
+	}
+
+	/**
+	 * Reads the payoff strategy of a user
+	 *
+	 * @return The strategy (null for the default strategy of the user)
+	 */
+	static <T> T readStrategy(DataInput in, Class<T> strategyType) throws IOException, ClassNotFoundException
+	{
+		int strategy = in.readUnsignedByte();
+
+		if (strategy == SnapshotFormat.DEFAULT_STRATEGY)
+			return null;
+
+		if (strategy != SnapshotFormat.SERIALIZED_STRATEGY)
+			throw new StreamCorruptedException("Unknown payoff strategy: " + strategy);
+
+		Object payoffStrategy = readSerialized(in);
+		if (!strategyType.isInstance(payoffStrategy))
+			throw new StreamCorruptedException("Invalid payoff strategy: " + payoffStrategy);
+
+		return strategyType.cast(payoffStrategy);
+	}
+
+	static Object readSerialized(DataInput in) throws IOException, ClassNotFoundException
+	{
+		int length = VarInts.readVarInt(in);
+		if (length < 0)
+			throw new StreamCorruptedException("Invalid object length: " + length);
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+
+		ObjectInputStream oIS = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		Object object = oIS.readObject();
+		oIS.close();
+
+		return object;
+	}
+
+	private String readString() throws IOException
+	{
+		int index = VarInts.readVarInt(in);
+
+		if (index == SnapshotFormat.NULL_STRING)
+			return null;
+
+		if (index == SnapshotFormat.NEW_STRING)
+		{
+			String string = readText(in);
+			strings.add(string);
+			return string;
+		}
+
+		if (index < 0 || index - 2 >= strings.size())
+			throw new StreamCorruptedException("Invalid string: " + index);
+
+		return strings.get(index - 2);
+	}
+
+	static String readText(DataInput in) throws IOException
+	{
+		int length = VarInts.readVarInt(in);
+
+		if (length == 0)
+			return null;
+
+		if (length < 0)
+			throw new StreamCorruptedException("Invalid string length: " + length);
+
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Closes the stream
+	 *
+	 * @author MVezina
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+}
@@ -0,0 +1,499 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.simulator.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.simulator.Simulator;
+import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.simulator.log.LogEvent;
+import nullSquad.util.VarInts;
+
+/**
+ * Writes a saved simulator state to a stream in the binary snapshot format
+ * (see SnapshotFormat). The state is written as it is visited, so only the
+ * tables of users / documents are kept in memory
+ *
+ * @author MVezina
+ */
+public class SnapshotWriter implements Closeable
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final DataOutputStream out;
+
+	// String -> Index of the string in the dictionary
+	private final Map<String, Integer> strings;
+
+	// The users / documents in the order of the tables, and the index of each
+	// (The registered users / documents come first)
+	private final List<User> users;
+	private final Map<User, Integer> userIndices;
+	private final List<Document> documents;
+	private final Map<Document, Integer> documentIndices;
+	private int registeredUsers;
+	private int registeredDocuments;
+
+	// The position of the state in the stream, and of each indexed section /
+	// payoff history from it
+	private int start;
+	private final long[] sectionPositions;
+	private long[] payoffPositions;
+
+	/**
+	 * Creates a writer
+	 *
+	 * @param out The stream to write to
+	 * @author MVezina
+	 */
+	public SnapshotWriter(OutputStream out)
+	{
+		this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+		strings = new HashMap<>();
+		users = new ArrayList<>();
+		userIndices = new IdentityHashMap<>();
+		documents = new ArrayList<>();
+		documentIndices = new IdentityHashMap<>();
+		sectionPositions = new long[SnapshotFormat.INDEXED_SECTIONS];
+	}
+
+	/**
+	 * Writes a saved simulator state
+	 *
+	 * @param saveState The state to write
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public void write(SimulatorSaveState saveState) throws IOException
+	{
+		Simulator simulator = saveState.getSimulator();
+		FileSharingSystem fileSharingSystem = simulator.getFileSharingSystem();
+
+		strings.clear();
+		collect(fileSharingSystem);
+
+		start = out.size();
+		out.writeInt(SnapshotFormat.MAGIC);
+		VarInts.writeVarInt(out, SnapshotFormat.VERSION);
+
+		startSection(SnapshotFormat.SIMULATOR);
+		VarInts.writeSignedVarInt(out, simulator.getCurrentSimulatorSequence());
+		VarInts.writeSignedVarInt(out, simulator.getTotalSimulatorSequences());
+		writeSerialized(out, simulator.getRandomNumber());
+
+		startSection(SnapshotFormat.SYSTEM);
+		VarInts.writeSignedVarInt(out, fileSharingSystem.getNextAvailableUserID());
+		VarInts.writeSignedVarInt(out, fileSharingSystem.getNextAvailableDocID());
+		VarInts.writeVarInt(out, fileSharingSystem.getTags().size());
+		for (String tag : fileSharingSystem.getTags())
+		{
+			writeString(tag);
+		}
+
+		writeUsers(fileSharingSystem);
+		writeDocuments();
+		writeRelations();
+
+		startSection(SnapshotFormat.PAYOFFS);
+		payoffPositions = new long[users.size()];
+		for (int i = 0; i < users.size(); i++)
+		{
+			payoffPositions[i] = position();
+			users.get(i).getPayoffHistory().write(out);
+		}
+
+		writeLog(saveState.getLogEvents());
+
+		out.writeByte(SnapshotFormat.END);
+		writeIndex();
+		out.flush();
+	}
+
+	/**
+	 * Writes the INDEX section and the trailer
+	 *
+	 * @throws IOException
+	 */
+	private void writeIndex() throws IOException
+	{
+		long indexPosition = position();
+
+		out.writeByte(SnapshotFormat.INDEX);
+		for (long sectionPosition : sectionPositions)
+		{
+			out.writeLong(sectionPosition);
+		}
+
+		out.writeInt(payoffPositions.length);
+		for (long payoffPosition : payoffPositions)
+		{
+			out.writeLong(payoffPosition);
+		}
+
+		out.writeLong(indexPosition);
+		out.writeInt(SnapshotFormat.MAGIC);
+		payoffPositions = null;
+	}
+
+	/**
+	 * Writes the byte of an indexed section, and records its position
+	 */
+	private void startSection(int section) throws IOException
+	{
+		sectionPositions[section - 1] = position();
+		out.writeByte(section);
+	}
+
+	/**
+	 * @return The position in the state (The number of bytes written counts up
+	 *         to 2GB, which is as large as a mapped file can be)
+	 */
+	private long position()
+	{
+		return out.size() - start;
+	}
+
+	/**
+	 * Collects the registered users / documents, and every other user /
+	 * document they reference (ex: A document that was produced but never
+	 * uploaded). The references are followed with a work list (not
+	 * recursively)
+	 *
+	 * @param fileSharingSystem The system to collect the users / documents of
+	 */
+	private void collect(FileSharingSystem fileSharingSystem)
+	{
+		users.clear();
+		userIndices.clear();
+		documents.clear();
+		documentIndices.clear();
+
+		for (User u : fileSharingSystem.getUsers())
+		{
+			addUser(u);
+		}
+
+		for (Document d : fileSharingSystem.getAllDocuments())
+		{
+			addDocument(d);
+		}
+
+		registeredUsers = users.size();
+		registeredDocuments = documents.size();
+
+		int user = 0;
+		int document = 0;
+		while (user < users.size() || document < documents.size())
+		{
+			for (; user < users.size(); user++)
+			{
+				collectReferences(users.get(user));
+			}
+
+			for (; document < documents.size(); document++)
+			{
+				collectReferences(documents.get(document));
+			}
+		}
+	}
+
+	private void collectReferences(User user)
+	{
+		for (User u : user.getFollowers())
+		{
+			addUser(u);
+		}
+
+		for (User u : user.getFollowing())
+		{
+			addUser(u);
+		}
+
+		for (Document d : user.getLikedDocuments())
+		{
+			addDocument(d);
+		}
+
+		if (user instanceof Producer)
+		{
+			for (Document d : ((Producer) user).getDocumentsProduced())
+			{
+				addDocument(d);
+			}
+		}
+	}
+
+	private void collectReferences(Document document)
+	{
+		addUser(document.getProducer());
+
+		for (User u : document.getUserLikes())
+		{
+			addUser(u);
+		}
+	}
+
+	private void addUser(User user)
+	{
+		if (user != null && userIndices.putIfAbsent(user, users.size()) == null)
+			users.add(user);
+	}
+
+	private void addDocument(Document document)
+	{
+		if (document != null && documentIndices.putIfAbsent(document, documents.size()) == null)
+			documents.add(document);
+	}
+
+	/**
+	 * Writes the USERS table
+	 *
+	 * @param fileSharingSystem The system the users are registered with
+	 * @throws IOException If a user is not a consumer or producer
+	 */
+	private void writeUsers(FileSharingSystem fileSharingSystem) throws IOException
+	{
+		startSection(SnapshotFormat.USERS);
+		VarInts.writeVarInt(out, users.size());
+		VarInts.writeVarInt(out, registeredUsers);
+
+		for (int i = 0; i < users.size(); i++)
+		{
+			User u = users.get(i);
+
+			if (u instanceof Producer)
+				out.writeByte(SnapshotFormat.PRODUCER);
+			else if (u instanceof Consumer)
+				out.writeByte(SnapshotFormat.CONSUMER);
+			else
+				throw new NotSerializableException(u.getClass().getName());
+
+			if (i < registeredUsers)
+				VarInts.writeSignedVarInt(out, fileSharingSystem.getRegisteredID(u));
+
+			VarInts.writeSignedVarInt(out, u.getUserID());
+			writeString(u.getUserName());
+			writeString(u.getTaste());
+			writeString(u.getDocumentRankingStrategy().name());
+
+			if (u instanceof Producer)
+			{
+				Producer p = (Producer) u;
+				writeString(p.getActStrategyEnum().name());
+				writeStrategy(out, p.getProducerPayoffStrategy(), p);
+			}
+			else
+			{
+				Consumer c = (Consumer) u;
+				VarInts.writeSignedVarInt(out, c.getCurrentPayoff());
+				writeStrategy(out, c.getConsumerPayoffStrategy(), c);
+			}
+		}
+	}
+
+	/**
+	 * Writes the DOCUMENTS table
+	 *
+	 * @throws IOException
+	 */
+	private void writeDocuments() throws IOException
+	{
+		startSection(SnapshotFormat.DOCUMENTS);
+		VarInts.writeVarInt(out, documents.size());
+		VarInts.writeVarInt(out, registeredDocuments);
+
+		for (Document d : documents)
+		{
+			VarInts.writeSignedVarInt(out, d.getDocumentID());
+			writeString(d.getDocumentName());
+			writeString(d.getTag());
+			writeReference(userIndices, d.getProducer());
+			out.writeLong(d.getDateUploaded() == null ? SnapshotFormat.NO_DATE : d.getDateUploaded().getTime());
+		}
+	}
+
+	/**
+	 * Writes the produced documents, likes and follows. The relations are
+	 * written from both sides, so that both keep their order
+	 *
+	 * @throws IOException
+	 */
+	private void writeRelations() throws IOException
+	{
+		startSection(SnapshotFormat.PRODUCED);
+		for (User u : users)
+		{
+			if (u instanceof Producer)
+				writeReferences(documentIndices, ((Producer) u).getDocumentsProduced());
+		}
+
+		startSection(SnapshotFormat.LIKES);
+		for (User u : users)
+		{
+			writeReferences(documentIndices, u.getLikedDocuments());
+		}
+
+		startSection(SnapshotFormat.LIKERS);
+		for (Document d : documents)
+		{
+			writeReferences(userIndices, d.getUserLikes());
+		}
+
+		startSection(SnapshotFormat.FOLLOWING);
+		for (User u : users)
+		{
+			writeReferences(userIndices, u.getFollowing());
+		}
+
+		startSection(SnapshotFormat.FOLLOWERS);
+		for (User u : users)
+		{
+			writeReferences(userIndices, u.getFollowers());
+		}
+	}
+
+	/**
+	 * Writes the LOG section
+	 *
+	 * @param events The log events
+	 * @throws IOException
+	 */
+	private void writeLog(List<LogEvent> events) throws IOException
+	{
+		startSection(SnapshotFormat.LOG);
+		VarInts.writeVarInt(out, events.size());
+
+		for (LogEvent event : events)
+		{
+			out.writeByte(event.getLevel().ordinal());
+			VarInts.writeSignedVarInt(out, event.getStep());
+			writeText(out, event.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the table index of an item (+ 1, 0 if null)
+	 */
+	private <T> void writeReference(Map<T, Integer> indices, T item) throws IOException
+	{
+		VarInts.writeVarInt(out, (item == null ? 0 : indices.get(item) + 1));
+	}
+
+	/**
+	 * Writes the number of items, followed by the table index of each item
+	 */
+	private <T> void writeReferences(Map<T, Integer> indices, List<? extends T> items) throws IOException
+	{
+		VarInts.writeVarInt(out, items.size());
+
+		for (T item : items)
+		{
+			VarInts.writeVarInt(out, indices.get(item));
+		}
+	}
+
+	/**
+	 * Writes the payoff strategy of a user (The default strategy of a user is
+	 * the user itself)
+	 */
+	static void writeStrategy(DataOutput out, Object strategy, User user) throws IOException
+	{
+		if (strategy == user)
+		{
+			out.writeByte(SnapshotFormat.DEFAULT_STRATEGY);
+			return;
+		}
+
+		out.writeByte(SnapshotFormat.SERIALIZED_STRATEGY);
+		writeSerialized(out, strategy);
+	}
+
+	/**
+	 * Writes an object with Java serialization (Only used for small objects
+	 * that are not part of the network, ex: The random number generator)
+	 */
+	static void writeSerialized(DataOutput out, Object object) throws IOException
+	{
+		ByteArrayOutputStream bAOS = new ByteArrayOutputStream();
+		ObjectOutputStream oOS = new ObjectOutputStream(bAOS);
+		oOS.writeObject(object);
+		oOS.close();
+
+		VarInts.writeVarInt(out, bAOS.size());
+		out.write(bAOS.toByteArray());
+	}
+
+	/**
+	 * Writes a string through the dictionary
+	 */
+	private void writeString(String string) throws IOException
+	{
+		if (string == null)
+		{
+			VarInts.writeVarInt(out, SnapshotFormat.NULL_STRING);
+			return;
+		}
+
+		Integer index = strings.get(string);
+		if (index != null)
+		{
+			VarInts.writeVarInt(out, index + 2);
+			return;
+		}
+
+		strings.put(string, strings.size());
+		VarInts.writeVarInt(out, SnapshotFormat.NEW_STRING);
+		writeText(out, string);
+	}
+
+	/**
+	 * Writes a string in full as UTF-8 (The length + 1, 0 if null)
+	 */
+	static void writeText(DataOutput out, String text) throws IOException
+	{
+		if (text == null)
+		{
+			VarInts.writeVarInt(out, 0);
+			return;
+		}
+
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		VarInts.writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	/**
+	 * Flushes and closes the stream
+	 *
+	 * @author MVezina
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+
+}
@@ -1,7 +1,7 @@
 package nullSquad.strategies.act;
 
 import nullSquad.filesharingsystem.users.*;
-import nullSquad.simulator.Simulator;
+import nullSquad.simulator.log.SimulationLog;
 import nullSquad.filesharingsystem.document.*;
 
 import java.util.*;
@@ -25,7 +25,7 @@ public class DefaultProducerActStrategy implements ProducerActStrategy{
 		
 		
 		// Append Results to log
-		Simulator.appendLineLog("Search: Returned " + documentResults.size() + " documents");
+		SimulationLog.getInstance().debug("Search: Returned {} documents", documentResults.size());
 		
 		// Search the file sharing system for top K documents
 		for (Document d : documentResults)
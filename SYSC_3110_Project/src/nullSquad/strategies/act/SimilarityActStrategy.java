@@ -4,7 +4,7 @@ import java.util.List;
 import java.util.Random;
 
 import nullSquad.filesharingsystem.users.*;
-import nullSquad.simulator.Simulator;
+import nullSquad.simulator.log.SimulationLog;
 import nullSquad.filesharingsystem.document.*;
 import nullSquad.filesharingsystem.*;
 
@@ -34,7 +34,7 @@ public class SimilarityActStrategy implements ProducerActStrategy
 
 		// Search the file sharing system for the new tag
 		List<Document> documentResults = fileSharingSystem.search(producer, newTaste, kResults);
-		Simulator.appendLineLog("Search: Returned " + documentResults.size() + " documents");
+		SimulationLog.getInstance().debug("Search: Returned {} documents", documentResults.size());
 
 		for (Document d : documentResults)
 		{
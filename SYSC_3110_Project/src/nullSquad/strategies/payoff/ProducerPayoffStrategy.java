@@ -16,5 +16,20 @@ import nullSquad.filesharingsystem.users.*;
 public interface ProducerPayoffStrategy extends Serializable
 {
 	public int producerPayoffStrategy(Producer prod);
-	
+
+	/**
+	 * Incremental strategies calculate the payoff in constant time (from
+	 * counters that are kept up to date), so the payoff is calculated every
+	 * time it is needed. The payoff of all other strategies is cached by the
+	 * producer and only recalculated after the producer gains / loses a
+	 * follower or like, or after Producer.invalidatePayoff() is called
+	 * 
+	 * @return Whether or not the strategy is incremental
+	 * @author MVezina
+	 */
+	public default boolean isIncremental()
+	{
+		return false;
+	}
+
 }
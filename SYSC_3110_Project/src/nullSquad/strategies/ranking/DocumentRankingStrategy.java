@@ -11,7 +11,7 @@ import java.util.*;
  * 
  * @author MVezina
  */
-public interface DocumentRankingStrategy extends Comparator<Document>, Serializable
+public interface DocumentRankingStrategy extends Serializable
 {
 	/**
 	 * Enumeration for all possible strategies
@@ -48,15 +48,49 @@ public interface DocumentRankingStrategy extends Comparator<Document>, Serializa
 
 	}
 
+	/**
+	 * Prepares the ranking of documents for the specified user. Any work that
+	 * is shared by all documents should be done here (once per query), so
+	 * that scoring each document is as cheap as possible
+	 * 
+	 * @param user The User to rank by
+	 * @return The scorer used to score each document for this query
+	 * @author MVezina
+	 */
+	public DocumentScorer prepare(User user);
+
 	/**
 	 * Ranks the documents from Best->Worst. (Best Document Occurs First in the
 	 * list because we want it to be the first result)
 	 * 
 	 * @param allDocuments The documents to rank
 	 * @param user The User to rank by
-	 * @return The topK ranked documents based on the strategy
+	 * @return The ranked documents based on the strategy
 	 * @author MVezina
 	 */
-	public List<Document> rankDocuments(List<Document> allDocuments, User user);
+	public default List<Document> rankDocuments(List<Document> allDocuments, User user)
+	{
+		return rankTopK(allDocuments, user, (allDocuments == null ? 0 : allDocuments.size()));
+	}
+
+	/**
+	 * Ranks only the best k documents from Best->Worst. Every document is
+	 * scored once and the best k are selected with a bounded heap (O(n log
+	 * k)). The documents are in the same order as the first k documents
+	 * returned by rankDocuments(..)
+	 * 
+	 * @param candidates The documents to rank
+	 * @param user The User to rank by
+	 * @param k The number of documents to return
+	 * @return The top k ranked documents based on the strategy
+	 * @author MVezina
+	 */
+	public default List<Document> rankTopK(List<Document> candidates, User user, int k)
+	{
+		if (candidates == null || candidates.isEmpty() || k <= 0)
+			return new ArrayList<>();
+
+		return TopKSelection.selectTopK(candidates, prepare(user), k);
+	}
 
 }
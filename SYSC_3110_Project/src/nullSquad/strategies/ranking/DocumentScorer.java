@@ -0,0 +1,24 @@
+package nullSquad.strategies.ranking;
+
+import nullSquad.filesharingsystem.document.Document;
+
+/**
+ * Scores documents for a single query. Created by
+ * DocumentRankingStrategy.prepare(..), which performs any work that is shared
+ * between all of the documents being ranked
+ * 
+ * @author MVezina
+ */
+@FunctionalInterface
+public interface DocumentScorer
+{
+	/**
+	 * Scores a document. Called exactly once for every (non-null) document
+	 * being ranked
+	 * 
+	 * @param doc The document to score
+	 * @return The score of the document (Greater = better)
+	 * @author MVezina
+	 */
+	public double score(Document doc);
+}
@@ -1,7 +1,5 @@
 package nullSquad.strategies.ranking;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import nullSquad.filesharingsystem.document.Document;
@@ -18,73 +16,53 @@ public class FollowSimilarityStrategy implements DocumentRankingStrategy
 	/* Serializable ID */
 	private static final long serialVersionUID = 1L;
 	
-	
-	private User user;
 
 	/**
-	 * @author Marc Tebo return list of documents ranked off of "like"
-	 *         similarity
+	 * @author Marc Tebo Scores documents based on "like" similarity: Each
+	 *         followed user that likes the document gives the document a point
 	 */
 	@Override
-	public List<Document> rankDocuments(List<Document> allDocuments, User user)
+	public DocumentScorer prepare(User user)
 	{
-		this.user = user;
-		List<Document> rankedDocuments = new ArrayList<Document>();
-
-		// We want to copy the documents into a new array list for modification
-		for (Document d : allDocuments)
-		{
-			rankedDocuments.add(d);
-		}
-
-		Collections.sort(rankedDocuments, this);
+		if (user == null)
+			return doc -> 0;
 
-		Collections.reverse(rankedDocuments);
+		// The followed users are kept in a hash-indexed list, so it can be
+		// used as a set directly
+		List<User> following = user.getFollowing();
 
-		return rankedDocuments;
+		return doc -> countFollowingLikers(doc, following);
 	}
 
 	/**
-	 * @author Marc Tebo Comparing documents based on "like" similarity return 1
-	 *         if doc1 is better, 0 if it is a tie, -1 if doc2 is better
+	 * Counts the followed users that like the document (The size of the
+	 * intersection of the followed users and the document's likers). The
+	 * smaller of the two is iterated and looked up in the other
 	 */
-	@Override
-	public int compare(Document doc1, Document doc2)
+	private int countFollowingLikers(Document doc, List<User> following)
 	{
-		if (doc1 != null && doc2 == null)
-		{
-			return 1;
-		}
+		List<User> likers = doc.getUserLikes();
+		int likesSimilarity = 0;
 
-		if (doc1 == null && doc2 == null)
+		// Users can only be looked up by their liked document IDs if the
+		// document has an ID
+		if (likers.size() <= following.size() || doc.getDocumentID() <= 0)
 		{
-			return 0;
-		}
-
-		if (doc1 == null & doc2 != null)
-		{
-			return -1;
-		}
-
-		int likesSimilarityDoc1 = 0;
-		int likesSimilarityDoc2 = 0;
-
-		for (User u : user.getFollowing())
-		{
-
-			// For each user following the current user, if the user likes
-			// the document, give the document a point
-
-			if (doc1.getUserLikes().contains(u))
+			for (User u : likers)
 			{
-				likesSimilarityDoc1++;
+				if (following.contains(u))
+					likesSimilarity++;
 			}
-			if (doc2.getUserLikes().contains(u))
+		}
+		else
+		{
+			for (User u : following)
 			{
-				likesSimilarityDoc2++;
+				if (u.getLikedDocumentIDs().get(doc.getDocumentID()))
+					likesSimilarity++;
 			}
 		}
 
-		return likesSimilarityDoc1 - likesSimilarityDoc2;
+		return likesSimilarity;
 	}
 }
@@ -1,12 +1,12 @@
 
 package nullSquad.strategies.ranking;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import nullSquad.filesharingsystem.document.Document;
 import nullSquad.filesharingsystem.users.User;
+import nullSquad.util.SparseBitSet;
 
 /**
  * Class that implements a follow similarity strategy
@@ -17,65 +17,54 @@ public class LikesSimilarityRankingStrategy implements DocumentRankingStrategy
 {
 	/* Serializable ID */
 	private static final long serialVersionUID = 1L;
-	
-	private User user;
 
 	@Override
-	public List<Document> rankDocuments(List<Document> allDocuments, User user)
+	public DocumentScorer prepare(User user)
 	{
-		this.user = user;
-		List<Document> rankedDocuments = new ArrayList<Document>();
-		
-		// We want to copy the documents into a new array list for modification
-		for(Document d : allDocuments)
-		{
-			rankedDocuments.add(d);
-		}
-		
-		Collections.sort(rankedDocuments, this);
-
-		Collections.reverse(rankedDocuments);
-
-		return rankedDocuments;
-	}
-
-	@Override
-	public int compare(Document doc1, Document doc2)
-	{
-
-		if (doc1 != null && doc2 == null)
-		{
-			return 1;
-		}
+		if (user == null)
+			return doc -> 0;
 
-		if ((doc1 == null && doc2 == null) || (doc1.equals(doc2)))
-		{
-			return 0;
-		}
+		SparseBitSet userLikedDocumentIDs = user.getLikedDocumentIDs();
 
-		if (doc1 == null & doc2 != null)
+		// Documents without an ID are not in the bitmaps. They can only be
+		// equal to other documents without an ID, so only these are compared
+		// one by one
+		Set<Document> userUnregisteredLikes = new HashSet<>();
+		if (user.getUnregisteredLikeCount() > 0)
 		{
-			return -1;
+			for (Document d : user.getLikedDocuments())
+			{
+				if (d.getDocumentID() <= 0)
+					userUnregisteredLikes.add(d);
+			}
 		}
 
-		return docLikeScore(doc1) - docLikeScore(doc2);
-
+		return doc -> docLikeScore(doc, userLikedDocumentIDs, userUnregisteredLikes);
 	}
 
-	private int docLikeScore(Document doc)
+	/**
+	 * The score of a document is the highest number of documents that are
+	 * liked by both the user and any one of the document's likers
+	 */
+	private int docLikeScore(Document doc, SparseBitSet userLikedDocumentIDs, Set<Document> userUnregisteredLikes)
 	{
 		int score;
 		int highestScore = 0;
 		for (User u : doc.getUserLikes())
 		{
-			score = 0;
-			for (Document aDoc : u.getLikedDocuments())
+			score = userLikedDocumentIDs.intersectionCount(u.getLikedDocumentIDs());
+
+			if (!userUnregisteredLikes.isEmpty() && u.getUnregisteredLikeCount() > 0)
 			{
-				if (user.getLikedDocuments().contains(aDoc))
+				for (Document aDoc : u.getLikedDocuments())
 				{
-					score += 1;
+					if (aDoc.getDocumentID() <= 0 && userUnregisteredLikes.contains(aDoc))
+					{
+						score += 1;
+					}
 				}
 			}
+
 			if (score > highestScore)
 			{
 				highestScore = score;
@@ -0,0 +1,471 @@
+package nullSquad.strategies.ranking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import nullSquad.filesharingsystem.users.User;
+
+/**
+ * Caches the friend neighbourhood (Users up to a maximum number of layers of
+ * friends away) of the users of a File Sharing System so that it does not
+ * have to be expanded again on every search. A neighbourhood is stored as a
+ * sorted array of user IDs with the distance of each user, and is keyed by
+ * the ID of its root user (No users are referenced by the cache).
+ *
+ * Cached neighbourhoods are invalidated when a follow is added or removed
+ * inside of them: Each user ID is indexed to the neighbourhoods it can change
+ * (The ones it is the root of, or is closer than the maximum distance in), so
+ * a follow only looks at the neighbourhoods of its two users. The least
+ * recently used neighbourhoods are evicted once the total number of cached
+ * users exceeds the capacity.
+ *
+ * @author MVezina
+ */
+public final class NeighbourhoodCache
+{
+	/* The default maximum number of users stored over all neighbourhoods */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	// Root User ID -> Neighbourhood (In least -> most recently used order)
+	private LinkedHashMap<Integer, Neighbourhood> neighbourhoods;
+	private int capacity;
+	private int size;
+
+	// User ID -> IDs of the roots of the neighbourhoods that a follow of the
+	// user changes
+	private Map<Integer, Set<Integer>> rootsByUser;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * Creates an empty cache (Each File Sharing System has its own)
+	 *
+	 * @author MVezina
+	 */
+	public NeighbourhoodCache()
+	{
+		neighbourhoods = new LinkedHashMap<>(16, 0.75f, true);
+		rootsByUser = new HashMap<>();
+		capacity = DEFAULT_CAPACITY;
+	}
+
+	/**
+	 * A cached neighbourhood. Immutable once created
+	 *
+	 * @author MVezina
+	 */
+	public static final class Neighbourhood
+	{
+		private final int rootID;
+		private final int maxDepth;
+
+		// Sorted user IDs and the distance of each user
+		private final int[] userIDs;
+		private final byte[] distances;
+
+		private Neighbourhood(int rootID, int maxDepth, int[] userIDs, byte[] distances)
+		{
+			this.rootID = rootID;
+			this.maxDepth = maxDepth;
+			this.userIDs = userIDs;
+			this.distances = distances;
+		}
+
+		/**
+		 * Creates a neighbourhood from the distances of the reached users.
+		 * Neighbourhoods are keyed by user ID, so they can only be created if
+		 * every user has been registered
+		 *
+		 * @param root The User the neighbourhood belongs to
+		 * @param maxDepth The maximum distance that was searched
+		 * @param friendDistances The distance of every reached user
+		 * @return The neighbourhood, or null if any of the users are not
+		 *         registered
+		 * @author MVezina
+		 */
+		public static Neighbourhood create(User root, int maxDepth, Map<User, Integer> friendDistances)
+		{
+			if (root == null || root.getUserID() <= 0)
+				return null;
+
+			long[] entries = new long[friendDistances.size()];
+			int i = 0;
+
+			for (Map.Entry<User, Integer> entry : friendDistances.entrySet())
+			{
+				int userID = entry.getKey().getUserID();
+
+				if (userID <= 0)
+					return null;
+
+				// Pack the ID and distance so that both are sorted together
+				entries[i++] = ((long) userID << 8) | entry.getValue();
+			}
+
+			return create(root, maxDepth, entries);
+		}
+
+		/**
+		 * Creates a neighbourhood from the IDs and distances of the reached
+		 * users
+		 *
+		 * @param root The User the neighbourhood belongs to
+		 * @param maxDepth The maximum distance that was searched
+		 * @param userIDs The IDs of the reached users
+		 * @param distances The distance of each reached user
+		 * @param count The number of reached users
+		 * @return The neighbourhood, or null if any of the users are not
+		 *         registered
+		 * @author MVezina
+		 */
+		public static Neighbourhood create(User root, int maxDepth, int[] userIDs, byte[] distances, int count)
+		{
+			if (root == null || root.getUserID() <= 0)
+				return null;
+
+			long[] entries = new long[count];
+
+			for (int i = 0; i < count; i++)
+			{
+				if (userIDs[i] <= 0)
+					return null;
+
+				entries[i] = ((long) userIDs[i] << 8) | distances[i];
+			}
+
+			return create(root, maxDepth, entries);
+		}
+
+		/**
+		 * Creates a neighbourhood from packed IDs and distances (ID << 8 |
+		 * distance)
+		 */
+		private static Neighbourhood create(User root, int maxDepth, long[] entries)
+		{
+			Arrays.sort(entries);
+
+			int[] userIDs = new int[entries.length];
+			byte[] distances = new byte[entries.length];
+
+			for (int i = 0; i < entries.length; i++)
+			{
+				userIDs[i] = (int) (entries[i] >>> 8);
+				distances[i] = (byte) entries[i];
+			}
+
+			return new Neighbourhood(root.getUserID(), maxDepth, userIDs, distances);
+		}
+
+		/**
+		 * @return The ID of the User the neighbourhood belongs to
+		 * @author MVezina
+		 */
+		public int getRootID()
+		{
+			return rootID;
+		}
+
+		/**
+		 * @param user The User to get the distance of
+		 * @return The distance of the user, or -1 if the user is not in the
+		 *         neighbourhood
+		 * @author MVezina
+		 */
+		public int getDistance(User user)
+		{
+			return getDistance(user.getUserID());
+		}
+
+		private int getDistance(int userID)
+		{
+			int index = Arrays.binarySearch(userIDs, userID);
+			return (index < 0 ? -1 : distances[index]);
+		}
+
+		/**
+		 * @return The number of users in the neighbourhood
+		 * @author MVezina
+		 */
+		public int size()
+		{
+			return userIDs.length;
+		}
+
+		/**
+		 * A follow of a user changes the neighbourhood if the user is the
+		 * root, or if the user is closer than the maximum distance (A user at
+		 * the maximum distance can not bring any other users into the
+		 * neighbourhood)
+		 */
+		private boolean isInner(int index)
+		{
+			return (userIDs[index] != rootID && distances[index] < maxDepth);
+		}
+	}
+
+	/**
+	 * Gets the cached neighbourhood of the user
+	 *
+	 * @param user The User to get the neighbourhood of
+	 * @return The neighbourhood, or null if it is not cached
+	 * @author MVezina
+	 */
+	public synchronized Neighbourhood get(User user)
+	{
+		Neighbourhood neighbourhood = (user == null ? null : neighbourhoods.get(user.getUserID()));
+
+		if (neighbourhood == null)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return neighbourhood;
+	}
+
+	/**
+	 * Caches the neighbourhood (Replacing any previous neighbourhood of the
+	 * same user) and evicts the least recently used neighbourhoods until the
+	 * cache is within capacity
+	 *
+	 * @param neighbourhood The neighbourhood to cache
+	 * @author MVezina
+	 */
+	public synchronized void put(Neighbourhood neighbourhood)
+	{
+		if (neighbourhood == null || neighbourhood.size() > capacity)
+			return;
+
+		Neighbourhood previous = neighbourhoods.put(neighbourhood.rootID, neighbourhood);
+		if (previous != null)
+			unindex(previous);
+
+		index(neighbourhood);
+		size += neighbourhood.size() - (previous == null ? 0 : previous.size());
+
+		evictToCapacity();
+	}
+
+	/**
+	 * Indexes the users that can change a neighbourhood
+	 */
+	private void index(Neighbourhood neighbourhood)
+	{
+		indexUser(neighbourhood.rootID, neighbourhood.rootID);
+
+		for (int i = 0; i < neighbourhood.userIDs.length; i++)
+		{
+			if (neighbourhood.isInner(i))
+				indexUser(neighbourhood.userIDs[i], neighbourhood.rootID);
+		}
+	}
+
+	private void indexUser(int userID, int rootID)
+	{
+		Set<Integer> roots = rootsByUser.get(userID);
+		if (roots == null)
+		{
+			roots = new HashSet<>();
+			rootsByUser.put(userID, roots);
+		}
+
+		roots.add(rootID);
+	}
+
+	/**
+	 * Removes a neighbourhood (that is no longer cached) from the index
+	 */
+	private void unindex(Neighbourhood neighbourhood)
+	{
+		unindexUser(neighbourhood.rootID, neighbourhood.rootID);
+
+		for (int i = 0; i < neighbourhood.userIDs.length; i++)
+		{
+			if (neighbourhood.isInner(i))
+				unindexUser(neighbourhood.userIDs[i], neighbourhood.rootID);
+		}
+	}
+
+	private void unindexUser(int userID, int rootID)
+	{
+		Set<Integer> roots = rootsByUser.get(userID);
+		if (roots == null)
+			return;
+
+		roots.remove(rootID);
+		if (roots.isEmpty())
+			rootsByUser.remove(userID);
+	}
+
+	/**
+	 * Invalidates every cached neighbourhood that is changed by a follow being
+	 * added or removed between the two users. Called by the users whenever
+	 * they gain or lose a follower
+	 *
+	 * @param follower The User that followed / unfollowed
+	 * @param followee The User that was followed / unfollowed
+	 * @author MVezina
+	 */
+	public synchronized void followChanged(User follower, User followee)
+	{
+		if (follower == null || followee == null || neighbourhoods.isEmpty())
+			return;
+
+		invalidateRoots(follower.getUserID());
+		invalidateRoots(followee.getUserID());
+	}
+
+	/**
+	 * Invalidates the neighbourhood of a user that was removed (Its ID can be
+	 * given out again). Its follows were removed first, so it is no longer in
+	 * any other neighbourhood
+	 *
+	 * @param user The removed User
+	 * @author MVezina
+	 */
+	public synchronized void userRemoved(User user)
+	{
+		if (user == null)
+			return;
+
+		Neighbourhood neighbourhood = neighbourhoods.remove(user.getUserID());
+		if (neighbourhood != null)
+		{
+			unindex(neighbourhood);
+			size -= neighbourhood.size();
+			invalidations++;
+		}
+	}
+
+	/**
+	 * Invalidates every neighbourhood that is changed by a follow of the user
+	 */
+	private void invalidateRoots(int userID)
+	{
+		Set<Integer> roots = rootsByUser.get(userID);
+		if (roots == null)
+			return;
+
+		for (Integer rootID : roots.toArray(new Integer[roots.size()]))
+		{
+			Neighbourhood neighbourhood = neighbourhoods.remove(rootID);
+			unindex(neighbourhood);
+			size -= neighbourhood.size();
+			invalidations++;
+		}
+	}
+
+	/**
+	 * Sets the maximum number of users stored over all neighbourhoods
+	 *
+	 * @param capacity The new capacity
+	 * @author MVezina
+	 */
+	public synchronized void setCapacity(int capacity)
+	{
+		if (capacity < 0)
+			return;
+
+		this.capacity = capacity;
+		evictToCapacity();
+	}
+
+	private void evictToCapacity()
+	{
+		Iterator<Neighbourhood> it = neighbourhoods.values().iterator();
+		while (size > capacity && it.hasNext())
+		{
+			Neighbourhood neighbourhood = it.next();
+			it.remove();
+			unindex(neighbourhood);
+			size -= neighbourhood.size();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes all cached neighbourhoods and resets the counters
+	 *
+	 * @author MVezina
+	 */
+	public synchronized void clear()
+	{
+		neighbourhoods.clear();
+		rootsByUser.clear();
+		size = 0;
+		hits = misses = evictions = invalidations = 0;
+	}
+
+	/**
+	 * @return The maximum number of users stored over all neighbourhoods
+	 * @author MVezina
+	 */
+	public synchronized int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return The number of users stored over all neighbourhoods
+	 * @author MVezina
+	 */
+	public synchronized int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return The number of cached neighbourhoods
+	 * @author MVezina
+	 */
+	public synchronized int getNeighbourhoodCount()
+	{
+		return neighbourhoods.size();
+	}
+
+	/**
+	 * @return The number of lookups that found a cached neighbourhood
+	 * @author MVezina
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return The number of lookups that did not find a cached neighbourhood
+	 * @author MVezina
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return The number of neighbourhoods evicted to stay within capacity
+	 * @author MVezina
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return The number of neighbourhoods invalidated by follow changes
+	 * @author MVezina
+	 */
+	public synchronized long getInvalidations()
+	{
+		return invalidations;
+	}
+
+}
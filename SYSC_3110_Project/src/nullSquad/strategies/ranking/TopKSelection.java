@@ -0,0 +1,139 @@
+package nullSquad.strategies.ranking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nullSquad.filesharingsystem.document.Document;
+
+/**
+ * Selects the best k documents using a bounded heap (O(n log k)) instead of
+ * sorting all of the documents. Every document is scored exactly once before
+ * the selection, the selection itself only compares the primitive scores
+ *
+ * @author MVezina
+ */
+final class TopKSelection
+{
+	private TopKSelection()
+	{
+	}
+
+	/**
+	 * Selects the best k documents. Documents that are ranked the same are
+	 * returned in the same order that a full sort would return them (The
+	 * document that occurs later in the candidates list first)
+	 *
+	 * @param candidates The documents to select from
+	 * @param scorer Scores the documents (Greater = better)
+	 * @param k The number of documents to select
+	 * @return The best k documents ranked from Best->Worst
+	 * @author MVezina
+	 */
+	static List<Document> selectTopK(List<Document> candidates, DocumentScorer scorer, int k)
+	{
+		if (candidates == null || candidates.isEmpty() || k <= 0)
+			return new ArrayList<>();
+
+		k = Math.min(k, candidates.size());
+
+		// Score every candidate once (null documents are always ranked last)
+		Document[] documents = candidates.toArray(new Document[candidates.size()]);
+		double[] scores = new double[documents.length];
+		for (int i = 0; i < documents.length; i++)
+		{
+			scores[i] = (documents[i] == null ? Double.NEGATIVE_INFINITY : scorer.score(documents[i]));
+		}
+
+		// Min-heap of candidate indices: The worst of the best k candidates is
+		// always at the root
+		int[] heap = new int[k];
+		int heapSize = 0;
+
+		for (int i = 0; i < documents.length; i++)
+		{
+			if (heapSize < k)
+			{
+				heap[heapSize] = i;
+				siftUp(heap, heapSize++, scores);
+			}
+			else if (isBetter(i, heap[0], scores))
+			{
+				// Replace the worst of the best candidates
+				heap[0] = i;
+				siftDown(heap, heapSize, scores);
+			}
+		}
+
+		// Remove the candidates from worst -> best and fill the list from the
+		// back so that the best document occurs first
+		Document[] rankedDocuments = new Document[heapSize];
+		while (heapSize > 0)
+		{
+			rankedDocuments[--heapSize] = documents[heap[0]];
+			heap[0] = heap[heapSize];
+			siftDown(heap, heapSize, scores);
+		}
+
+		return new ArrayList<>(Arrays.asList(rankedDocuments));
+	}
+
+	/**
+	 * @return Whether candidate i is ranked higher than candidate j. Ties are
+	 *         broken by the position of the candidate (Later = better)
+	 */
+	private static boolean isBetter(int i, int j, double[] scores)
+	{
+		int result = Double.compare(scores[i], scores[j]);
+		return (result != 0 ? result > 0 : i > j);
+	}
+
+	/**
+	 * Moves the candidate at the specified heap position up to its place
+	 */
+	private static void siftUp(int[] heap, int position, double[] scores)
+	{
+		int candidate = heap[position];
+
+		while (position > 0)
+		{
+			int parent = (position - 1) / 2;
+
+			if (!isBetter(heap[parent], candidate, scores))
+				break;
+
+			heap[position] = heap[parent];
+			position = parent;
+		}
+
+		heap[position] = candidate;
+	}
+
+	/**
+	 * Moves the candidate at the root of the heap down to its place
+	 */
+	private static void siftDown(int[] heap, int heapSize, double[] scores)
+	{
+		if (heapSize == 0)
+			return;
+
+		int candidate = heap[0];
+		int position = 0;
+
+		while (2 * position + 1 < heapSize)
+		{
+			// Find the worse of the two children
+			int child = 2 * position + 1;
+			if (child + 1 < heapSize && isBetter(heap[child], heap[child + 1], scores))
+				child++;
+
+			if (!isBetter(candidate, heap[child], scores))
+				break;
+
+			heap[position] = heap[child];
+			position = child;
+		}
+
+		heap[position] = candidate;
+	}
+}
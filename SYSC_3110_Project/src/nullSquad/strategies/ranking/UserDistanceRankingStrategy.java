@@ -1,9 +1,16 @@
 package nullSquad.strategies.ranking;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Queue;
+import java.util.function.ToIntFunction;
 
+import nullSquad.filesharingsystem.FollowGraph;
 import nullSquad.filesharingsystem.document.Document;
 import nullSquad.filesharingsystem.users.User;
 
@@ -18,176 +25,210 @@ public class UserDistanceRankingStrategy implements DocumentRankingStrategy
 	/* Serializable ID */
 	private static final long serialVersionUID = 1L;
 	
-	private User user;
 	private final int MAX_DEPTH_TO_SEARCH = 4;
 
 	@Override
-	public List<Document> rankDocuments(List<Document> allDocuments, User user)
+	public DocumentScorer prepare(User user)
 	{
-		// Set global User variable to the User passed in.
-		this.user = user;
+		// Without a user there are no friends to measure the distance to
+		if (user == null)
+			return doc -> 0;
 
-		// Copy the documents over to the new array to be ranked
-		List<Document> rankedDocuments = new ArrayList<>();
-		for (Document d : allDocuments)
+		// Neighbourhoods are cached by the system the user is registered on
+		NeighbourhoodCache cache = user.getNeighbourhoodCache();
+		NeighbourhoodCache.Neighbourhood neighbourhood = (cache == null ? null : cache.get(user));
+
+		if (neighbourhood == null)
 		{
-			rankedDocuments.add(d);
-		}
+			// Traverse the friend network once for the whole query (Through
+			// the compact follow graph if the user is in one)
+			FollowGraph graph = user.getFollowGraph();
+			if (graph != null)
+				neighbourhood = getFriendNeighbourhood(graph, user);
 
-		// Sort the top documents using the selected strategy as a comparator
-		Collections.sort(rankedDocuments, this);
+			if (neighbourhood == null)
+			{
+				Map<User, Integer> friendDistances = getFriendDistances(user);
+				neighbourhood = NeighbourhoodCache.Neighbourhood.create(user, MAX_DEPTH_TO_SEARCH, friendDistances);
 
-		// Since Collections.sort() sorts from worst -> greatest, we need to
-		// reverse the list
-		Collections.reverse(rankedDocuments);
+				// The neighbourhood can only be cached once all of the
+				// reached users are registered
+				if (neighbourhood == null)
+					return doc -> -getFriendDistance(u -> friendDistances.getOrDefault(u, -1), doc);
+			}
 
-		// Return the ranked documents
-		return rankedDocuments;
+			if (cache != null)
+				cache.put(neighbourhood);
+		}
+
+		// Documents liked by closer friends are ranked higher
+		NeighbourhoodCache.Neighbourhood friendNeighbourhood = neighbourhood;
+		return doc -> -getFriendDistance(friendNeighbourhood::getDistance, doc);
 	}
 
-	public int compare(Document doc1, Document doc2)
+	/**
+	 * Breadth-first search of the friend network (followers + following) of
+	 * the user, up to MAX_DEPTH_TO_SEARCH layers of friends. The user's own
+	 * friends are the sources of the search (distance 1). The user itself is
+	 * at a distance of 2 if it has any friends (a friend of a friend)
+	 * 
+	 * @param user The User to search from
+	 * @return The distance of every reached user
+	 * @author MVezina
+	 */
+	private Map<User, Integer> getFriendDistances(User user)
 	{
-		// If both are null, they are ranked the same
-		if (doc1 == null && doc2 == null)
-			return 0;
+		Map<User, Integer> friendDistances = new IdentityHashMap<>();
+		Queue<User> toVisit = new ArrayDeque<>();
 
-		// If doc1 is null and doc2 isnt, doc2 is ranked higher
-		if (doc1 == null && doc2 != null)
-			return -1;
+		if (user.getFollowers().isEmpty() && user.getFollowing().isEmpty())
+			return friendDistances;
 
-		// If doc1 isnt null and doc2 is, doc1 is ranked higher
-		if (doc1 != null && doc2 == null)
-			return 1;
+		friendDistances.put(user, 2);
+		visitFriends(user, 1, friendDistances, toVisit);
 
-		// Compare documents in terms of immediacy of friends
-		// Need to call getFriendDistance() on both documents.
-		// If using the recursive solution, use arguments:
-		// user
-		// document
-		// depth (should be 1)
+		while (!toVisit.isEmpty())
+		{
+			User current = toVisit.remove();
+			int depth = friendDistances.get(current);
+
+			// Users past the maximum depth are never looked at
+			if (depth < MAX_DEPTH_TO_SEARCH)
+				visitFriends(current, depth + 1, friendDistances, toVisit);
+		}
 
-		int doc1_val = MAX_DEPTH_TO_SEARCH, doc2_val = MAX_DEPTH_TO_SEARCH;
+		return friendDistances;
+	}
 
-		doc1_val = getFriendDistance(user, doc1, 1);
-		doc2_val = getFriendDistance(user, doc2, 1);
+	/**
+	 * The same breadth-first search as getFriendDistances(User), over the
+	 * vertices of the compact follow graph. The graph only holds registered
+	 * users, so unregistered friends are not reached
+	 * 
+	 * @param graph The follow graph of the user
+	 * @param user The User to search from
+	 * @return The neighbourhood of the user, or null if any of the reached
+	 *         users do not have an ID
+	 * @author MVezina
+	 */
+	private NeighbourhoodCache.Neighbourhood getFriendNeighbourhood(FollowGraph graph, User user)
+	{
+		int root = user.getFollowGraphVertex();
+		ReachedVertices reached = new ReachedVertices();
 
-		if (doc1_val < doc2_val)
-		{
-			return 1;
-		}
-		if (doc1_val > doc2_val)
+		if (graph.getFollowerCount(root) > 0 || graph.getFollowingCount(root) > 0)
 		{
-			return -1;
+			reached.add(root, 2);
+			reached.visit(graph.followers(root), 1);
+			reached.visit(graph.following(root), 1);
+
+			// The reached vertices are visited in the order they were reached
+			for (int i = 1; i < reached.count; i++)
+			{
+				int vertex = reached.vertices[i];
+				int depth = reached.distances[i];
+
+				if (depth < MAX_DEPTH_TO_SEARCH)
+				{
+					reached.visit(graph.followers(vertex), depth + 1);
+					reached.visit(graph.following(vertex), depth + 1);
+				}
+			}
 		}
-		else
+
+		int[] userIDs = new int[reached.count];
+		for (int i = 0; i < reached.count; i++)
 		{
-			return 0;
+			userIDs[i] = graph.getUser(reached.vertices[i]).getUserID();
 		}
+
+		return NeighbourhoodCache.Neighbourhood.create(user, MAX_DEPTH_TO_SEARCH, userIDs, reached.distances, reached.count);
 	}
 
 	/**
-	 * Recursive solution Checks up to the MAX_DEPTH_TO_SEARCH pre: given user
-	 * and document, as well as current ranking (this is important as the
-	 * recursions gets deeper so that it knows when it should stop looking)
-	 * post: returns the number of layers of friends before one is found that
-	 * likes the document If none is found, then the final return value will be
-	 * MAX_DEPTH_TO_SEARCH + 1.
+	 * Records the distance of all friends of the user that have not been
+	 * reached yet and queues them to be visited
 	 */
-	private int getFriendDistance(User user, Document doc, int depth)
+	private void visitFriends(User user, int depth, Map<User, Integer> friendDistances, Queue<User> toVisit)
 	{
-		int minDepth = MAX_DEPTH_TO_SEARCH; // i.e. starts off greater than all
-											// other possible depths
-		int tempDepth = 0; // reset with every recursive call at a specific
-							// depth
-
-		// Base Case: One of this user's friends likes the document
-		if (docLikedByFriend(user, doc))
-		{
-			return 1; // return 1 to represent a distance of one friend
-		}
+		visitUsers(user.getFollowers(), depth, friendDistances, toVisit);
+		visitUsers(user.getFollowing(), depth, friendDistances, toVisit);
+	}
 
-		// If none of this user's friends like the document.
-		else
+	private void visitUsers(List<User> users, int depth, Map<User, Integer> friendDistances, Queue<User> toVisit)
+	{
+		for (User u : users)
 		{
-			if (depth < MAX_DEPTH_TO_SEARCH)
-			{ // if we are at less than the maximum allowable depth
-				for (User u : getFriendsList(user))
-				{ // for every user in this user's friend list
-					tempDepth = getFriendDistance(u, doc, depth + 1); // get the
-																		// distance
-																		// to a
-																		// liker
-																		// of
-																		// the
-																		// document
-																		// pass
-																		// depth+1
-																		// to
-																		// indicate
-																		// another
-																		// layer
-																		// of
-																		// depth,
-																		// so
-																		// that
-																		// the
-																		// recursion
-																		// does
-																		// not
-																		// continue
-																		// forever.
-					if (tempDepth < minDepth)
-					{ // if the depth for this user is less than the previous
-						// minimum,
-						minDepth = tempDepth; // set it as the new minimum.
-					}
-				}
-				return minDepth + 1; // return the minimum depth obtained
-										// +1 to factor in the current level of
-										// depth.
-			}
-			else
+			if (!friendDistances.containsKey(u))
 			{
-				// if the depth is at the max searchable, add 1 for this depth
-				// and one for the
-				// next depth which will not be searched.
-				// Final return value should end up being MAX_DEPTH_TO_SEARCH +
-				// 1
-
-				return 2;
+				friendDistances.put(u, depth);
+				toVisit.add(u);
 			}
 		}
 	}
 
 	/**
-	 * Merges Followers/Following to form friends list
+	 * The distance of a document is the distance of its closest liker. If
+	 * none of its likers are within MAX_DEPTH_TO_SEARCH layers of friends,
+	 * the distance is MAX_DEPTH_TO_SEARCH + 1.
 	 * 
-	 * @param user The User's List of Friends to get
-	 * @return The User's List of Friends
-	 * @author MVezina
+	 * @param friendDistance The distance of a user from the searching user
+	 *            (-1 if the user was not reached)
+	 * @param doc The document to get the distance of
+	 * @return The number of layers of friends before one is found that likes
+	 *         the document
 	 */
-	private List<User> getFriendsList(User user)
+	private int getFriendDistance(ToIntFunction<User> friendDistance, Document doc)
 	{
-		// Merge followers and following to form friends list
-		List<User> friends = new ArrayList<>(user.getFollowers());
-		friends.addAll(user.getFollowing());
+		int minDepth = MAX_DEPTH_TO_SEARCH + 1;
+
+		for (User u : doc.getUserLikes())
+		{
+			int depth = friendDistance.applyAsInt(u);
+
+			if (depth >= 0 && depth < minDepth)
+				minDepth = depth;
+		}
 
-		return friends;
+		return minDepth;
 	}
 
-	private boolean docLikedByFriend(User userTemp, Document doc)
+	/**
+	 * The vertices reached by a search of the follow graph (in the order they
+	 * were reached) and the distance of each vertex
+	 * 
+	 * @author MVezina
+	 */
+	private static final class ReachedVertices
 	{
-		for (User u : getFriendsList(userTemp))
+		private final BitSet reached = new BitSet();
+		private int[] vertices = new int[16];
+		private byte[] distances = new byte[16];
+		private int count;
+
+		private void visit(PrimitiveIterator.OfInt friends, int distance)
 		{
-			if (u.getLikedDocuments().contains(doc))
+			while (friends.hasNext())
 			{
-				return true;
+				int vertex = friends.nextInt();
+
+				if (!reached.get(vertex))
+					add(vertex, distance);
 			}
 		}
 
-		return false;
-	}
-
+		private void add(int vertex, int distance)
+		{
+			if (count == vertices.length)
+			{
+				vertices = Arrays.copyOf(vertices, count * 2);
+				distances = Arrays.copyOf(distances, count * 2);
+			}
 
+			reached.set(vertex);
+			vertices[count] = vertex;
+			distances[count++] = (byte) distance;
+		}
+	}
 
 }
@@ -6,14 +6,18 @@ package nullSquad.tests;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
 import nullSquad.filesharingsystem.users.Producer;
 import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.strategies.ranking.DocumentScorer;
 
 /**
  * A Class to test the integrity of all implemented tests included in the
@@ -61,4 +65,62 @@ public class DocumentRankingStrategyTest
 
 	}
 
+	/**
+	 * Ensure the top k documents of every strategy match the first k
+	 * documents of the fully ranked list
+	 * 
+	 * @author MVezina
+	 */
+	@Test
+	public void testRankTopK()
+	{
+		// Give the documents a different number of likes
+		new Consumer("Consumer1", tag).likeDocument(documents.get(1));
+		new Consumer("Consumer2", tag).likeDocument(documents.get(1));
+		new Consumer("Consumer3", tag).likeDocument(documents.get(2));
+		documents.add(new Document("Doc4", tag, user1));
+
+		for (DocumentRankingStrategy.Strategy strategy : DocumentRankingStrategy.Strategy.values())
+		{
+			List<Document> rankedDocuments = strategy.getStrategy().rankDocuments(documents, user1);
+
+			for (int k = 0; k <= documents.size(); k++)
+			{
+				assertEquals(rankedDocuments.subList(0, k), strategy.getStrategy().rankTopK(documents, user1, k));
+			}
+
+			// Asking for more documents than there are returns all documents
+			assertEquals(rankedDocuments, strategy.getStrategy().rankTopK(documents, user1, documents.size() + 1));
+		}
+	}
+
+	/**
+	 * Ensure every strategy scores each document once per query
+	 * 
+	 * @author MVezina
+	 */
+	@Test
+	public void testPrepareScoresOncePerDocument()
+	{
+		for (DocumentRankingStrategy.Strategy strategy : DocumentRankingStrategy.Strategy.values())
+		{
+			DocumentScorer scorer = strategy.getStrategy().prepare(user1);
+			assertNotNull(scorer);
+
+			// Count the number of times each document is scored
+			Map<Document, Integer> timesScored = new IdentityHashMap<>();
+			DocumentRankingStrategy countingStrategy = user -> doc -> {
+				timesScored.merge(doc, 1, Integer::sum);
+				return scorer.score(doc);
+			};
+
+			assertEquals(strategy.getStrategy().rankDocuments(documents, user1), countingStrategy.rankDocuments(documents, user1));
+
+			for (Document d : documents)
+			{
+				assertEquals(Integer.valueOf(1), timesScored.get(d));
+			}
+		}
+	}
+
 }
@@ -184,5 +184,33 @@ public class DocumentTest {
 		doc.setDocumentID(12345);
 		assertEquals(doc.getDocumentID(),12345);
 	}
-
+	
+	/**
+	 * @author MVezina
+	 * Test case for the running sum of the likers' followers
+	 */
+	@Test
+	public void testGetLikerFollowerSum() {
+		Consumer cons2 = new Consumer("TestConsumer2","TEST");
+		cons.likeDocument(doc);
+		assertEquals(0, doc.getLikerFollowerSum());
+		
+		// Followers gained / lost by likers are counted
+		prod.followUser(cons);
+		cons2.followUser(cons);
+		assertEquals(2, doc.getLikerFollowerSum());
+		
+		cons2.likeDocument(doc);
+		prod.followUser(cons2);
+		assertEquals(3, doc.getLikerFollowerSum());
+		
+		cons2.unfollowUser(cons);
+		assertEquals(2, doc.getLikerFollowerSum());
+		
+		// Followers of users who no longer like the document are not counted
+		cons.unlikeDocument(doc);
+		assertEquals(1, doc.getLikerFollowerSum());
+		cons2.followUser(cons);
+		assertEquals(1, doc.getLikerFollowerSum());
+	}
 }
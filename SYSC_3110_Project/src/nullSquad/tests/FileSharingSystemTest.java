@@ -3,6 +3,7 @@ package nullSquad.tests;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 //import java.util.ArrayList;
@@ -16,6 +17,7 @@ import org.junit.Test;
 import nullSquad.filesharingsystem.users.*;
 import nullSquad.filesharingsystem.document.*;
 import nullSquad.filesharingsystem.*;
+import nullSquad.strategies.payoff.ProducerPayoffStrategy;
 
 public class FileSharingSystemTest {
 
@@ -104,6 +106,130 @@ public class FileSharingSystemTest {
 		
 	}
 
+	@Test
+	public void testSearchTagIndex() {
+		assertTrue(network.addDocument(docA));
+		assertTrue(network.addDocument(docB));
+		assertTrue(network.addDocument(docC));
+		assertTrue(network.addDocument(docE));
+		
+		// Matching tag documents are returned before filler documents
+		List<Document> results = network.search(consumer1, 4);
+		assertEquals(4, results.size());
+		assertEquals(programmingTag, results.get(0).getTag());
+		assertEquals(programmingTag, results.get(1).getTag());
+		assertTrue(!programmingTag.equals(results.get(2).getTag()));
+		assertTrue(!programmingTag.equals(results.get(3).getTag()));
+		
+		// Removed documents are no longer returned for their tag
+		assertTrue(network.removeDocument(docA));
+		results = network.search(consumer1, 1);
+		assertEquals(1, results.size());
+		assertEquals(docE, results.get(0));
+	}
+
+	@Test
+	public void testSearchByPopularity() {
+		assertTrue(network.addDocument(docA));
+		assertTrue(network.addDocument(docB));
+		assertTrue(network.addDocument(docC));
+		assertTrue(network.addDocument(docD));
+		assertTrue(network.addDocument(docE));
+		
+		// docB already has 1 like
+		Consumer consumer2 = new Consumer("Jane", musicTag);
+		consumer2.likeDocument(docA);
+		consumer2.likeDocument(docD);
+		consumer1.likeDocument(docD);
+		
+		// Most popular documents with a matching tag first, then the most
+		// popular filler documents
+		List<Document> results = network.search(consumer1, 4);
+		assertEquals(docA, results.get(0));
+		assertEquals(docE, results.get(1));
+		assertEquals(docD, results.get(2));
+		assertEquals(docB, results.get(3));
+		
+		// The order is updated when documents are liked / unliked
+		consumer1.likeDocument(docE);
+		consumer1.unlikeDocument(docD);
+		consumer2.unlikeDocument(docD);
+		results = network.search(consumer1, 4);
+		assertEquals(docE, results.get(0));
+		assertEquals(docA, results.get(1));
+		assertEquals(docB, results.get(2));
+		assertEquals(docD, results.get(3));
+		
+		// The same results as ranking with the strategy
+		List<Document> programmingDocs = new ArrayList<>();
+		programmingDocs.add(docA);
+		programmingDocs.add(docE);
+		assertEquals(consumer1.rankDocuments(programmingDocs), network.search(consumer1, 2));
+	}
+
+	@Test
+	public void testRefreshProducerPayoffs() {
+		// Incremental strategies are calculated every time they are called
+		final int[] calculations = new int[1];
+		ProducerPayoffStrategy countingStrategy = new ProducerPayoffStrategy() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public int producerPayoffStrategy(Producer prod) {
+				return ++calculations[0];
+			}
+
+			@Override
+			public boolean isIncremental() {
+				return true;
+			}
+		};
+		Producer producer2 = new Producer(countingStrategy, "Joe", programmingTag);
+		assertTrue(network.addDocument(new Document("doc1", programmingTag, producer2)));
+		assertTrue(network.addDocument(new Document("doc2", programmingTag, producer2)));
+		assertTrue(network.addDocument(new Document("doc3", programmingTag, producer2)));
+		
+		// The producer is only refreshed once per search
+		assertEquals(3, network.search(consumer1, 3).size());
+		assertEquals(1, calculations[0]);
+		
+		// Deferred refreshes happen once, no matter how many searches
+		network.setDeferPayoffRefresh(true);
+		network.search(consumer1, 3);
+		network.search(consumer1, 2);
+		assertEquals(1, calculations[0]);
+		
+		network.refreshProducerPayoffs();
+		assertEquals(2, calculations[0]);
+		network.refreshProducerPayoffs();
+		assertEquals(2, calculations[0]);
+	}
+
+	@Test
+	public void testTakeChangedPayoffs() {
+		network.setPayoffTracking(true);
+		Consumer consumer2 = new Consumer("Jane", programmingTag);
+		Producer producer2 = new Producer("Joe", programmingTag);
+		consumer2.registerUser(network);
+		producer2.registerUser(network);
+		
+		// New users are taken once
+		assertEquals(2, network.takeChangedPayoffs().size());
+		assertTrue(network.takeChangedPayoffs().isEmpty());
+		
+		// Only the payoff of the followed producer changes
+		consumer2.followUser(producer2);
+		List<User> changedUsers = network.takeChangedPayoffs();
+		assertEquals(1, changedUsers.size());
+		assertSame(producer2, changedUsers.get(0));
+		
+		// The steps that were not recorded carry the previous payoff forward
+		producer2.addIterationPayoff(3);
+		assertEquals(4, producer2.getPayoffHistory().size());
+		assertEquals(0, producer2.getPayoffHistory().getPayoff(2));
+		assertEquals(2, producer2.getPayoffHistory().getPayoff(3));
+	}
+
 	@Test
 	public void testAddDocument() {
 		assertTrue(network.addDocument(docA));
@@ -150,6 +276,123 @@ public class FileSharingSystemTest {
 		assertTrue(!network.getUsers().contains(producer1));
 	}
 	
+	@Test
+	public void testRemovalKeepsOrder() {
+		User consumer2 = new Consumer("Jane", bookTag);
+		User consumer3 = new Consumer("Joe", musicTag);
+		consumer1.registerUser(network);
+		producer1.registerUser(network);
+		consumer2.registerUser(network);
+		consumer3.registerUser(network);
+		assertTrue(network.addDocument(docA));
+		assertTrue(network.addDocument(docC));
+		assertTrue(network.addDocument(docD));
+		assertTrue(network.addDocument(docE));
+		
+		// The users / documents after a removed one keep their order
+		network.deactivateUser(consumer1);
+		network.removeDocument(docC);
+		assertEquals(Arrays.asList(producer1, consumer2, consumer3), network.getUsers());
+		assertEquals(Arrays.asList(docA, docD, docE), network.getAllDocuments());
+		
+		// New users / documents are added at the end
+		User consumer4 = new Consumer("Jill", sportsTag);
+		consumer4.registerUser(network);
+		assertTrue(network.addDocument(docB));
+		assertEquals(consumer4, network.getUsers().get(3));
+		assertEquals(docB, network.getAllDocuments().get(3));
+	}
+	
+	/**
+	 * Ensure the unlikes and unfollows made during a recorded step are undone
+	 * and redone
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testUndoUnlikeAndUnfollow() {
+		User consumer2 = new Consumer("Jane", bookTag);
+		consumer1.registerUser(network);
+		producer1.registerUser(network);
+		consumer2.registerUser(network);
+		assertTrue(network.addDocument(docB));
+		consumer1.followUser(producer1);
+		consumer2.followUser(consumer1);
+		
+		UndoJournal journal = new UndoJournal();
+		network.setUndoJournal(journal);
+		journal.beginStep();
+		consumer1.unlikeDocument(docB);
+		consumer1.unfollowUser(producer1);
+		consumer2.unfollowUser(consumer1);
+		UndoJournal.Step step = journal.endStep();
+		
+		step.undo();
+		assertTrue(consumer1.getLikedDocuments().contains(docB));
+		assertTrue(docB.getUserLikes().contains(consumer1));
+		assertTrue(consumer1.getFollowing().contains(producer1));
+		assertTrue(producer1.getFollowers().contains(consumer1));
+		assertTrue(consumer2.getFollowing().contains(consumer1));
+		assertTrue(consumer1.getFollowers().contains(consumer2));
+		
+		step.redo();
+		assertFalse(consumer1.getLikedDocuments().contains(docB));
+		assertFalse(docB.getUserLikes().contains(consumer1));
+		assertFalse(consumer1.getFollowing().contains(producer1));
+		assertFalse(producer1.getFollowers().contains(consumer1));
+		assertFalse(consumer2.getFollowing().contains(consumer1));
+		assertFalse(consumer1.getFollowers().contains(consumer2));
+	}
+	
+	@Test
+	public void testGetUserAndDocument() {
+		consumer1.registerUser(network);
+		producer1.registerUser(network);
+		assertTrue(network.addDocument(docA));
+		
+		assertEquals(consumer1, network.getUser(consumer1.getUserID()));
+		assertEquals(producer1, network.getUser(producer1.getUserID()));
+		assertEquals(docA, network.getDocument(docA.getDocumentID()));
+		
+		// Users cannot be registered twice
+		assertEquals(-1, network.registerUser(consumer1));
+		
+		network.deactivateUser(consumer1);
+		network.removeDocument(docA);
+		assertNull(network.getUser(consumer1.getUserID()));
+		assertNull(network.getDocument(docA.getDocumentID()));
+		assertEquals(producer1, network.getUser(producer1.getUserID()));
+	}
+	
+	@Test
+	public void testFileSharingSystemListener() {
+		final List<FileSharingSystemEvent> events = new ArrayList<>();
+		network.addFileSharingSystemListener(e -> events.add(e));
+		
+		consumer1.registerUser(network);
+		assertTrue(network.addDocument(docA));
+		assertTrue(network.addDocument(docB));
+		assertTrue(network.removeDocument(docB));
+		
+		// Changes are only delivered once flushed (as one batch)
+		assertTrue(events.isEmpty());
+		network.flushChanges();
+		assertEquals(1, events.size());
+		assertEquals(1, events.get(0).getAddedUsers().size());
+		assertEquals(1, events.get(0).getAddedDocuments().size());
+		assertEquals(docA, events.get(0).getAddedDocuments().get(0));
+		assertTrue(events.get(0).getRemovedDocuments().isEmpty());
+		
+		// Nothing to deliver
+		network.flushChanges();
+		assertEquals(1, events.size());
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testGetUsersReadOnly() {
+		network.getUsers().add(consumer1);
+	}
+	
 	@Test
 	public void testAddTag(){
 		String tag1 = "Test";
@@ -0,0 +1,129 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.FollowGraph;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.strategies.ranking.UserDistanceRankingStrategy;
+
+/**
+ * Tests the compact follow graph of the File Sharing System
+ *
+ * @author MVezina
+ */
+public class FollowGraphTest
+{
+	private FileSharingSystem fileSharingSystem;
+	private Consumer consumer1, consumer2, consumer3;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		List<String> tags = new ArrayList<>();
+		tags.add("Gaming");
+		fileSharingSystem = new FileSharingSystem(tags);
+
+		consumer1 = new Consumer("CONSUMER1", "Gaming");
+		consumer2 = new Consumer("CONSUMER2", "Gaming");
+		consumer3 = new Consumer("CONSUMER3", "Gaming");
+
+		consumer1.registerUser(fileSharingSystem);
+		consumer2.registerUser(fileSharingSystem);
+		consumer3.registerUser(fileSharingSystem);
+
+		consumer1.followUser(consumer2);
+		consumer3.followUser(consumer2);
+	}
+
+	/**
+	 * Ensure the graph is built from the existing follows and kept up to date
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testFollows()
+	{
+		assertNull(fileSharingSystem.getFollowGraph());
+		fileSharingSystem.setFollowGraphEnabled(true);
+
+		FollowGraph graph = fileSharingSystem.getFollowGraph();
+		int vertex1 = consumer1.getFollowGraphVertex();
+		int vertex2 = consumer2.getFollowGraphVertex();
+		int vertex3 = consumer3.getFollowGraphVertex();
+
+		assertSame(graph, consumer1.getFollowGraph());
+		assertEquals(3, graph.getUserCount());
+		assertEquals(2, graph.getFollowCount());
+		assertEquals(2, graph.getFollowerCount(vertex2));
+		assertTrue(graph.isFollowing(vertex1, vertex2));
+		assertFalse(graph.isFollowing(vertex2, vertex1));
+
+		// Followed after the graph was built (Pending until compacted)
+		consumer2.followUser(consumer1);
+		consumer3.unfollowUser(consumer2);
+		assertEquals(2, graph.getPendingChanges());
+		assertTrue(graph.isFollowing(vertex2, vertex1));
+		assertFalse(graph.isFollowing(vertex3, vertex2));
+
+		graph.compact();
+		assertEquals(0, graph.getPendingChanges());
+		assertEquals(2, graph.getFollowCount());
+
+		PrimitiveIterator.OfInt followers = graph.followers(vertex2);
+		assertEquals(vertex1, followers.nextInt());
+		assertFalse(followers.hasNext());
+
+		// Removing a user removes its follows
+		fileSharingSystem.deactivateUser(consumer1);
+		assertNull(consumer1.getFollowGraph());
+		assertEquals(0, graph.getFollowCount());
+		assertEquals(2, graph.getUserCount());
+
+		fileSharingSystem.setFollowGraphEnabled(false);
+		assertNull(consumer2.getFollowGraph());
+	}
+
+	/**
+	 * Ensure the User Distance strategy ranks the same through the graph
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testUserDistance()
+	{
+		Producer producer = new Producer("PRODUCER", "Gaming");
+		Document doc1 = new Document("Doc1", "Gaming", producer);
+		Document doc2 = new Document("Doc2", "Gaming", producer);
+		producer.registerUser(fileSharingSystem);
+		fileSharingSystem.addDocument(doc1);
+		fileSharingSystem.addDocument(doc2);
+
+		// consumer1 ------ consumer2 ------ consumer3 ------ producer
+		consumer3.followUser(producer);
+		producer.likeDocument(doc1);
+		consumer3.likeDocument(doc2);
+
+		List<Document> documents = new ArrayList<>();
+		documents.add(doc1);
+		documents.add(doc2);
+
+		UserDistanceRankingStrategy strategy = new UserDistanceRankingStrategy();
+		List<Document> ranked = strategy.rankDocuments(documents, consumer1);
+
+		fileSharingSystem.getNeighbourhoodCache().clear();
+		fileSharingSystem.setFollowGraphEnabled(true);
+		assertEquals(ranked, strategy.rankDocuments(documents, consumer1));
+		assertEquals(doc2, ranked.get(0));
+		assertEquals(3, fileSharingSystem.getNeighbourhoodCache().get(consumer1).getDistance(producer));
+	}
+}
@@ -65,4 +65,33 @@ public class FollowSimilarityStrategyTest {
 		assertTrue(rankedDocs.get(2).equals(doc2));
 	}
 
+	/**
+	 * Ensure the ranking is the same when the documents have more likers
+	 * than the user follows
+	 * 
+	 * @author MVezina
+	 */
+	@Test
+	public void testRankDocumentsWithMoreLikers() {
+		doc1.setDocumentID(1);
+		doc2.setDocumentID(2);
+		doc3.setDocumentID(3);
+
+		// con3 follows 3 users, doc2 is liked by 4 users (only con1 is
+		// followed), doc1 is liked by con1 and con2
+		Consumer con5 = new Consumer("Consumer5", "TEST");
+		Consumer con6 = new Consumer("Consumer6", "TEST");
+		con1.likeDocument(doc2);
+		con5.likeDocument(doc2);
+		con6.likeDocument(doc2);
+		con4.likeDocument(doc1);
+
+		List<Document> rankedDocs = (new FollowSimilarityStrategy().rankDocuments(docs, con3));
+
+		// doc1 and doc3 are liked by con1 and con4 (doc3 occurs later)
+		assertEquals(doc3, rankedDocs.get(0));
+		assertEquals(doc1, rankedDocs.get(1));
+		assertEquals(doc2, rankedDocs.get(2));
+	}
+
 }
@@ -0,0 +1,155 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.strategies.ranking.NeighbourhoodCache;
+import nullSquad.strategies.ranking.UserDistanceRankingStrategy;
+
+/**
+ * Tests the caching of friend neighbourhoods used by the User Distance
+ * strategy
+ *
+ * @author MVezina
+ */
+public class NeighbourhoodCacheTest
+{
+	private FileSharingSystem fileSharingSystem;
+	private NeighbourhoodCache cache;
+	private UserDistanceRankingStrategy strategy;
+	private Consumer consumer1, consumer2, consumer3, consumer4;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		List<String> tags = new ArrayList<>();
+		tags.add("Gaming");
+		fileSharingSystem = new FileSharingSystem(tags);
+
+		consumer1 = new Consumer("CONSUMER1", "Gaming");
+		consumer2 = new Consumer("CONSUMER2", "Gaming");
+		consumer3 = new Consumer("CONSUMER3", "Gaming");
+		consumer4 = new Consumer("CONSUMER4", "Gaming");
+
+		// Neighbourhoods are only cached for registered users
+		consumer1.registerUser(fileSharingSystem);
+		consumer2.registerUser(fileSharingSystem);
+		consumer3.registerUser(fileSharingSystem);
+		consumer4.registerUser(fileSharingSystem);
+
+		// consumer1 ------ consumer2 ------ consumer3
+		consumer1.followUser(consumer2);
+		consumer2.followUser(consumer3);
+
+		strategy = new UserDistanceRankingStrategy();
+		cache = fileSharingSystem.getNeighbourhoodCache();
+	}
+
+	/**
+	 * Ensure the neighbourhood is only expanded on the first search
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testHitsAndMisses()
+	{
+		strategy.prepare(consumer1);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		strategy.prepare(consumer1);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		NeighbourhoodCache.Neighbourhood neighbourhood = cache.get(consumer1);
+		assertEquals(1, neighbourhood.getDistance(consumer2));
+		assertEquals(2, neighbourhood.getDistance(consumer3));
+		assertEquals(-1, neighbourhood.getDistance(consumer4));
+	}
+
+	/**
+	 * Ensure only the neighbourhoods containing a changed follow are
+	 * invalidated
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testFollowInvalidation()
+	{
+		strategy.prepare(consumer1);
+		strategy.prepare(consumer4);
+		assertEquals(2, cache.getNeighbourhoodCount());
+
+		// consumer2 is in the neighbourhood of consumer1, but not consumer4
+		consumer2.unfollowUser(consumer3);
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(1, cache.getNeighbourhoodCount());
+		assertNull(cache.get(consumer1));
+		assertNotNull(cache.get(consumer4));
+
+		strategy.prepare(consumer1);
+		assertEquals(-1, cache.get(consumer1).getDistance(consumer3));
+	}
+
+	/**
+	 * Ensure the least recently used neighbourhoods are evicted
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testEviction()
+	{
+		strategy.prepare(consumer1);
+		strategy.prepare(consumer2);
+		strategy.prepare(consumer1);
+
+		// Each neighbourhood has 3 users (consumer1, consumer2, consumer3)
+		assertEquals(6, cache.getSize());
+
+		cache.setCapacity(3);
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get(consumer2));
+		assertNotNull(cache.get(consumer1));
+	}
+
+	/**
+	 * Ensure each system caches the neighbourhoods of its own users, and that
+	 * a removed user's neighbourhood is dropped
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testCachePerSystem()
+	{
+		List<String> tags = new ArrayList<>();
+		tags.add("Gaming");
+		FileSharingSystem otherSystem = new FileSharingSystem(tags);
+
+		Consumer otherConsumer = new Consumer("OTHER", "Gaming");
+		Consumer otherFriend = new Consumer("OTHERFRIEND", "Gaming");
+		otherConsumer.registerUser(otherSystem);
+		otherFriend.registerUser(otherSystem);
+		otherConsumer.followUser(otherFriend);
+
+		strategy.prepare(consumer1);
+		strategy.prepare(otherConsumer);
+		assertEquals(1, cache.getNeighbourhoodCount());
+		assertEquals(1, otherSystem.getNeighbourhoodCache().getNeighbourhoodCount());
+
+		// consumer4 has no friends, but its neighbourhood is still cached
+		strategy.prepare(consumer4);
+		assertEquals(2, cache.getNeighbourhoodCount());
+
+		fileSharingSystem.deactivateUser(consumer4);
+		assertNull(consumer4.getNeighbourhoodCache());
+		assertEquals(1, cache.getNeighbourhoodCount());
+		assertNotNull(cache.get(consumer1));
+	}
+}
@@ -0,0 +1,135 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.util.OrderedIdentitySet;
+
+/**
+ * Tests the ordered identity set used for the like and follow relations
+ *
+ * @author MVezina
+ */
+public class OrderedIdentitySetTest
+{
+	private OrderedIdentitySet<String> set;
+	private String a, b, c, d;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		set = new OrderedIdentitySet<>();
+		a = "a";
+		b = "b";
+		c = "c";
+		d = "d";
+	}
+
+	/**
+	 * Test method for adding, removing and the order of the elements
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testAddRemove()
+	{
+		assertTrue(set.add(a));
+		assertTrue(set.add(b));
+		assertTrue(set.add(c));
+		assertFalse(set.add(b));
+		assertEquals(Arrays.asList(a, b, c), set);
+
+		assertTrue(set.remove(b));
+		assertFalse(set.remove(b));
+		assertFalse(set.contains(b));
+		assertTrue(set.add(d));
+		assertTrue(set.add(b));
+
+		// Elements keep the order they were added in
+		assertEquals(Arrays.asList(a, c, d, b), set);
+		assertEquals(4, set.size());
+		assertEquals(d, set.get(2));
+		assertEquals(3, set.indexOf(b));
+	}
+
+	/**
+	 * Ensure elements are matched by reference
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testIdentity()
+	{
+		String a2 = new String(a);
+		assertTrue(set.add(a));
+		assertTrue(set.add(a2));
+		assertEquals(2, set.size());
+
+		assertTrue(set.remove(a2));
+		assertTrue(set.contains(a));
+		assertFalse(set.contains(a2));
+	}
+
+	/**
+	 * Ensure elements can be removed while iterating
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testIteratorRemove()
+	{
+		set.addAll(Arrays.asList(a, b, c, d));
+
+		Iterator<String> it = set.iterator();
+		while (it.hasNext())
+		{
+			String s = it.next();
+			if (s == b || s == d)
+				it.remove();
+		}
+
+		assertEquals(Arrays.asList(a, c), set);
+	}
+
+	/**
+	 * Ensure the relations of a user are read-only and survive serialization
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testUserRelations() throws Exception
+	{
+		Consumer consumer1 = new Consumer("Consumer1", "Tag");
+		Consumer consumer2 = new Consumer("Consumer2", "Tag");
+		consumer1.followUser(consumer2);
+
+		try
+		{
+			consumer1.getFollowing().clear();
+			fail("The relations should be read-only");
+		} catch (UnsupportedOperationException e)
+		{
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(consumer1);
+		out.close();
+
+		Consumer copy = (Consumer) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		List<?> following = copy.getFollowing();
+		assertEquals(1, following.size());
+		assertTrue(((Consumer) following.get(0)).getFollowers().contains(copy));
+	}
+}
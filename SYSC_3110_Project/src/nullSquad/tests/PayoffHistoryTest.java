@@ -0,0 +1,188 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import nullSquad.filesharingsystem.users.PayoffHistory;
+
+/**
+ * Tests the primitive payoff history of users
+ *
+ * @author MVezina
+ */
+public class PayoffHistoryTest
+{
+	// Payoffs that stay the same for stretches of steps
+	private static final int[] PAYOFFS = { 0, 0, 0, 2, 2, 5, 5, 5, 5, 3, 3, 8 };
+
+	private PayoffHistory record(PayoffHistory history)
+	{
+		for (int payoff : PAYOFFS)
+		{
+			history.record(payoff);
+		}
+
+		return history;
+	}
+
+	/**
+	 * Ensure the full and run-length encoded histories read back every payoff
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testExactPolicies()
+	{
+		PayoffHistory full = record(new PayoffHistory(PayoffHistory.Policy.Full));
+		PayoffHistory runLength = record(new PayoffHistory(PayoffHistory.Policy.RunLength));
+
+		assertEquals(PAYOFFS.length, runLength.size());
+		assertArrayEquals(PAYOFFS, full.toIntArray());
+		assertArrayEquals(PAYOFFS, runLength.toIntArray());
+		assertEquals(full, runLength);
+
+		// 5 runs of (payoff, first step)
+		assertEquals(10, runLength.getStoredCount());
+		assertEquals(5, runLength.getPayoff(8));
+		assertEquals(8, runLength.getLastPayoff());
+
+		// Read a range that starts and ends inside of runs
+		int[] range = new int[6];
+		assertEquals(5, runLength.read(4, 9, range, 1));
+		assertArrayEquals(new int[] { 0, 2, 5, 5, 5, 5 }, range);
+	}
+
+	/**
+	 * Ensure a downsampled history keeps the sampled steps once it runs out
+	 * of samples
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testDownsampled()
+	{
+		PayoffHistory history = new PayoffHistory(PayoffHistory.Policy.Downsampled, 4);
+
+		for (int step = 0; step < 10; step++)
+		{
+			history.record(step * 10);
+		}
+
+		// Steps 0, 4 and 8 are kept
+		assertEquals(10, history.size());
+		assertEquals(3, history.getStoredCount());
+		assertEquals(0, history.getPayoff(3));
+		assertEquals(40, history.getPayoff(7));
+		assertEquals(80, history.getPayoff(9));
+		assertEquals(90, history.getLastPayoff());
+	}
+
+	/**
+	 * Ensure the payoffs are kept when the policy changes
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testSetPolicy()
+	{
+		PayoffHistory history = record(new PayoffHistory());
+		assertEquals(PayoffHistory.Policy.RunLength, history.getPolicy());
+
+		history.setPolicy(PayoffHistory.Policy.Full);
+		assertArrayEquals(PAYOFFS, history.toIntArray());
+
+		history.add(8);
+		assertEquals(PAYOFFS.length + 1, history.size());
+		assertEquals(Integer.valueOf(8), history.get(PAYOFFS.length));
+	}
+
+	/**
+	 * Ensure a range of steps that starts after the last recorded step reads
+	 * back the last payoff (for every policy)
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testReadPastEnd()
+	{
+		for (PayoffHistory.Policy policy : PayoffHistory.Policy.values())
+		{
+			PayoffHistory history = record(new PayoffHistory(policy, 4));
+
+			int[] range = new int[4];
+			assertEquals(3, history.read(1000, 1003, range, 1));
+			assertArrayEquals(new int[] { 0, 8, 8, 8 }, range);
+
+			assertEquals(0, history.read(PAYOFFS.length + 1, PAYOFFS.length + 1, range, 0));
+		}
+	}
+
+	/**
+	 * Ensure a truncated history reads back the payoffs it had at that size
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testTruncate()
+	{
+		for (PayoffHistory.Policy policy : PayoffHistory.Policy.values())
+		{
+			PayoffHistory history = new PayoffHistory(policy, 4);
+			history.record(1);
+			history.record(1);
+			history.record(2);
+
+			int[] payoffs = history.toIntArray();
+
+			history.padTo(6);
+			history.record(7);
+			history.truncate(3, 2);
+
+			assertEquals(3, history.size());
+			assertArrayEquals(payoffs, history.toIntArray());
+			assertEquals(2, history.getLastPayoff());
+
+			// Recording continues from the truncated step
+			history.record(4);
+			assertEquals(4, history.size());
+			assertEquals(4, history.getLastPayoff());
+		}
+	}
+
+	/**
+	 * Ensure a history reads back as it was written (for every policy)
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testWriteRead() throws IOException
+	{
+		for (PayoffHistory.Policy policy : PayoffHistory.Policy.values())
+		{
+			PayoffHistory history = record(new PayoffHistory(policy, 4));
+			history.padTo(20);
+			history.record(-3);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			history.write(new DataOutputStream(bytes));
+			PayoffHistory read = PayoffHistory.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+			assertEquals(policy, read.getPolicy());
+			assertArrayEquals(history.toIntArray(), read.toIntArray());
+			assertEquals(-3, read.getLastPayoff());
+			assertEquals(history.getStoredCount(), read.getStoredCount());
+
+			// Recording continues where the history left off
+			history.record(6);
+			read.record(6);
+			assertArrayEquals(history.toIntArray(), read.toIntArray());
+		}
+	}
+}
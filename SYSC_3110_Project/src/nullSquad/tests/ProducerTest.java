@@ -197,4 +197,65 @@ public class ProducerTest {
 		assertTrue(producer2.getActStrategyEnum().equals(ProducerActStrategy.Strategy.Default));
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Test case for the incremental payoff counters
+	 * 
+	 * @author MVezina
+	 */
+	@Test
+	public void testIncrementalPayoff()
+	{
+		Producer producer3 = new Producer("Bob", "TEST");
+		Consumer consumer = new Consumer("Alice", "TEST");
+		Document doc = new Document("TestDocument", "TEST", producer3);
+		producer3.getDocumentsProduced().add(doc);
+		assertEquals(0, producer3.calculatePayoff());
+		
+		consumer.likeDocument(doc);
+		consumer.followUser(producer3);
+		assertEquals(1, producer3.getLikesReceived());
+		assertEquals(3, producer3.calculatePayoff());
+		
+		consumer.unlikeDocument(doc);
+		producer3.getDocumentsProduced().add(new Document("TestDocument2", "TEST", producer3));
+		producer3.getDocumentsProduced().get(1).likeDocument(consumer);
+		assertEquals(1, producer3.getLikesReceived());
+		assertEquals(3, producer3.calculatePayoff());
+		
+		producer3.getDocumentsProduced().remove(1);
+		assertEquals(2, producer3.calculatePayoff());
+	}
+	
+	/**
+	 * Test case for caching the payoff of a non-incremental strategy
+	 * 
+	 * @author MVezina
+	 */
+	@Test
+	public void testCachedPayoff()
+	{
+		final int[] calculations = new int[1];
+		ProducerPayoffStrategy countingStrategy = prod -> {
+			calculations[0]++;
+			return prod.getFollowers().size();
+		};
+		
+		Producer producer3 = new Producer(countingStrategy, "Bob", "TEST");
+		Consumer consumer = new Consumer("Alice", "TEST");
+		
+		assertEquals(0, producer3.calculatePayoff());
+		assertEquals(0, producer3.calculatePayoff());
+		assertEquals(1, calculations[0]);
+		
+		// Gaining a follower invalidates the cached payoff
+		consumer.followUser(producer3);
+		assertEquals(1, producer3.calculatePayoff());
+		assertEquals(1, producer3.calculatePayoff());
+		assertEquals(2, calculations[0]);
+		
+		producer3.invalidatePayoff();
+		assertEquals(1, producer3.calculatePayoff());
+		assertEquals(3, calculations[0]);
+	}
+
+}
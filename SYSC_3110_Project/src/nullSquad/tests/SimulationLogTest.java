@@ -0,0 +1,142 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nullSquad.simulator.log.*;
+
+/**
+ * Tests the simulation log and its in-memory ring buffer
+ *
+ * @author MVezina
+ */
+public class SimulationLogTest
+{
+	private SimulationLog log;
+	private LogSink previousSink;
+	private LogLevel previousLevel;
+
+	@Before
+	public void setUp()
+	{
+		log = SimulationLog.getInstance();
+		previousSink = log.getSink();
+		previousLevel = log.getLevel();
+	}
+
+	@After
+	public void tearDown()
+	{
+		log.setSink(previousSink);
+		log.setLevel(previousLevel);
+	}
+
+	/**
+	 * Ensure the ring buffer only keeps the most recent events, and events
+	 * can be read from an event number on
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testMemoryLogSink()
+	{
+		MemoryLogSink sink = new MemoryLogSink(3);
+
+		for (int i = 0; i < 5; i++)
+		{
+			sink.log(new LogEvent(LogLevel.Info, i / 2, "Event " + i));
+		}
+
+		assertEquals(3, sink.size());
+		assertEquals(2, sink.getFirstSequence());
+		assertEquals(5, sink.getNextSequence());
+		assertEquals("Event 2\nEvent 3\n\nEvent 4\n", sink.getText());
+
+		List<LogEvent> events = sink.getEventsSince(4);
+		assertEquals(1, events.size());
+		assertEquals("Event 4", events.get(0).getMessage());
+
+		// Restoring starts the numbering over
+		int resetCount = sink.getResetCount();
+		sink.restore(events);
+		assertEquals(resetCount + 1, sink.getResetCount());
+		assertEquals(1, sink.getNextSequence());
+		assertEquals("Event 4\n", sink.getText());
+	}
+
+	/**
+	 * Ensure disabled levels and the NONE sink do not reach the sink
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testLevels()
+	{
+		MemoryLogSink sink = new MemoryLogSink();
+		log.setSink(sink);
+		log.setLevel(LogLevel.Info);
+
+		log.debug("Hidden");
+		log.info("Shown");
+		log.warning("Also shown");
+
+		assertFalse(log.isEnabled(LogLevel.Debug));
+		assertEquals(2, sink.size());
+		assertEquals(LogLevel.Warning, sink.getEvents().get(1).getLevel());
+
+		log.warning("Also {}", "formatted");
+		assertEquals("Also formatted", sink.getEvents().get(2).getMessage());
+
+		// The NONE sink (the default without the GUI) does not evaluate the
+		// suppliers of a message
+		log.setSink(LogSink.NONE);
+		assertFalse(log.isEnabled(LogLevel.Warning));
+		log.info("Payoff: {}", (Supplier<Integer>) () -> {
+			throw new AssertionError("Evaluated");
+		});
+		assertNull(log.getMemorySink());
+		assertTrue(log.getEvents().isEmpty());
+	}
+
+	/**
+	 * Ensure templates are formatted when read, and supplied arguments are
+	 * only evaluated if the level is enabled
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testDeferredMessages() throws Exception
+	{
+		MemoryLogSink sink = new MemoryLogSink();
+		log.setSink(sink);
+		log.setLevel(LogLevel.Info);
+
+		AtomicInteger evaluations = new AtomicInteger();
+		Supplier<Integer> payoff = () -> evaluations.incrementAndGet();
+
+		log.debug("{} Payoff: {}", "Hidden", payoff);
+		assertEquals(0, evaluations.get());
+
+		log.info("{} Payoff: {} {}", "Shown", payoff);
+		assertEquals(1, evaluations.get());
+		assertEquals("Shown Payoff: 1 {}", sink.getEvents().get(0).getMessage());
+
+		// Saved events keep the formatted message
+		ByteArrayOutputStream bAOS = new ByteArrayOutputStream();
+		ObjectOutputStream oOS = new ObjectOutputStream(bAOS);
+		oOS.writeObject(new LogEvent(LogLevel.Info, 3, "{} has liked '{}'", "User", "Document"));
+		oOS.close();
+
+		LogEvent restored = (LogEvent) new ObjectInputStream(new ByteArrayInputStream(bAOS.toByteArray())).readObject();
+		assertEquals("User has liked 'Document'", restored.getMessage());
+		assertEquals(3, restored.getStep());
+	}
+}
@@ -11,6 +11,7 @@ import org.junit.Test;
 import nullSquad.filesharingsystem.FileSharingSystem;
 import nullSquad.simulator.Simulator;
 import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.simulator.log.SimulationLog;
 
 public class SimulatorSaveStateTest {
 
@@ -33,7 +34,7 @@ public class SimulatorSaveStateTest {
 		tags.add(bookTag);
 		tags.add(musicTag);
 		tags.add(sportsTag);
-		logTextState = Simulator.logText;
+		logTextState = SimulationLog.getInstance().getText();
 		network = new FileSharingSystem(tags);
 		simulator = new Simulator(network,10);
 		
@@ -44,7 +45,7 @@ public class SimulatorSaveStateTest {
 	@Test
 	public void testSimulatorSaveState() {
 		assertEquals(saveState.getSimulator(),simulator);
-		assertEquals(Simulator.logText,logTextState);
+		assertEquals(SimulationLog.getInstance().getText(),logTextState);
 	}
 
 	@Test
@@ -11,12 +11,15 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.User;
 import nullSquad.filesharingsystem.users.Consumer;
 import nullSquad.filesharingsystem.users.Producer;
 import nullSquad.simulator.Simulator;
@@ -113,6 +116,119 @@ public class SimulatorTest {
 		currentSimulatorSequenceTest=0;
 	}
 
+	/**
+	 * Ensure stepping back undoes every change made during the last step
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testStepBack() {
+		simulator.createConsumers(5);
+		simulator.createProducers(5);
+		simulator.simulationStep();
+
+		String before = describe();
+		assertFalse(network.getUsers().get(0).getPayoffHistory().isEmpty());
+
+		for (int i = 0; i < 5; i++) {
+			simulator.simulationStep();
+			assertTrue(simulator.canStepBack());
+
+			simulator.stepBack();
+			assertTrue(simulator.canStepForward());
+			assertEquals(1, simulator.getUndoStepCount());
+			assertEquals(1, simulator.getCurrentSimulatorSequence());
+			assertEquals(before, describe());
+		}
+	}
+
+	/**
+	 * Ensure several steps can be undone and redone
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testStepForward() {
+		simulator.createConsumers(5);
+		simulator.createProducers(5);
+
+		List<String> descriptions = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			descriptions.add(describe());
+			simulator.simulationStep();
+		}
+		descriptions.add(describe());
+
+		// Undo every step, then redo them
+		for (int i = 3; i >= 0; i--) {
+			simulator.stepBack();
+			assertEquals(descriptions.get(i), describe());
+		}
+		assertFalse(simulator.canStepBack());
+		assertEquals(4, simulator.getRedoStepCount());
+
+		for (int i = 1; i <= 4; i++) {
+			simulator.stepForward();
+			assertEquals(i, simulator.getCurrentSimulatorSequence());
+			assertEquals(descriptions.get(i), describe());
+		}
+		assertFalse(simulator.canStepForward());
+
+		// A new step can not be followed by a redo
+		simulator.stepBack();
+		simulator.simulationStep();
+		assertFalse(simulator.canStepForward());
+
+		// Only the last step is kept once the budget is exceeded
+		simulator.setUndoMemoryBudget(0);
+		assertEquals(1, simulator.getUndoStepCount());
+	}
+
+	/**
+	 * Ensure the random number generator generates the same numbers as the
+	 * generator it was created with, and is restored by an undo / redo
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testStepRestoresRandom() {
+		simulator = new Simulator(network, totalSimulatorSequencesTest, new Random(3110));
+		Random expected = new Random(3110);
+		assertEquals(expected.nextInt(), simulator.getRandomNumber().nextInt());
+
+		simulator.createConsumers(5);
+		simulator.createProducers(5);
+		simulator.simulationStep();
+		simulator.stepBack();
+		int before = simulator.getRandomNumber().nextInt();
+
+		simulator.stepForward();
+		int after = simulator.getRandomNumber().nextInt();
+
+		simulator.stepBack();
+		assertEquals(before, simulator.getRandomNumber().nextInt());
+		simulator.stepForward();
+		assertEquals(after, simulator.getRandomNumber().nextInt());
+	}
+
+	/**
+	 * @return The likes, follows and payoffs of every user and document
+	 */
+	private String describe() {
+		StringBuilder description = new StringBuilder();
+
+		for (User u : network.getUsers()) {
+			description.append(u.getUserID()).append(u.getLikedDocuments()).append(u.getFollowers().size()).append(u.getFollowing().size());
+			description.append(u.getPayoffHistory()).append('\n');
+		}
+
+		for (Document d : network.getAllDocuments()) {
+			description.append(d.getDocumentID()).append(d.getUserLikes().size()).append('\n');
+		}
+
+		return description.toString();
+	}
+
 	@Test
 	public void testGetTotalSimulatorSequences() {
 		assertEquals(simulator.getTotalSimulatorSequences(),totalSimulatorSequencesTest);
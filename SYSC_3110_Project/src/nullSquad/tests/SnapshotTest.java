@@ -0,0 +1,417 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nullSquad.filesharingsystem.FileSharingSystem;
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.filesharingsystem.users.User;
+import nullSquad.strategies.ranking.DocumentRankingStrategy;
+import nullSquad.simulator.Simulator;
+import nullSquad.simulator.SimulatorSaveState;
+import nullSquad.simulator.log.LogSink;
+import nullSquad.simulator.log.MemoryLogSink;
+import nullSquad.simulator.log.SimulationLog;
+import nullSquad.simulator.snapshot.Compression;
+import nullSquad.simulator.snapshot.EventLogReader;
+import nullSquad.simulator.snapshot.SnapshotFile;
+import nullSquad.simulator.snapshot.SnapshotReader;
+
+/**
+ * Tests saving / restoring the simulator state in the binary snapshot format
+ *
+ * @author MVezina
+ */
+public class SnapshotTest
+{
+	private List<String> tags;
+	private FileSharingSystem network;
+	private Simulator simulator;
+	private LogSink previousSink;
+
+	@Before
+	public void setUp()
+	{
+		// The log is kept in memory, so it can be compared once restored
+		previousSink = SimulationLog.getInstance().getSink();
+		SimulationLog.getInstance().setSink(new MemoryLogSink());
+
+		tags = Arrays.asList("Programming", "Book", "Music");
+		network = new FileSharingSystem(new ArrayList<>(tags));
+		simulator = new Simulator(network, 50);
+
+		simulator.createConsumers(6);
+		simulator.createProducers(6);
+
+		for (int i = 0; i < 30; i++)
+		{
+			simulator.simulationStep();
+		}
+
+		// A producer that was removed leaves a gap in the IDs
+		network.deactivateUser(network.getUsers().get(8));
+	}
+
+	@After
+	public void tearDown()
+	{
+		SimulationLog.getInstance().setSink(previousSink);
+	}
+
+	private static String ids(List<?> items)
+	{
+		StringBuilder ids = new StringBuilder();
+
+		for (Object item : items)
+		{
+			ids.append(item instanceof User ? ((User) item).getUserID() : ((Document) item).getDocumentID()).append(',');
+		}
+
+		return ids.toString();
+	}
+
+	/**
+	 * Describes the users, documents and relations of a file sharing system
+	 * (in the order they are kept)
+	 */
+	private static String describe(Simulator simulator)
+	{
+		FileSharingSystem fss = simulator.getFileSharingSystem();
+		StringBuilder description = new StringBuilder(simulator.getCurrentSimulatorSequence() + " " + fss.getNextAvailableUserID() + " " + fss.getNextAvailableDocID() + "\n");
+
+		for (User u : fss.getUsers())
+		{
+			description.append(u.getClass().getSimpleName() + " " + u.getUserID() + " " + u.getUserName() + " " + u.getTaste() + " " + u.getDocumentRankingStrategy());
+			description.append(" [" + ids(u.getFollowers()) + "] [" + ids(u.getFollowing()) + "] [" + ids(u.getLikedDocuments()) + "] ");
+			description.append(Arrays.toString(u.getPayoffHistory().toIntArray()));
+
+			if (u instanceof Producer)
+				description.append(" [" + ids(((Producer) u).getDocumentsProduced()) + "] " + ((Producer) u).calculatePayoff());
+
+			description.append("\n");
+		}
+
+		for (Document d : fss.getAllDocuments())
+		{
+			description.append(d.getDocumentID() + " " + d.getDocumentName() + " " + d.getTag() + " " + d.getProducer().getUserID() + " " + d.getDateUploaded().getTime() + " [" + ids(d.getUserLikes()) + "]\n");
+		}
+
+		return description.toString();
+	}
+
+	private Simulator restore(byte[] state) throws Exception
+	{
+		Simulator restored = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restored.restoreState(new ByteArrayInputStream(state));
+		return restored;
+	}
+
+	/**
+	 * Ensure a saved state is restored exactly (users, documents, relations,
+	 * payoffs and log)
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testSaveRestore() throws Exception
+	{
+		String description = describe(simulator);
+		String logText = SimulationLog.getInstance().getText();
+
+		ByteArrayOutputStream state = new ByteArrayOutputStream();
+		simulator.saveState(state);
+		assertTrue(SnapshotReader.isSnapshot(new ByteArrayInputStream(state.toByteArray())));
+
+		SimulationLog.getInstance().clear();
+		Simulator restored = restore(state.toByteArray());
+
+		assertEquals(description, describe(restored));
+		assertEquals(50, restored.getTotalSimulatorSequences());
+		assertEquals(logText, SimulationLog.getInstance().getText());
+
+		// The restored state is saved the same way again
+		ByteArrayOutputStream savedAgain = new ByteArrayOutputStream();
+		restored.saveState(savedAgain);
+		assertArrayEquals(state.toByteArray(), savedAgain.toByteArray());
+
+		// The same users are picked to act next
+		assertEquals(simulator.getRandomNumber().nextInt(), restored.getRandomNumber().nextInt());
+	}
+
+	/**
+	 * Ensure a state file is restored exactly when it is mapped, and that the
+	 * payoff histories are only read when they are needed
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testMappedRestore() throws Exception
+	{
+		String description = describe(simulator);
+		String logText = SimulationLog.getInstance().getText();
+
+		File file = File.createTempFile("SnapshotTest", ".ssf");
+		file.deleteOnExit();
+
+		FileOutputStream fOS = new FileOutputStream(file);
+		simulator.saveState(fOS);
+		fOS.close();
+
+		SnapshotFile snapshotFile = SnapshotFile.open(file);
+		assertNotNull(snapshotFile);
+
+		User user = network.getUsers().get(0);
+		assertArrayEquals(user.getPayoffHistory().toIntArray(), snapshotFile.readPayoffHistory(0).toIntArray());
+
+		SimulationLog.getInstance().clear();
+		Simulator restored = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restored.restoreState(file);
+
+		for (User u : restored.getFileSharingSystem().getUsers())
+		{
+			assertFalse(u.isPayoffHistoryLoaded());
+		}
+
+		assertEquals(description, describe(restored));
+		assertEquals(logText, SimulationLog.getInstance().getText());
+		assertTrue(restored.getFileSharingSystem().getUsers().get(0).isPayoffHistoryLoaded());
+	}
+
+	/**
+	 * Ensure a state restored from a mapped file can be saved to another file,
+	 * and over that file before its payoff histories have been read
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testSaveOverMappedFile() throws Exception
+	{
+		String description = describe(simulator);
+
+		File file = File.createTempFile("SnapshotTest", ".ssf");
+		file.deleteOnExit();
+		simulator.saveState(file, Compression.None);
+
+		Simulator restored = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restored.restoreState(file);
+		assertFalse(restored.getFileSharingSystem().getUsers().get(0).isPayoffHistoryLoaded());
+
+		// The file is matched even if its path is written differently
+		restored.saveState(new File(file.getParentFile(), "." + File.separator + file.getName()), Compression.None);
+
+		Simulator restoredAgain = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restoredAgain.restoreState(file);
+
+		// Saving to another file reads the histories from the mapped file
+		File otherFile = File.createTempFile("SnapshotTest", ".ssf");
+		otherFile.deleteOnExit();
+		restoredAgain.saveState(otherFile, Compression.None);
+
+		Simulator restoredOther = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restoredOther.restoreState(otherFile);
+
+		assertEquals(description, describe(restored));
+		assertEquals(description, describe(restoredAgain));
+		assertEquals(description, describe(restoredOther));
+	}
+
+	/**
+	 * Ensure a compressed state is restored exactly, with its compression
+	 * detected from the file
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testCompressedSaveRestore() throws Exception
+	{
+		String description = describe(simulator);
+
+		ByteArrayOutputStream state = new ByteArrayOutputStream();
+		simulator.saveState(state);
+
+		for (Compression compression : Compression.values())
+		{
+			File file = File.createTempFile("SnapshotTest", ".ssf");
+			file.deleteOnExit();
+
+			FileOutputStream fOS = new FileOutputStream(file);
+			simulator.saveState(fOS, compression);
+
+			if (compression != Compression.None)
+				assertTrue(compression + " compressed state is not smaller", file.length() < state.size());
+
+			Simulator restored = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+			restored.restoreState(file);
+
+			assertEquals(description, describe(restored));
+		}
+	}
+
+	/**
+	 * Ensure the compressions restore exactly what was written, whether it
+	 * compresses well or not, and spans several blocks or not
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testCompressionRoundTrip() throws Exception
+	{
+		Random random = new Random(3110);
+
+		for (int length : new int[] { 0, 1, 4, 19, 65536, 200000 })
+		{
+			byte[] data = new byte[length];
+			for (int i = 0; i < length; i++)
+			{
+				// Runs, repeated text and noise
+				data[i] = (byte) (i % 1000 < 300 ? 0 : i % 1000 < 600 ? "payoff".charAt(i % 6) : random.nextInt());
+			}
+
+			for (Compression compression : Compression.values())
+			{
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				OutputStream out = compression.compress(compressed);
+				out.write(data, 0, length / 2);
+				out.write(data, length / 2, length - length / 2);
+				out.close();
+
+				InputStream in = Compression.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+				ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+				for (int b = in.read(); b >= 0; b = in.read())
+				{
+					decompressed.write(b);
+				}
+
+				assertArrayEquals(compression + " " + length, data, decompressed.toByteArray());
+			}
+		}
+	}
+
+	/**
+	 * Ensure an event log restores the state of its last step: The last
+	 * checkpoint is restored, and the steps / changes after it are replayed
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testEventLogRestore() throws Exception
+	{
+		File file = File.createTempFile("SnapshotTest", ".ssl");
+		file.deleteOnExit();
+
+		simulator.startEventLog(new FileOutputStream(file), 4);
+		assertTrue(EventLogReader.isEventLog(file));
+
+		for (int i = 0; i < 10; i++)
+		{
+			simulator.simulationStep();
+		}
+
+		// Changes made between steps are written with the next step
+		network.getUsers().get(0).setDocumentRankingStrategy(DocumentRankingStrategy.Strategy.UserDistance);
+		simulator.createConsumers(1);
+		simulator.simulationStep();
+		simulator.simulationStep();
+
+		String description = describe(simulator);
+		String logText = SimulationLog.getInstance().getText();
+		simulator.stopEventLog();
+
+		SimulationLog.getInstance().clear();
+		Simulator restored = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restored.restoreState(file);
+
+		assertEquals(description, describe(restored));
+		assertEquals(logText, SimulationLog.getInstance().getText());
+		assertEquals(simulator.getRandomNumber().nextInt(), restored.getRandomNumber().nextInt());
+	}
+
+	/**
+	 * Ensure a step that was only partly written to an event log (ex: The
+	 * simulator was killed) is dropped, and the step before it is restored
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testTornEventLog() throws Exception
+	{
+		File file = File.createTempFile("SnapshotTest", ".ssl");
+		file.deleteOnExit();
+
+		// The last step is not a checkpoint
+		simulator.startEventLog(new FileOutputStream(file), 4);
+		for (int i = 0; i < 11; i++)
+		{
+			simulator.simulationStep();
+		}
+
+		String description = describe(simulator);
+		simulator.simulationStep();
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			raf.setLength(raf.length() - 1);
+		}
+
+		Simulator restored = new Simulator(new FileSharingSystem(new ArrayList<>(tags)), 1);
+		restored.restoreState(file);
+		simulator.stopEventLog();
+
+		assertEquals(description, describe(restored));
+	}
+
+	/**
+	 * Ensure states saved with Java serialization can still be restored
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testLegacyState() throws Exception
+	{
+		String description = describe(simulator);
+
+		ByteArrayOutputStream state = new ByteArrayOutputStream();
+		ObjectOutputStream oOS = new ObjectOutputStream(state);
+		oOS.writeObject(new SimulatorSaveState(simulator));
+		oOS.close();
+
+		assertFalse(SnapshotReader.isSnapshot(new ByteArrayInputStream(state.toByteArray())));
+		assertEquals(description, describe(restore(state.toByteArray())));
+	}
+
+	/**
+	 * Ensure a state from a newer version is rejected
+	 *
+	 * @author MVezina
+	 */
+	@Test(expected = IOException.class)
+	public void testUnsupportedVersion() throws Exception
+	{
+		ByteArrayOutputStream state = new ByteArrayOutputStream();
+		simulator.saveState(state);
+
+		// The version follows the 4 byte header
+		byte[] bytes = state.toByteArray();
+		bytes[4] = 99;
+
+		restore(bytes);
+	}
+}
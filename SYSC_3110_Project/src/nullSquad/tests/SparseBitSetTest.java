@@ -0,0 +1,110 @@
+package nullSquad.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nullSquad.filesharingsystem.document.Document;
+import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
+import nullSquad.util.SparseBitSet;
+
+/**
+ * Tests the compressed bitmap used for the liked document IDs of users
+ *
+ * @author MVezina
+ */
+public class SparseBitSetTest
+{
+	private SparseBitSet bitSet;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		bitSet = new SparseBitSet();
+	}
+
+	/**
+	 * Test method for setting, getting and clearing bits
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testSetAndClear()
+	{
+		assertTrue(bitSet.isEmpty());
+
+		assertTrue(bitSet.set(1));
+		assertTrue(bitSet.set(100000));
+		assertTrue(bitSet.set(63));
+		assertFalse(bitSet.set(63));
+		assertEquals(3, bitSet.cardinality());
+
+		assertTrue(bitSet.get(1));
+		assertTrue(bitSet.get(63));
+		assertTrue(bitSet.get(100000));
+		assertFalse(bitSet.get(64));
+		assertFalse(bitSet.get(-1));
+
+		assertTrue(bitSet.clear(100000));
+		assertFalse(bitSet.clear(100000));
+		assertFalse(bitSet.get(100000));
+		assertEquals(2, bitSet.cardinality());
+	}
+
+	/**
+	 * Test method for counting the intersection of two sets
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testIntersectionCount()
+	{
+		SparseBitSet other = new SparseBitSet();
+
+		for (int i = 0; i < 1000; i += 2)
+		{
+			bitSet.set(i);
+		}
+
+		for (int i = 0; i < 1000; i += 3)
+		{
+			other.set(i);
+		}
+
+		// Multiples of 6
+		assertEquals(167, bitSet.intersectionCount(other));
+		assertEquals(167, other.intersectionCount(bitSet));
+		assertEquals(0, bitSet.intersectionCount(new SparseBitSet()));
+	}
+
+	/**
+	 * Ensure the liked document IDs of a user follow likes, unlikes and
+	 * documents being given an ID
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testUserLikedDocumentIDs()
+	{
+		Consumer consumer = new Consumer("Consumer", "Tag");
+		Producer producer = new Producer("Producer", "Tag");
+		Document doc1 = new Document("Doc1", "Tag", producer);
+		Document doc2 = new Document("Doc2", "Tag", producer);
+		doc1.setDocumentID(5);
+
+		consumer.likeDocument(doc1);
+		consumer.likeDocument(doc2);
+		assertTrue(consumer.getLikedDocumentIDs().get(5));
+		assertEquals(1, consumer.getUnregisteredLikeCount());
+
+		doc2.setDocumentID(70);
+		assertTrue(consumer.getLikedDocumentIDs().get(70));
+		assertEquals(0, consumer.getUnregisteredLikeCount());
+
+		consumer.unlikeDocument(doc1);
+		assertFalse(consumer.getLikedDocumentIDs().get(5));
+		assertEquals(1, consumer.getLikedDocumentIDs().cardinality());
+	}
+}
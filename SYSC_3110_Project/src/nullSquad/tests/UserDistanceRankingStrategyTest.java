@@ -12,6 +12,7 @@ import org.junit.Test;
 
 import nullSquad.filesharingsystem.document.Document;
 import nullSquad.filesharingsystem.users.Consumer;
+import nullSquad.filesharingsystem.users.Producer;
 import nullSquad.strategies.ranking.UserDistanceRankingStrategy;
 
 public class UserDistanceRankingStrategyTest {
@@ -85,5 +86,42 @@ public class UserDistanceRankingStrategyTest {
 		assertEquals(ranked.get(1), doc2);
 		
 	}
-}
 
+	/**
+	 * Ensure documents are ranked by the distance of their closest liker
+	 * 
+	 * @author MVezina
+	 */
+	@Test
+	public void testRankDocumentsByFriendDistance() {
+		Producer producer = new Producer("PRODUCER", "Gaming");
+		Document near = new Document("Near", "Gaming", producer);
+		Document far = new Document("Far", "Gaming", producer);
+		Document unreached = new Document("Unreached", "Gaming", producer);
+		Document own = new Document("Own", "Gaming", producer);
+
+		// consumer1 ------ consumer2 ------ consumer3 ------ consumer4
+		consumer1.followUser(consumer2);
+		consumer3.followUser(consumer2);
+		consumer3.followUser(consumer4);
+
+		consumer2.likeDocument(near);
+		consumer4.likeDocument(far);
+		consumer1.likeDocument(own);
+
+		List<Document> documents = new ArrayList<>();
+		documents.add(unreached);
+		documents.add(far);
+		documents.add(own);
+		documents.add(near);
+
+		List<Document> ranked = (new UserDistanceRankingStrategy()).rankDocuments(documents, consumer1);
+
+		// near: 1 friend away, own: liked by a friend of a friend (consumer1
+		// itself), far: 3 friends away, unreached: not liked by anyone
+		assertEquals(near, ranked.get(0));
+		assertEquals(own, ranked.get(1));
+		assertEquals(far, ranked.get(2));
+		assertEquals(unreached, ranked.get(3));
+	}
+}
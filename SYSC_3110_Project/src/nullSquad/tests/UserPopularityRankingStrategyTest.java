@@ -94,4 +94,46 @@ public class UserPopularityRankingStrategyTest
 		assertEquals(ranked.get(1), doc1);
 	}
 
+	/**
+	 * Ensure documents are ranked by the exact average popularity of their
+	 * likers: Averages less than 1 apart are not ranked the same (They were
+	 * when the averages were compared as a truncated difference), and only
+	 * exactly equal averages are ties (The document that occurs later in the
+	 * list is ranked first)
+	 *
+	 * @author MVezina
+	 */
+	@Test
+	public void testRankByExactAverage()
+	{
+		String tag = "TestTag";
+		Document docA = new Document("DocumentA", tag, producer1);
+		Document docB = new Document("DocumentB", tag, producer1);
+		Document docC = new Document("DocumentC", tag, producer1);
+
+		// likerA has 1 follower, likerB has 2 followers
+		Consumer likerA = new Consumer("LIKERA", tag);
+		Consumer likerB = new Consumer("LIKERB", tag);
+		user1.followUser(likerA);
+		user1.followUser(likerB);
+		user2.followUser(likerB);
+
+		// Averages: docA = 1, docB = 1.5, docC = 1
+		likerA.likeDocument(docA);
+		likerA.likeDocument(docB);
+		likerB.likeDocument(docB);
+		likerA.likeDocument(docC);
+
+		List<Document> documents = new ArrayList<>();
+		documents.add(docB);
+		documents.add(docA);
+		documents.add(docC);
+
+		List<Document> ranked = (new UserPopularityRankingStrategy()).rankDocuments(documents, null);
+
+		assertEquals(docB, ranked.get(0));
+		assertEquals(docC, ranked.get(1));
+		assertEquals(docA, ranked.get(2));
+	}
+
 }
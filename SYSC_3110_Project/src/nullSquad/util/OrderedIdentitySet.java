@@ -0,0 +1,316 @@
+package nullSquad.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A list of distinct elements (matched by reference) that keeps the order the
+ * elements were added in. Membership, adding and removing are all constant
+ * time: Each element's slot is kept in an IdentityHashMap, and a removed
+ * element only leaves an empty slot behind. The empty slots are compacted
+ * lazily (when an element is accessed by index, or when the slots run out).
+ *
+ * Elements can only be added to the end of the list, adding an element that
+ * is already in the list does nothing (add returns false). Null elements are
+ * not permitted.
+ *
+ * @param <E> The type of elements
+ * @author MVezina
+ */
+public class OrderedIdentitySet<E> extends AbstractList<E> implements RandomAccess, Serializable
+{
+	private static final long serialVersionUID = 6620487216325513958L;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	// The elements in the order they were added (null = removed element)
+	private transient Object[] slots;
+	private transient int end;
+	private transient int size;
+
+	// Counts the compactions, so iterators can find their place again
+	private transient int compactions;
+
+	// Element -> Slot of the element
+	private transient Map<Object, Integer> slotByElement;
+
+	/**
+	 * Creates an empty set
+	 *
+	 * @author MVezina
+	 */
+	public OrderedIdentitySet()
+	{
+		slots = new Object[INITIAL_CAPACITY];
+		slotByElement = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Creates a set containing the distinct elements of the collection (In
+	 * the order of the collection)
+	 *
+	 * @param elements The elements to add
+	 * @author MVezina
+	 */
+	public OrderedIdentitySet(Collection<? extends E> elements)
+	{
+		this();
+		addAll(elements);
+	}
+
+	@Override
+	public boolean add(E element)
+	{
+		if (element == null)
+			throw new NullPointerException();
+
+		if (slotByElement.containsKey(element))
+			return false;
+
+		if (end == slots.length)
+		{
+			// Reuse the empty slots if at least half of the slots are empty
+			if (end - size >= size)
+				compact();
+			else
+				slots = Arrays.copyOf(slots, slots.length * 2);
+		}
+
+		slotByElement.put(element, end);
+		slots[end++] = element;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o)
+	{
+		Integer slot = slotByElement.remove(o);
+
+		if (slot == null)
+			return false;
+
+		slots[slot] = null;
+		size--;
+		modCount++;
+
+		// Trailing empty slots can be reused right away
+		while (end > 0 && slots[end - 1] == null)
+		{
+			end--;
+		}
+
+		return true;
+	}
+
+	@Override
+	public E remove(int index)
+	{
+		E element = get(index);
+		remove(element);
+		return element;
+	}
+
+	@Override
+	public boolean contains(Object o)
+	{
+		return slotByElement.containsKey(o);
+	}
+
+	@Override
+	public int indexOf(Object o)
+	{
+		if (!slotByElement.containsKey(o))
+			return -1;
+
+		compact();
+		return slotByElement.get(o);
+	}
+
+	@Override
+	public int lastIndexOf(Object o)
+	{
+		return indexOf(o);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		compact();
+		return (E) slots[index];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(slots, 0, end, null);
+		slotByElement.clear();
+		end = 0;
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Iterates over the elements without compacting the slots. Elements can
+	 * be removed with the iterator. Compacting does not change the elements,
+	 * so the iterator only has to find its place again when the slots were
+	 * compacted (by accessing an element by index)
+	 */
+	@Override
+	public Iterator<E> iterator()
+	{
+		return new Iterator<E>()
+		{
+			private int nextSlot = nextOccupiedSlot(0);
+			private int lastSlot = -1;
+			private int returned;
+			private int expectedModCount = modCount;
+			private int expectedCompactions = compactions;
+
+			@Override
+			public boolean hasNext()
+			{
+				relocate();
+				return nextSlot < end;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next()
+			{
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+
+				relocate();
+
+				if (nextSlot >= end)
+					throw new NoSuchElementException();
+
+				lastSlot = nextSlot;
+				nextSlot = nextOccupiedSlot(nextSlot + 1);
+				returned++;
+				return (E) slots[lastSlot];
+			}
+
+			@Override
+			public void remove()
+			{
+				if (lastSlot < 0)
+					throw new IllegalStateException();
+
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+
+				relocate();
+
+				// Removing only empties the slot, so the other slots do not move
+				OrderedIdentitySet.this.remove(slots[lastSlot]);
+				lastSlot = -1;
+				returned--;
+				expectedModCount = modCount;
+			}
+
+			/**
+			 * After compacting, the elements that were already returned are
+			 * exactly the ones in the first slots
+			 */
+			private void relocate()
+			{
+				if (compactions == expectedCompactions)
+					return;
+
+				if (lastSlot >= 0)
+					lastSlot = returned - 1;
+
+				nextSlot = returned;
+				expectedCompactions = compactions;
+			}
+		};
+	}
+
+	private int nextOccupiedSlot(int slot)
+	{
+		while (slot < end && slots[slot] == null)
+		{
+			slot++;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Moves all elements to the front of the slots (if there are any empty
+	 * slots) so that elements can be accessed by index
+	 */
+	private void compact()
+	{
+		if (end == size)
+			return;
+
+		int slot = 0;
+		for (int i = 0; i < end; i++)
+		{
+			if (slots[i] != null)
+			{
+				slots[slot] = slots[i];
+				slotByElement.put(slots[i], slot);
+				slot++;
+			}
+		}
+
+		Arrays.fill(slots, size, end, null);
+		end = size;
+		compactions++;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		out.writeInt(size);
+
+		for (E element : this)
+		{
+			out.writeObject(element);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		int count = in.readInt();
+
+		slots = new Object[Math.max(INITIAL_CAPACITY, count)];
+		slotByElement = new IdentityHashMap<>();
+
+		// The elements may not be fully read yet, but they are matched by
+		// reference so they can already be added
+		for (int i = 0; i < count; i++)
+		{
+			add((E) in.readObject());
+		}
+	}
+
+}
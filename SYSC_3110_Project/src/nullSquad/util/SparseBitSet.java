@@ -0,0 +1,218 @@
+package nullSquad.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative integers stored as a compressed bitmap. Only the
+ * 64-bit words that contain at least one set bit are stored (sorted by the
+ * index of the word), so a set of a few large IDs takes up a few words
+ * instead of one bit for every smaller ID.
+ *
+ * The intersection of two sets is counted by merging the stored words and
+ * counting the common bits of each pair of words with the same index.
+ *
+ * @author MVezina
+ */
+public class SparseBitSet
+{
+	private static final int INITIAL_CAPACITY = 4;
+
+	// Sorted indices of the stored words and the words themselves
+	private int[] wordIndices;
+	private long[] words;
+	private int wordCount;
+
+	// The number of set bits
+	private int cardinality;
+
+	/**
+	 * Creates an empty set
+	 *
+	 * @author MVezina
+	 */
+	public SparseBitSet()
+	{
+		wordIndices = new int[INITIAL_CAPACITY];
+		words = new long[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Adds the integer to the set
+	 *
+	 * @param bit The integer to add (Must not be negative)
+	 * @return Whether or not the integer was added (false if it was already in
+	 *         the set)
+	 * @author MVezina
+	 */
+	public boolean set(int bit)
+	{
+		checkBit(bit);
+
+		int wordIndex = bit >>> 6;
+		long mask = 1L << bit;
+		int position = findWord(wordIndex);
+
+		if (position < 0)
+		{
+			// Insert a new word
+			position = -position - 1;
+			ensureCapacity(wordCount + 1);
+			System.arraycopy(wordIndices, position, wordIndices, position + 1, wordCount - position);
+			System.arraycopy(words, position, words, position + 1, wordCount - position);
+			wordIndices[position] = wordIndex;
+			words[position] = 0;
+			wordCount++;
+		}
+		else if ((words[position] & mask) != 0)
+		{
+			return false;
+		}
+
+		words[position] |= mask;
+		cardinality++;
+		return true;
+	}
+
+	/**
+	 * Removes the integer from the set
+	 *
+	 * @param bit The integer to remove
+	 * @return Whether or not the integer was removed (false if it was not in
+	 *         the set)
+	 * @author MVezina
+	 */
+	public boolean clear(int bit)
+	{
+		if (bit < 0)
+			return false;
+
+		int position = findWord(bit >>> 6);
+		long mask = 1L << bit;
+
+		if (position < 0 || (words[position] & mask) == 0)
+			return false;
+
+		words[position] &= ~mask;
+		cardinality--;
+
+		// Do not keep words that are empty
+		if (words[position] == 0)
+		{
+			System.arraycopy(wordIndices, position + 1, wordIndices, position, wordCount - position - 1);
+			System.arraycopy(words, position + 1, words, position, wordCount - position - 1);
+			wordCount--;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param bit The integer to look for
+	 * @return Whether or not the integer is in the set
+	 * @author MVezina
+	 */
+	public boolean get(int bit)
+	{
+		if (bit < 0)
+			return false;
+
+		int position = findWord(bit >>> 6);
+		return (position >= 0 && (words[position] & (1L << bit)) != 0);
+	}
+
+	/**
+	 * @return The number of integers in the set
+	 * @author MVezina
+	 */
+	public int cardinality()
+	{
+		return cardinality;
+	}
+
+	/**
+	 * @return Whether or not the set is empty
+	 * @author MVezina
+	 */
+	public boolean isEmpty()
+	{
+		return cardinality == 0;
+	}
+
+	/**
+	 * Counts the integers that are in both this set and the other set, without
+	 * creating the intersection
+	 *
+	 * @param other The other set
+	 * @return The size of the intersection of the two sets
+	 * @author MVezina
+	 */
+	public int intersectionCount(SparseBitSet other)
+	{
+		if (other == null || isEmpty() || other.isEmpty())
+			return 0;
+
+		int count = 0;
+		int i = 0, j = 0;
+
+		// Merge the sorted word indices of both sets
+		while (i < wordCount && j < other.wordCount)
+		{
+			int index = wordIndices[i];
+			int otherIndex = other.wordIndices[j];
+
+			if (index < otherIndex)
+			{
+				i++;
+			}
+			else if (index > otherIndex)
+			{
+				j++;
+			}
+			else
+			{
+				count += Long.bitCount(words[i++] & other.words[j++]);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Removes all integers from the set
+	 *
+	 * @author MVezina
+	 */
+	public void clear()
+	{
+		wordCount = 0;
+		cardinality = 0;
+	}
+
+	/**
+	 * Binary search for the word with the specified index
+	 *
+	 * @return The position of the word, or (-(insertion point) - 1) if there
+	 *         is no word with the index
+	 */
+	private int findWord(int wordIndex)
+	{
+		return Arrays.binarySearch(wordIndices, 0, wordCount, wordIndex);
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= words.length)
+			return;
+
+		int newCapacity = Math.max(capacity, words.length * 2);
+		wordIndices = Arrays.copyOf(wordIndices, newCapacity);
+		words = Arrays.copyOf(words, newCapacity);
+	}
+
+	private static void checkBit(int bit)
+	{
+		if (bit < 0)
+			throw new IndexOutOfBoundsException("bit < 0: " + bit);
+	}
+
+}
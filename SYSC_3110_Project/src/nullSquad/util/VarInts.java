@@ -0,0 +1,142 @@
+/**
+ * Title: SYSC 3110 Project
+ *
+ * @author MVezina Student Number: 100934579 Team: nullSquad
+ */
+
+package nullSquad.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Reads and writes variable-length integers. Each byte holds 7 bits of the
+ * integer (lowest bits first), and the high bit is set on every byte except
+ * the last, so small integers (IDs, counts, payoffs) take one or two bytes
+ * instead of four. Signed integers are zigzag encoded first, so that small
+ * negative integers stay small.
+ *
+ * @author MVezina
+ */
+public final class VarInts
+{
+	private VarInts()
+	{
+	}
+
+	/**
+	 * Writes an unsigned variable-length integer
+	 *
+	 * @param out The output to write to
+	 * @param value The integer (Treated as unsigned)
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads an unsigned variable-length integer
+	 *
+	 * @param in The input to read from
+	 * @return The integer
+	 * @throws IOException If the integer is longer than 5 bytes
+	 * @author MVezina
+	 */
+	public static int readVarInt(DataInput in) throws IOException
+	{
+		int value = 0;
+
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new StreamCorruptedException("Malformed variable-length integer");
+	}
+
+	/**
+	 * Writes a signed variable-length integer
+	 *
+	 * @param out The output to write to
+	 * @param value The integer
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public static void writeSignedVarInt(DataOutput out, int value) throws IOException
+	{
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Reads a signed variable-length integer
+	 *
+	 * @param in The input to read from
+	 * @return The integer
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public static int readSignedVarInt(DataInput in) throws IOException
+	{
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes an unsigned variable-length long
+	 *
+	 * @param out The output to write to
+	 * @param value The long (Treated as unsigned)
+	 * @throws IOException
+	 * @author MVezina
+	 */
+	public static void writeVarLong(DataOutput out, long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads an unsigned variable-length long
+	 *
+	 * @param in The input to read from
+	 * @return The long
+	 * @throws IOException If the long is longer than 10 bytes
+	 * @author MVezina
+	 */
+	public static long readVarLong(DataInput in) throws IOException
+	{
+		long value = 0;
+
+		for (int shift = 0; shift < 70; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new StreamCorruptedException("Malformed variable-length long");
+	}
+
+}